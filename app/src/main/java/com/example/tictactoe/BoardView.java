@@ -0,0 +1,337 @@
+package com.example.tictactoe;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/* BoardView.java
+ *
+ * Draws a rows x cols board and its marks straight onto the canvas, and
+ * turns taps into cell numbers for a single listener.  Any change redraws
+ * the whole view, as hardware-accelerated views ignore dirty rects; cells
+ * outside the canvas clip, as under a software layer, are skipped.  Paints
+ * and the mark array are allocated when the board size changes, never per
+ * frame or per game.
+ *
+ * An optional hint overlay tints each open cell by its BoardAnalysis
+ * outcome and shows the plies to a proven result in the corner.
+ *
+ * With a block size the board is drawn as blocks of that many cells, with
+ * a wider gap between them, as for ultimate tic-tac-toe: open cells in the
+ * playable blocks are tinted, and a won block shows its winner's mark
+ * across it.
+ */
+
+public class BoardView extends View {
+
+    public interface OnCellClickListener {
+        void onCellClick(int cell);
+    }
+
+    // Largest cell and the gap between cells, in dp
+    private static final int MAX_CELL_DP = 80;
+    private static final int GAP_DP = 5;
+
+    private int mRows = 3;
+    private int mCols = 3;
+    private char[] mMarks = new char[9];
+    private int mCellSize;
+    private final int mGap;
+    // Cells per block side, 0 for none, and the blocks' state
+    private int mBlockSize;
+    private char[] mBlockWinners = new char[0];
+    private int mPlayableBlocks;
+    private final int mMaxCell;
+    private OnCellClickListener mListener;
+    private int mPressedCell = -1;
+    private final Rect mClip = new Rect();
+    // When the tap being drawn was handled, for Metrics; 0 if none
+    private long mTapNanos;
+
+    private final Paint mCellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mHumanPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mComputerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private BoardAnalysis mHints;
+    private final Paint mHintPaint = new Paint();
+    private final Paint mHintTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final char[] mDigits = new char[4];
+    private final int mWinColor;
+    private final int mDrawColor;
+    private final int mLossColor;
+    private final Paint mPlayablePaint = new Paint();
+    private final Paint mHumanBlockPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mComputerBlockPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    public BoardView(Context context) {
+        this(context, null);
+    }
+
+    public BoardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        mGap = Math.round(GAP_DP * density);
+        mMaxCell = Math.round(MAX_CELL_DP * density);
+        mHumanPaint.setColor(MainActivity.GREEN_COLOR);
+        mHumanPaint.setTextAlign(Paint.Align.CENTER);
+        mComputerPaint.setColor(MainActivity.RED_COLOR);
+        mComputerPaint.setTextAlign(Paint.Align.CENTER);
+        mHintTextPaint.setColor(MainActivity.BLACK_COLOR);
+        mWinColor = getResources().getColor(R.color.hint_win);
+        mDrawColor = getResources().getColor(R.color.hint_draw);
+        mLossColor = getResources().getColor(R.color.hint_loss);
+        mPlayablePaint.setColor(getResources().getColor(R.color.board_playable));
+        mHumanBlockPaint.set(mHumanPaint);
+        mHumanBlockPaint.setAlpha(0x80);
+        mComputerBlockPaint.set(mComputerPaint);
+        mComputerBlockPaint.setAlpha(0x80);
+        setDarkMode(false);
+        clear();
+    }
+
+    public void setOnCellClickListener(OnCellClickListener listener) {
+        mListener = listener;
+    }
+
+    public void setDarkMode(boolean darkMode) {
+        mCellPaint.setColor(getResources().getColor(darkMode ? R.color.board_cell_dark : R.color.board_cell));
+        invalidate();
+    }
+
+    public void setBoardSize(int rows, int cols) {
+        if (rows != mRows || cols != mCols) {
+            mRows = rows;
+            mCols = cols;
+            mMarks = new char[rows * cols];
+            requestLayout();
+        }
+        clear();
+    }
+
+    /**
+     * Group the cells into blocks of blockSize x blockSize, or not with 0.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize != mBlockSize) {
+            mBlockSize = blockSize;
+            mBlockWinners = new char[blockSize > 0 ? (mRows / blockSize) * (mCols / blockSize) : 0];
+            requestLayout();
+        }
+        clear();
+    }
+
+    public void clear() {
+        for (int i = 0; i < mMarks.length; i++)
+            mMarks[i] = TicTacToeGame.OPEN_SPOT;
+        for (int i = 0; i < mBlockWinners.length; i++)
+            mBlockWinners[i] = TicTacToeGame.OPEN_SPOT;
+        mPlayableBlocks = 0;
+        mHints = null;
+        invalidate();
+    }
+
+    /**
+     * Show an analysis of the open cells, or hide the hints with null.
+     */
+    public void setHints(BoardAnalysis hints) {
+        if (hints == null && mHints == null)
+            return;
+        mHints = hints != null && hints.getCellCount() == mMarks.length ? hints : null;
+        invalidate();
+    }
+
+    public char getCell(int cell) {
+        return mMarks[cell];
+    }
+
+    public void setCell(int cell, char player) {
+        if (mMarks[cell] == player)
+            return;
+        mMarks[cell] = player;
+        invalidate();
+    }
+
+    /**
+     * Show a block's winner across it, or nothing with OPEN_SPOT.
+     */
+    public void setBlockWinner(int block, char player) {
+        if (mBlockWinners[block] == player)
+            return;
+        mBlockWinners[block] = player;
+        invalidate();
+    }
+
+    /**
+     * Tint the open cells of the given blocks, one bit per block.
+     */
+    public void setPlayableBlocks(int blocks) {
+        if (blocks == mPlayableBlocks)
+            return;
+        mPlayableBlocks = blocks;
+        invalidate();
+    }
+
+    // Distance of a row or column from the first, with the block gaps
+    private int offset(int index) {
+        int offset = index * (mCellSize + mGap);
+        return mBlockSize > 0 ? offset + index / mBlockSize * mGap : offset;
+    }
+
+    private int blockGaps(int count) {
+        return mBlockSize > 0 ? (count / mBlockSize - 1) * mGap : 0;
+    }
+
+    //--- Square cells, as large as fit up to MAX_CELL_DP
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int horizontal = getPaddingLeft() + getPaddingRight() + blockGaps(mCols);
+        int vertical = getPaddingTop() + getPaddingBottom() + blockGaps(mRows);
+        int cell = mMaxCell;
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED)
+            cell = Math.min(cell, (MeasureSpec.getSize(widthMeasureSpec) - horizontal + mGap) / mCols - mGap);
+        if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED)
+            cell = Math.min(cell, (MeasureSpec.getSize(heightMeasureSpec) - vertical + mGap) / mRows - mGap);
+        mCellSize = Math.max(1, cell);
+        float textSize = mCellSize * 0.6f;
+        mHumanPaint.setTextSize(textSize);
+        mComputerPaint.setTextSize(textSize);
+        mHintTextPaint.setTextSize(mCellSize * 0.25f);
+        float blockTextSize = mBlockSize * (mCellSize + mGap) * 0.8f;
+        mHumanBlockPaint.setTextSize(blockTextSize);
+        mComputerBlockPaint.setTextSize(blockTextSize);
+        setMeasuredDimension(horizontal + mCols * (mCellSize + mGap) - mGap,
+                vertical + mRows * (mCellSize + mGap) - mGap);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // Centre the text vertically on the cell
+        float baseline = mCellSize / 2f - (mHumanPaint.ascent() + mHumanPaint.descent()) / 2f;
+        // The float quickReject() needs API 30
+        canvas.getClipBounds(mClip);
+        for (int i = 0; i < mMarks.length; i++) {
+            int left = getPaddingLeft() + offset(i % mCols);
+            int top = getPaddingTop() + offset(i / mCols);
+            if (!mClip.intersects(left, top, left + mCellSize, top + mCellSize))
+                continue;
+            canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mCellPaint);
+            if (mHints != null && mMarks[i] == TicTacToeGame.OPEN_SPOT)
+                drawHint(canvas, i, left, top);
+            if (mPlayableBlocks != 0 && mMarks[i] == TicTacToeGame.OPEN_SPOT
+                    && (mPlayableBlocks >> blockOf(i) & 1) != 0)
+                canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mPlayablePaint);
+            char mark = mMarks[i];
+            if (mark == TicTacToeGame.HUMAN_PLAYER || mark == TicTacToeGame.COMPUTER_PLAYER) {
+                canvas.drawText(mMarks, i, 1, left + mCellSize / 2f, top + baseline,
+                        mark == TicTacToeGame.HUMAN_PLAYER ? mHumanPaint : mComputerPaint);
+            }
+        }
+        if (mBlockWinners.length > 0)
+            drawBlockWinners(canvas);
+        if (mTapNanos != 0) {
+            Metrics.get().recordTapToRender(System.nanoTime() - mTapNanos);
+            mTapNanos = 0;
+        }
+    }
+
+    private int blockOf(int cell) {
+        return cell / mCols / mBlockSize * (mCols / mBlockSize) + cell % mCols / mBlockSize;
+    }
+
+    private void drawBlockWinners(Canvas canvas) {
+        int side = mBlockSize * (mCellSize + mGap) - mGap;
+        float baseline = side / 2f - (mHumanBlockPaint.ascent() + mHumanBlockPaint.descent()) / 2f;
+        int blockCols = mCols / mBlockSize;
+        for (int b = 0; b < mBlockWinners.length; b++) {
+            char mark = mBlockWinners[b];
+            if (mark != TicTacToeGame.HUMAN_PLAYER && mark != TicTacToeGame.COMPUTER_PLAYER)
+                continue;
+            float left = getPaddingLeft() + offset(b % blockCols * mBlockSize);
+            float top = getPaddingTop() + offset(b / blockCols * mBlockSize);
+            canvas.drawText(mBlockWinners, b, 1, left + side / 2f, top + baseline,
+                    mark == TicTacToeGame.HUMAN_PLAYER ? mHumanBlockPaint : mComputerBlockPaint);
+        }
+    }
+
+    private void drawHint(Canvas canvas, int cell, float left, float top) {
+        int outcome = mHints.getOutcome(cell);
+        int value = mHints.getValue(cell);
+        int color;
+        if (outcome == BoardAnalysis.WIN || (outcome == BoardAnalysis.UNKNOWN && value > 0))
+            color = mWinColor;
+        else if (outcome == BoardAnalysis.LOSS || (outcome == BoardAnalysis.UNKNOWN && value < 0))
+            color = mLossColor;
+        else if (outcome != BoardAnalysis.NOT_EVALUATED)
+            color = mDrawColor;
+        else
+            return;
+        mHintPaint.setColor(color);
+        // Unproven values only lean one way; show them fainter
+        if (outcome == BoardAnalysis.UNKNOWN)
+            mHintPaint.setAlpha(mHintPaint.getAlpha() / 2);
+        canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mHintPaint);
+        // A tablebase without distances proves outcomes but not their length
+        if ((outcome == BoardAnalysis.WIN || outcome == BoardAnalysis.LOSS) && value > 0) {
+            int length = 0;
+            for (int n = Math.min(value, 9999); n > 0 || length == 0; n /= 10)
+                mDigits[mDigits.length - ++length] = (char) ('0' + n % 10);
+            canvas.drawText(mDigits, mDigits.length - length, length, left + mCellSize * 0.08f,
+                    top + mHintTextPaint.getTextSize(), mHintTextPaint);
+        }
+    }
+
+    //--- A tap is a press and release on the same open cell
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isEnabled())
+            return false;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mPressedCell = cellAt(event.getX(), event.getY());
+                return mPressedCell >= 0;
+            case MotionEvent.ACTION_UP:
+                if (mPressedCell >= 0 && mPressedCell == cellAt(event.getX(), event.getY())) {
+                    performClick();
+                    if (mListener != null && mMarks[mPressedCell] == TicTacToeGame.OPEN_SPOT) {
+                        if (Metrics.get().isEnabled())
+                            mTapNanos = System.nanoTime();
+                        mListener.onCellClick(mPressedCell);
+                    }
+                }
+                mPressedCell = -1;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedCell = -1;
+                return true;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private int cellAt(float x, float y) {
+        int col = indexAt(x - getPaddingLeft(), mCols);
+        int row = indexAt(y - getPaddingTop(), mRows);
+        if (col < 0 || row < 0)
+            return -1;
+        return row * mCols + col;
+    }
+
+    // The row or column a distance falls in; a gap belongs to the cell
+    // before it
+    private int indexAt(float position, int count) {
+        if (position < 0)
+            return -1;
+        int index = 0;
+        while (index + 1 < count && offset(index + 1) <= position)
+            index++;
+        return position < offset(index) + mCellSize + mGap ? index : -1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.tictactoe;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* GameHistory.java
+ *
+ * Records every finished game in a GameLog under the app's files
+ * directory.  The log is opened and written on a background thread.
+ *
+ * There is one instance per process; call it from the main thread.
+ */
+
+public class GameHistory {
+
+    private static final String TAG = "GameHistory";
+    private static final String DIRECTORY = "history";
+
+    private static GameHistory sInstance;
+
+    private final ExecutorService mDiskExecutor = Executors.newSingleThreadExecutor();
+    private final File mDirectory;
+    private GameLog mLog;
+
+    public static GameHistory get(Context context) {
+        if (sInstance == null)
+            sInstance = new GameHistory(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private GameHistory(Context context) {
+        mDirectory = new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * Append a game; moves is copied, so the caller may reuse it.
+     */
+    public void record(final int preset, final int difficulty, final char firstPlayer, final int result,
+                       int[] moves, final int moveCount) {
+        final int[] copy = new int[moveCount];
+        System.arraycopy(moves, 0, copy, 0, moveCount);
+        final long timestamp = System.currentTimeMillis();
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mLog == null)
+                        mLog = new GameLog(mDirectory);
+                    mLog.append(preset, difficulty, firstPlayer, result, timestamp, copy, moveCount);
+                } catch (IOException e) {
+                    // History is a nice-to-have; the game goes on without it
+                    Log.w(TAG, "Cannot record game", e);
+                }
+            }
+        });
+    }
+}
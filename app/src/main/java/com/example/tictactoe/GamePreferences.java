@@ -0,0 +1,230 @@
+package com.example.tictactoe;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* GamePreferences.java
+ *
+ * The game settings and win/draw/loss counters, kept in memory and
+ * written to SharedPreferences as one batch.  Changes that come within
+ * DEBOUNCE_MILLIS of each other share a single write, and flush() writes
+ * at once, e.g. from onPause().  The first load and every write run on a
+ * background thread, so the main thread never waits for the disk.
+ *
+ * There is one instance per process; call it from the main thread.
+ */
+
+public class GamePreferences {
+
+    private static final String NAME = "TicTacToe";
+    private static final long DEBOUNCE_MILLIS = 2000;
+
+    private static GamePreferences sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mDiskExecutor = Executors.newSingleThreadExecutor();
+    private final CountDownLatch mLoaded = new CountDownLatch(1);
+    private final List<Runnable> mLoadCallbacks = new ArrayList<>();
+    private SharedPreferences mPrefs;
+
+    private boolean mDarkMode, mAndroidFirst, mSoundEffect;
+    private int mDifficulty, mBoardSize;
+    private int mWins, mDraws, mLosses;
+    private boolean mDirty;
+
+    public static GamePreferences get(Context context) {
+        if (sInstance == null)
+            sInstance = new GamePreferences(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private GamePreferences(final Context context) {
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.begin("GamePreferences.load");
+                try {
+                    load(context);
+                } finally {
+                    StartupTrace.end();
+                }
+                mLoaded.countDown();
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Runnable callback : mLoadCallbacks)
+                            callback.run();
+                        mLoadCallbacks.clear();
+                    }
+                });
+            }
+        });
+    }
+
+    private void load(Context context) {
+        mPrefs = context.getSharedPreferences(NAME, Context.MODE_PRIVATE);
+        mDarkMode = mPrefs.getBoolean("DarkMode", false);
+        mAndroidFirst = mPrefs.getBoolean("AndroidFirst", false);
+        mSoundEffect = mPrefs.getBoolean("SoundEffect", true);
+        mDifficulty = mPrefs.getInt("Difficulty", TicTacToeGame.HARD);
+        mBoardSize = mPrefs.getInt("BoardSize", TicTacToeGame.DEFAULT_PRESET);
+        if (mBoardSize < 0 || mBoardSize > UltimateGame.PRESET)
+            mBoardSize = TicTacToeGame.DEFAULT_PRESET;
+        mWins = mPrefs.getInt("Win", 0);
+        mDraws = mPrefs.getInt("Draw", 0);
+        mLosses = mPrefs.getInt("Loss", 0);
+    }
+
+    public boolean isLoaded() {
+        return mLoaded.getCount() == 0;
+    }
+
+    /**
+     * Run callback on the main thread once the stored values are in memory;
+     * at once if they already are.
+     */
+    public void whenLoaded(Runnable callback) {
+        if (isLoaded() && mLoadCallbacks.isEmpty())
+            callback.run();
+        else
+            mLoadCallbacks.add(callback);
+    }
+
+    public void removeLoadCallback(Runnable callback) {
+        mLoadCallbacks.remove(callback);
+    }
+
+    //--- Only reached before the load is done in unusual orders of events,
+    //--- e.g. an activity result delivered right after the process restarts
+    private void awaitLoaded() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                mLoaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    public boolean isDarkMode() {
+        awaitLoaded();
+        return mDarkMode;
+    }
+
+    public boolean isAndroidFirst() {
+        awaitLoaded();
+        return mAndroidFirst;
+    }
+
+    public boolean isSoundEffect() {
+        awaitLoaded();
+        return mSoundEffect;
+    }
+
+    public int getDifficulty() {
+        awaitLoaded();
+        return mDifficulty;
+    }
+
+    public int getBoardSize() {
+        awaitLoaded();
+        return mBoardSize;
+    }
+
+    public int getWins() {
+        awaitLoaded();
+        return mWins;
+    }
+
+    public int getDraws() {
+        awaitLoaded();
+        return mDraws;
+    }
+
+    public int getLosses() {
+        awaitLoaded();
+        return mLosses;
+    }
+
+    public void setSettings(boolean darkMode, boolean androidFirst, boolean soundEffect, int difficulty, int boardSize) {
+        awaitLoaded();
+        if (darkMode == mDarkMode && androidFirst == mAndroidFirst && soundEffect == mSoundEffect
+                && difficulty == mDifficulty && boardSize == mBoardSize)
+            return;
+        mDarkMode = darkMode;
+        mAndroidFirst = androidFirst;
+        mSoundEffect = soundEffect;
+        mDifficulty = difficulty;
+        mBoardSize = boardSize;
+        scheduleFlush();
+    }
+
+    public void setStats(int won, int draw, int lose) {
+        awaitLoaded();
+        if (won == mWins && draw == mDraws && lose == mLosses)
+            return;
+        mWins = won;
+        mDraws = draw;
+        mLosses = lose;
+        scheduleFlush();
+    }
+
+    //--- Restart the debounce timer; a burst of changes ends in one write
+    private void scheduleFlush() {
+        mDirty = true;
+        mHandler.removeCallbacks(mFlushRunnable);
+        mHandler.postDelayed(mFlushRunnable, DEBOUNCE_MILLIS);
+    }
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Write pending changes now, in one background commit.
+     */
+    public void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        if (!mDirty)
+            return;
+        mDirty = false;
+        final boolean darkMode = mDarkMode;
+        final boolean androidFirst = mAndroidFirst;
+        final boolean soundEffect = mSoundEffect;
+        final int difficulty = mDifficulty;
+        final int boardSize = mBoardSize;
+        final int won = mWins;
+        final int draw = mDraws;
+        final int lose = mLosses;
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mPrefs.edit()
+                        .putBoolean("DarkMode", darkMode)
+                        .putBoolean("AndroidFirst", androidFirst)
+                        .putBoolean("SoundEffect", soundEffect)
+                        .putInt("Difficulty", difficulty)
+                        .putInt("BoardSize", boardSize)
+                        .putInt("Win", won)
+                        .putInt("Draw", draw)
+                        .putInt("Loss", lose)
+                        .commit();
+            }
+        });
+    }
+}
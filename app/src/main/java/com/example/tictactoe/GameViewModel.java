@@ -0,0 +1,444 @@
+package com.example.tictactoe;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.ViewModel;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* GameViewModel.java
+ *
+ * The current game and everything behind it: the board, the moves so far,
+ * the result, and the move scheduler with its search engine and caches.
+ * It outlives rotations and theme changes, so the activity only re-binds
+ * its views, and a search in flight keeps running and delivers its move to
+ * whichever activity is bound when it finishes.
+ *
+ * Saved instance state is only needed after the process was killed; the
+ * moves go into it in order, so they can still be undone after a restore.
+ *
+ * Opening books ship as uncompressed assets named books/RxCxK.book, and
+ * tablebases as tablebases/RxCxK.tb; both are mapped straight out of the
+ * APK on the search thread.  Learned networks depend only on the win
+ * length and are read from networks/K.ntw.
+ *
+ * Nothing here waits for the search: the scheduler builds its engine, and
+ * the tables are loaded, on the search thread, where the first computer
+ * move request queues behind them.
+ *
+ * The preset after the m,n,k boards, UltimateGame.PRESET, plays ultimate
+ * tic-tac-toe instead.  Its game stands in for the TicTacToeGame behind
+ * the board accessors below; it has no hints, pondering or redo.
+ */
+
+public class GameViewModel extends ViewModel {
+
+    private final ExecutorService mSearchExecutor = Executors.newSingleThreadExecutor();
+    private final Executor mMainExecutor;
+
+    private int mBoardPreset = -1;
+    private TicTacToeGame mGame;
+    // Set instead of mGame in the Ultimate mode
+    private UltimateGame mUltimate;
+    private ComputerMoveScheduler mScheduler;
+
+    private char mFirstPlayer;
+    private int mWinner;
+    private boolean mGameOver;
+
+    // The bound activity, and a move that arrived while none was
+    private ComputerMoveScheduler.Callback mListener;
+    private int mPendingMove = -1;
+    private ComputerMoveScheduler.AnalysisCallback mAnalysisListener;
+    private boolean mShowingHints;
+
+    public GameViewModel() {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        mMainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * Switch to a board preset.
+     *
+     * @return true if a new, empty board was created; the caller should
+     * start a game on it
+     */
+    public boolean setBoardPreset(int preset, AssetManager assets) {
+        if (preset == mBoardPreset)
+            return false;
+        if (mScheduler != null)
+            mScheduler.cancel();
+        mBoardPreset = preset;
+        if (preset == UltimateGame.PRESET) {
+            mGame = null;
+            mUltimate = new UltimateGame();
+            // The scheduler searches ultimate games on its own copy; its
+            // standard board is never used
+            mScheduler = createScheduler(3, 3, 3);
+            mScheduler.prepareUltimate();
+            return true;
+        }
+        mUltimate = null;
+        mGame = TicTacToeGame.fromPreset(preset);
+        mScheduler = createScheduler(mGame.getRows(), mGame.getColumns(), mGame.getWinLength());
+        loadSearchTables(assets, mScheduler, mGame.getRows() + "x" + mGame.getColumns() + "x" + mGame.getWinLength(),
+                mGame.getWinLength());
+        return true;
+    }
+
+    // The scheduler builds its engine in its first task on the search
+    // thread; the tasks around it trace that
+    private ComputerMoveScheduler createScheduler(int rows, int cols, int winLength) {
+        mSearchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.begin("ComputerMoveScheduler.init");
+            }
+        });
+        ComputerMoveScheduler scheduler = new ComputerMoveScheduler(rows, cols, winLength, mSearchExecutor,
+                mMainExecutor);
+        mSearchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.end();
+            }
+        });
+        return scheduler;
+    }
+
+    private void loadSearchTables(final AssetManager assets, final ComputerMoveScheduler scheduler, final String name,
+                                  final int winLength) {
+        mSearchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.begin("GameViewModel.loadSearchTables");
+                try {
+                    scheduler.setOpeningBook(new OpeningBook(mapAsset(assets, "books/" + name + ".book")));
+                } catch (IOException e) {
+                    // No book for this board; the engine searches every move
+                }
+                try {
+                    scheduler.setTablebase(new Tablebase(mapAsset(assets, "tablebases/" + name + ".tb")));
+                } catch (IOException e) {
+                    // Only the small boards are solved
+                }
+                try {
+                    InputStream in = assets.open("networks/" + winLength + ".ntw");
+                    try {
+                        scheduler.setNetwork(NTupleNetwork.read(in));
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    // No network for this win length; LEARNED plays as HARD
+                }
+                StartupTrace.end();
+            }
+        });
+    }
+
+    private static ByteBuffer mapAsset(AssetManager assets, String path) throws IOException {
+        AssetFileDescriptor fd = assets.openFd(path);
+        FileInputStream in = fd.createInputStream();
+        try {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+        } finally {
+            in.close();
+        }
+    }
+
+    public TicTacToeGame getGame() {
+        return mGame;
+    }
+
+    public boolean isUltimate() {
+        return mUltimate != null;
+    }
+
+    public UltimateGame getUltimateGame() {
+        return mUltimate;
+    }
+
+    //--- The board of whichever game is being played
+
+    public int getRows() {
+        return mUltimate != null ? UltimateGame.ROWS : mGame.getRows();
+    }
+
+    public int getColumns() {
+        return mUltimate != null ? UltimateGame.ROWS : mGame.getColumns();
+    }
+
+    public int getBoardSize() {
+        return mUltimate != null ? UltimateGame.CELLS : mGame.getBoardSize();
+    }
+
+    public char getBoardOccupant(int location) {
+        return mUltimate != null ? mUltimate.getBoardOccupant(location) : mGame.getBoardOccupant(location);
+    }
+
+    /**
+     * @return true if the human may take the open cell; in the Ultimate
+     * mode only cells of the boards the last move allows
+     */
+    public boolean isLegalMove(int location) {
+        return mUltimate == null || mUltimate.isLegalMove(location);
+    }
+
+    public int checkForWinner() {
+        return mUltimate != null ? mUltimate.checkForWinner() : mGame.checkForWinner();
+    }
+
+    public int getMoveCount() {
+        return mUltimate != null ? mUltimate.getMoveCount() : mGame.getMoveCount();
+    }
+
+    public ComputerMoveScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * Bind the activity that receives computer moves, or unbind with null.
+     * A move that finished while nothing was bound is delivered now.
+     */
+    public void setListener(ComputerMoveScheduler.Callback listener) {
+        mListener = listener;
+        if (listener != null && mPendingMove >= 0) {
+            int move = mPendingMove;
+            mPendingMove = -1;
+            listener.onComputerMove(move);
+        }
+    }
+
+    /**
+     * Bind the activity that receives hint analyses, or unbind with null.
+     * Analyses finished while nothing was bound are dropped.
+     */
+    public void setAnalysisListener(ComputerMoveScheduler.AnalysisCallback listener) {
+        mAnalysisListener = listener;
+    }
+
+    public boolean isShowingHints() {
+        return mShowingHints;
+    }
+
+    public void setShowingHints(boolean showingHints) {
+        mShowingHints = showingHints;
+        if (!showingHints)
+            mScheduler.cancelAnalysis();
+    }
+
+    /**
+     * Analyse the human's options in the current position.
+     */
+    public void requestAnalysis() {
+        if (mUltimate == null)
+            mScheduler.requestAnalysis(mGame, TicTacToeGame.HUMAN_PLAYER, mAnalysisCallback);
+    }
+
+    public void cancelAnalysis() {
+        mScheduler.cancelAnalysis();
+    }
+
+    private final ComputerMoveScheduler.AnalysisCallback mAnalysisCallback = new ComputerMoveScheduler.AnalysisCallback() {
+        @Override
+        public void onAnalysis(BoardAnalysis analysis) {
+            if (mAnalysisListener != null)
+                mAnalysisListener.onAnalysis(analysis);
+        }
+    };
+
+    /**
+     * Search ahead on the human's time; see ComputerMoveScheduler.startPondering().
+     */
+    public void startPondering(int difficulty) {
+        if (mUltimate == null)
+            mScheduler.startPondering(mGame, difficulty);
+    }
+
+    public void cancelPondering() {
+        mScheduler.cancelPondering();
+    }
+
+    public void requestComputerMove(int difficulty, SearchBudget budget) {
+        mPendingMove = -1;
+        if (mUltimate != null)
+            mScheduler.requestUltimateMove(mUltimate, difficulty, budget, mMoveCallback);
+        else
+            mScheduler.requestMove(mGame, difficulty, budget, mMoveCallback);
+    }
+
+    private final ComputerMoveScheduler.Callback mMoveCallback = new ComputerMoveScheduler.Callback() {
+        @Override
+        public void onComputerMove(int move) {
+            if (mListener != null)
+                mListener.onComputerMove(move);
+            else
+                mPendingMove = move;
+        }
+    };
+
+    public void startGame(char firstPlayer) {
+        mScheduler.cancel();
+        mPendingMove = -1;
+        if (mUltimate != null)
+            mUltimate.clearBoard();
+        else
+            mGame.clearBoard();
+        mFirstPlayer = firstPlayer;
+        mGameOver = false;
+        mWinner = firstPlayer == TicTacToeGame.COMPUTER_PLAYER ? 0 : -1;
+    }
+
+    public void playMove(char player, int location) {
+        if (mUltimate != null)
+            mUltimate.makeMove(player, location);
+        else
+            mGame.makeMove(player, location);
+    }
+
+    /**
+     * @return the moves of the current game in order, for the history log
+     */
+    public int[] getMoves() {
+        if (mUltimate != null)
+            return mUltimate.saveMoves();
+        int[] moves = new int[mGame.getMoveCount()];
+        for (int ply = 0; ply < moves.length; ply++)
+            moves[ply] = mGame.getHistoryMove(ply);
+        return moves;
+    }
+
+    //--- Undo and redo a whole turn: the human move and the computer's reply
+
+    public boolean canUndo() {
+        if (mGameOver || mScheduler.isThinking())
+            return false;
+        if (mUltimate != null)
+            return mUltimate.getMoveCount() > (mFirstPlayer == TicTacToeGame.HUMAN_PLAYER ? 0 : 1);
+        for (int ply = 0; ply < mGame.getMoveCount(); ply++) {
+            if (mGame.getBoardOccupant(mGame.getHistoryMove(ply)) == TicTacToeGame.HUMAN_PLAYER)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take back moves up to and including the human's last one, so it is
+     * the human's turn again.
+     */
+    public void undo() {
+        if (!canUndo())
+            return;
+        mScheduler.cancel();
+        mPendingMove = -1;
+        if (mUltimate != null) {
+            // Unmade moves are gone; the Ultimate mode has no redo
+            do {
+                mUltimate.unmakeMove();
+            } while (!isHumanTurn(mUltimate.getMoveCount()));
+            mWinner = mUltimate.getMoveCount() == 0 ? -1 : 0;
+            return;
+        }
+        do {
+            mGame.undo();
+        } while (mGame.getRedoPlayer() != TicTacToeGame.HUMAN_PLAYER);
+        mWinner = mGame.getMoveCount() == 0 ? -1 : 0;
+    }
+
+    private boolean isHumanTurn(int moveCount) {
+        return (moveCount % 2 == 0) == (mFirstPlayer == TicTacToeGame.HUMAN_PLAYER);
+    }
+
+    public boolean canRedo() {
+        return mUltimate == null && !mGameOver && !mScheduler.isThinking() && mGame.getRedoPlayer() == TicTacToeGame.HUMAN_PLAYER;
+    }
+
+    /**
+     * Replay the turn taken back by the last undo().  The caller should
+     * check for a finished game, as after any move.
+     */
+    public void redo() {
+        if (!canRedo())
+            return;
+        do {
+            mGame.redo();
+        } while (mGame.getRedoPlayer() == TicTacToeGame.COMPUTER_PLAYER);
+        mWinner = mGame.checkForWinner();
+    }
+
+    public char getFirstPlayer() {
+        return mFirstPlayer;
+    }
+
+    public int getWinner() {
+        return mWinner;
+    }
+
+    public void setWinner(int winner) {
+        mWinner = winner;
+    }
+
+    public boolean isGameOver() {
+        return mGameOver;
+    }
+
+    public void setGameOver(boolean gameOver) {
+        mGameOver = gameOver;
+    }
+
+    public void saveState(Bundle outState) {
+        outState.putIntArray("Moves", getMoves());
+        outState.putChar("FirstPlayer", mFirstPlayer);
+        outState.putInt("Winner", mWinner);
+        outState.putBoolean("GameOver", mGameOver);
+        outState.putBoolean("Thinking", mScheduler.isThinking() || mPendingMove >= 0);
+    }
+
+    /**
+     * Restore a game saved by saveState() on the current board preset.
+     *
+     * @return true if the computer was to move and a search must be requested
+     */
+    public boolean restoreState(Bundle savedState) {
+        mScheduler.cancel();
+        mPendingMove = -1;
+        mFirstPlayer = savedState.getChar("FirstPlayer");
+        if (mUltimate != null) {
+            mUltimate.restoreMoves(savedState.getIntArray("Moves"), mFirstPlayer);
+        } else {
+            mGame.clearBoard();
+            char player = mFirstPlayer;
+            for (int move : savedState.getIntArray("Moves")) {
+                mGame.makeMove(player, move);
+                player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            }
+        }
+        mWinner = savedState.getInt("Winner");
+        mGameOver = savedState.getBoolean("GameOver");
+        return savedState.getBoolean("Thinking");
+    }
+
+    @Override
+    protected void onCleared() {
+        if (mScheduler != null)
+            mScheduler.cancel();
+        mSearchExecutor.shutdownNow();
+    }
+}
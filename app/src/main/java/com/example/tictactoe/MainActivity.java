@@ -3,44 +3,62 @@ package com.example.tictactoe;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
-import android.media.MediaPlayer;
-import android.net.Uri;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.animation.Animation;
 import android.view.animation.ScaleAnimation;
-import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+
 
 public class MainActivity extends AppCompatActivity {
 
-    // Represents the internal state of the game
-    private TicTacToeGame mGame;
-    // Buttons making up the board
-    private Button[] mBoardButtons;
+    // Holds the game and its engine across rotations and theme changes
+    private GameViewModel mModel;
+    // Computer moves are searched on a background thread
+    private ComputerMoveScheduler mMoveScheduler;
+    // Draws the board and reports taps on it
+    private BoardView mBoardView;
     // Various text displayed
     private TextView mInfoTextView, mLevelTextView, mWinTextView, mDrawTextView, mLoseTextView;
     private ImageView mResultImage;
+    // Debug overlay with the engine and UI metrics, off by default
+    private TextView mMetricsView;
+    private final StringBuilder mMetricsText = new StringBuilder();
+    private ScheduledExecutorService mMetricsExecutor;
+    private ScheduledFuture<?> mMetricsDump;
 
-    // Game Over
-    Boolean mGameOver;
-    int mWinner, iWin, iDraw, iLoss;
+    // Statistics
+    int iWin, iDraw, iLoss;
 
     // Game config
     Boolean mDarkMode, mAndroidFirst, mSoundEffect;
-    int mDifficulty;
+    int mDifficulty, mBoardSize;
+    private GamePreferences mPreferences;
+    private GameHistory mHistory;
+    private SoundEffects mSoundEffects;
+    // Saved state that arrived before the preferences finished loading
+    private Bundle mPendingState;
+    // True when mModel already held a game, so saved state is not needed
+    private boolean mRetained;
 
     public static final char HUMAN_PLAYER = 'X';
     public static final char COMPUTER_PLAYER = 'O';
@@ -50,20 +68,105 @@ public class MainActivity extends AppCompatActivity {
     public static final int GREEN_COLOR = Color.rgb(0, 200, 0);
     public static final int RED_COLOR = Color.rgb(200, 0, 0);
 
-    public static final int AUDIO_MOVE = 0;
-    public static final int AUDIO_WIN = 1;
-    public static final int AUDIO_LOSE = 2;
+    public static final int AUDIO_MOVE = SoundEffects.MOVE;
+    public static final int AUDIO_WIN = SoundEffects.WIN;
+    public static final int AUDIO_LOSE = SoundEffects.LOSE;
 
     private static final int SETTING = 0;
 
+    private static final long METRICS_REFRESH_MILLIS = 1000;
+    private static final long METRICS_DUMP_MILLIS = 30000;
+    private static final String METRICS_FILE = "metrics.txt";
+
+    // Think time for engine levels that search
+    private static final SearchBudget MOVE_BUDGET = SearchBudget.millis(1000);
+
+    //--- Only what the first frame needs runs on the main thread: the
+    //--- preferences load on a disk thread, and the engine and its tables
+    //--- are built on the search thread, where the first computer move waits
+    //--- for them; see StartupTrace for the trace sections
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.beginFirstFrame();
+        StartupTrace.begin("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
-        loadPreferences();
-        createView();
+        mModel = new ViewModelProvider(this, new ViewModelProvider.NewInstanceFactory()).get(GameViewModel.class);
+        mRetained = mModel.getScheduler() != null;
+        //--- Settings decide the theme, so the views wait for them; after a
+        //--- rotation they are already in memory and this runs at once
+        mPreferences = GamePreferences.get(this);
+        mHistory = GameHistory.get(this);
+        mSoundEffects = new SoundEffects(new SoundPoolBackend(this), false);
+        mPreferences.whenLoaded(mPreferencesLoaded);
+        StartupTrace.end();
+    }
+
+    private final Runnable mPreferencesLoaded = new Runnable() {
+        @Override
+        public void run() {
+            loadPreferences();
+            createView();
+            if (mPendingState != null) {
+                onRestoreInstanceState(mPendingState);
+                mPendingState = null;
+            }
+            mBoardView.getViewTreeObserver().addOnPreDrawListener(mFirstDraw);
+        }
+    };
+
+    //--- The sounds are first needed after a tap, so they load after the first frame
+    private final ViewTreeObserver.OnPreDrawListener mFirstDraw = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            mBoardView.getViewTreeObserver().removeOnPreDrawListener(this);
+            StartupTrace.endFirstFrame();
+            mBoardView.post(new Runnable() {
+                @Override
+                public void run() {
+                    mSoundEffects.setEnabled(mSoundEffect);
+                }
+            });
+            return true;
+        }
+    };
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        //--- Settings may have changed the level while paused
+        if (mBoardView != null)
+            updatePondering();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        //--- No thinking in the background while the game is not on screen
+        if (mBoardView != null)
+            mModel.cancelPondering();
+        mPreferences.flush();
+    }
+
+    @Override
+    protected void onStop() {
+        mPreferences.flush();
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        //--- A search in flight survives a rotation in mModel; it is
+        //--- cancelled when the model is cleared after finish()
+        mPreferences.removeLoadCallback(mPreferencesLoaded);
+        mModel.setListener(null);
+        mModel.setAnalysisListener(null);
+        mSoundEffects.release();
+        stopMetrics();
+        super.onDestroy();
     }
 
     private void createView() {
+        StartupTrace.begin("MainActivity.createView");
         setTheme(mDarkMode ? R.style.Theme_TicTacToeDark : R.style.Theme_TicTacToe);
         setContentView(R.layout.activity_main);
 
@@ -78,25 +181,47 @@ public class MainActivity extends AppCompatActivity {
             currentLayout.setBackgroundColor(getResources().getColor(R.color.white));
         }
 
-        mBoardButtons = new Button[TicTacToeGame.BOARD_SIZE];
-        mBoardButtons[0] = (Button) findViewById(R.id.button0);
-        mBoardButtons[1] = (Button) findViewById(R.id.button1);
-        mBoardButtons[2] = (Button) findViewById(R.id.button2);
-        mBoardButtons[3] = (Button) findViewById(R.id.button3);
-        mBoardButtons[4] = (Button) findViewById(R.id.button4);
-        mBoardButtons[5] = (Button) findViewById(R.id.button5);
-        mBoardButtons[6] = (Button) findViewById(R.id.button6);
-        mBoardButtons[7] = (Button) findViewById(R.id.button7);
-        mBoardButtons[8] = (Button) findViewById(R.id.button8);
+        StartupTrace.begin("GameViewModel.setBoardPreset");
+        boolean newBoard = mModel.setBoardPreset(mBoardSize, getAssets());
+        StartupTrace.end();
+        mMoveScheduler = mModel.getScheduler();
+        mBoardView = (BoardView) findViewById(R.id.board_view);
+        mBoardView.setBoardSize(mModel.getRows(), mModel.getColumns());
+        mBoardView.setBlockSize(mModel.isUltimate() ? 3 : 0);
+        mBoardView.setDarkMode(mDarkMode);
+        mBoardView.setOnCellClickListener(mCellClickListener);
         mInfoTextView = (TextView) findViewById(R.id.information);
         mLevelTextView = (TextView) findViewById(R.id.textView_level);
         mWinTextView = (TextView) findViewById(R.id.textView_win);
         mDrawTextView = (TextView) findViewById(R.id.textView_draw);
         mLoseTextView = (TextView) findViewById(R.id.textView_loss);
         mResultImage = (ImageView) findViewById(R.id.resultImage);
+        if (mMetricsView != null)
+            mMetricsView.removeCallbacks(mMetricsRefresh);
+        mMetricsView = (TextView) findViewById(R.id.metrics_overlay);
+        if (Metrics.get().isEnabled())
+            startMetrics();
+
+        if (newBoard) {
+            startNewGame(mAndroidFirst ? COMPUTER_PLAYER : HUMAN_PLAYER);
+        } else {
+            //--- Same game as before the rotation or theme change: just redraw it
+            showBoard();
+            setInfoView();
+        }
+        mModel.setListener(mComputerMoveCallback);
+        mModel.setAnalysisListener(mAnalysisCallback);
+        StartupTrace.end();
+    }
 
-        mGame = new TicTacToeGame();
-        startNewGame(mAndroidFirst ? COMPUTER_PLAYER : HUMAN_PLAYER);
+    private void showBoard() {
+        mBoardView.clear();
+        for (int i = 0; i < mModel.getBoardSize(); i++) {
+            char occupant = mModel.getBoardOccupant(i);
+            if (occupant == HUMAN_PLAYER || occupant == COMPUTER_PLAYER)
+                mBoardView.setCell(i, occupant);
+        }
+        mResultImage.setImageResource(android.R.color.transparent);
     }
 
     //--- OnClickListener for Restart a New Game Button
@@ -109,115 +234,155 @@ public class MainActivity extends AppCompatActivity {
         iWin = 0;
         iDraw = 0;
         iLoss = 0;
-        savePreferences(mDarkMode, mAndroidFirst, mSoundEffect, mDifficulty, iWin, iDraw, iLoss);
+        savePreferences(mDarkMode, mAndroidFirst, mSoundEffect, mDifficulty, mBoardSize, iWin, iDraw, iLoss);
         setInfoView();
     }
 
     //--- Set up the game board.
     private void startNewGame(char first_move) {
-        mGameOver = false;
-        mGame.clearBoard();
+        mModel.startGame(first_move);
         mResultImage.setImageResource(android.R.color.transparent);
 
-        //---Reset all buttons
-        for (int i = 0; i < mBoardButtons.length; i++) {
-            mBoardButtons[i].setText("");
-            mBoardButtons[i].setEnabled(true);
-            mBoardButtons[i].setOnClickListener(new ButtonClickListener(i));
+        mBoardView.clear();
+
+        if (first_move == COMPUTER_PLAYER)
+            requestComputerMove();
+        setInfoView();
+    }
+
+    //---Handles taps on open cells of the board
+    private final BoardView.OnCellClickListener mCellClickListener = new BoardView.OnCellClickListener() {
+        @Override
+        public void onCellClick(int location) {
+            //--- The board is locked while the computer is thinking
+            if (!mModel.isGameOver() && !mMoveScheduler.isThinking() && mModel.isLegalMove(location)) {
+                setMove(TicTacToeGame.HUMAN_PLAYER, location);
+                //--- If no winner yet, let the computer make a move
+                mModel.setWinner(mModel.checkForWinner());
+
+                if (mModel.getWinner() == 0)
+                    requestComputerMove();
+                else
+                    setStatus();
+                setInfoView();
+            }
         }
+    };
+
+    //--- Start searching for the computer's move; the result arrives on the main thread
+    private void requestComputerMove() {
+        StartupTrace.beginFirstMove();
+        mModel.requestComputerMove(mDifficulty, MOVE_BUDGET);
+    }
 
-        if (first_move == COMPUTER_PLAYER) {
-            mInfoTextView.setText(R.string.android_turn);
-            int move = mGame.getComputerMove(mDifficulty);
+    private final ComputerMoveScheduler.Callback mComputerMoveCallback = new ComputerMoveScheduler.Callback() {
+        @Override
+        public void onComputerMove(int move) {
             setMove(TicTacToeGame.COMPUTER_PLAYER, move);
-            mWinner = 0;
+            StartupTrace.endFirstMove();
+            mModel.setWinner(mModel.checkForWinner());
+            setStatus();
+            setInfoView();
+        }
+    };
+
+    private final ComputerMoveScheduler.AnalysisCallback mAnalysisCallback = new ComputerMoveScheduler.AnalysisCallback() {
+        @Override
+        public void onAnalysis(BoardAnalysis analysis) {
+            mBoardView.setHints(analysis);
+        }
+    };
+
+    //--- Hints are analysed off the UI thread whenever it is the human's turn
+    private void updateHints() {
+        int winner = mModel.getWinner();
+        if (mModel.isShowingHints() && (winner == -1 || winner == 0) && !mModel.isGameOver()
+                && !mMoveScheduler.isThinking()) {
+            mModel.requestAnalysis();
         } else {
-            mWinner = -1;
+            mModel.cancelAnalysis();
+            mBoardView.setHints(null);
         }
-        setInfoView();
     }
 
-    //---Handles clicks on the game board buttons
-    private class ButtonClickListener implements View.OnClickListener {
-        int location;
-
-        public ButtonClickListener(int location) {
-            this.location = location;
+    //--- In the Ultimate mode, mark the won boards and tint where the human may play
+    private void updateBlocks() {
+        if (!mModel.isUltimate())
+            return;
+        UltimateGame game = mModel.getUltimateGame();
+        for (int b = 0; b < 9; b++) {
+            int winner = game.getBoardWinner(b);
+            mBoardView.setBlockWinner(b, winner == 2 ? HUMAN_PLAYER : winner == 3 ? COMPUTER_PLAYER : TicTacToeGame.OPEN_SPOT);
         }
+        int next = game.getNextBoard();
+        if (mModel.isGameOver() || mModel.getWinner() > 0 || mMoveScheduler.isThinking())
+            mBoardView.setPlayableBlocks(0);
+        else
+            mBoardView.setPlayableBlocks(next >= 0 ? 1 << next : ~game.getClosedBoards() & TicTacToeGame.FULL_BOARD);
+    }
 
-        @Override
-        public void onClick(View v) {
-            if (!mGameOver) {
-                if (mBoardButtons[location].isEnabled()) {
-                    setMove(TicTacToeGame.HUMAN_PLAYER, location);
-                    //--- If no winner yet, let the computer make a move
-                    mWinner = mGame.checkForWinner();
-
-                    if (mWinner == 0) {
-                        mInfoTextView.setText(R.string.android_turn);
-                        int move = mGame.getComputerMove(mDifficulty);
-                        setMove(TicTacToeGame.COMPUTER_PLAYER, move);
-                        mWinner = mGame.checkForWinner();
-                    }
-                    setStatus();
-                    setInfoView();
-                }
-            }
+    //--- The engine thinks ahead on the human's time, unless the hints already use it
+    private void updatePondering() {
+        int winner = mModel.getWinner();
+        if (!mModel.isShowingHints() && (winner == -1 || winner == 0) && !mModel.isGameOver()
+                && !mMoveScheduler.isThinking()) {
+            mModel.startPondering(mDifficulty);
+        } else {
+            mModel.cancelPondering();
         }
     }
 
     private void setMove(char player, int location) {
-        mGame.setMove(player, location);
-        mBoardButtons[location].setEnabled(false);
-        mBoardButtons[location].setText(String.valueOf(player));
-        if (player == TicTacToeGame.HUMAN_PLAYER) {
-            mBoardButtons[location].setTextColor(GREEN_COLOR);
-            if (mSoundEffect) {
-                playAudio(AUDIO_MOVE);
-            }
-        } else {
-            mBoardButtons[location].setTextColor(RED_COLOR);
+        mModel.playMove(player, location);
+        mBoardView.setCell(location, player);
+        if (player == TicTacToeGame.HUMAN_PLAYER && mSoundEffect) {
+            playAudio(AUDIO_MOVE);
         }
     }
 
     //--- Update the current status in the game.
     private void setStatus() {
-        if (mWinner == 1) {
-            mGameOver = true;
+        int winner = mModel.getWinner();
+        if (winner == 1) {
+            mModel.setGameOver(true);
             iDraw++;
-        } else if (mWinner == 2) {
-            mGameOver = true;
+        } else if (winner == 2) {
+            mModel.setGameOver(true);
             iWin++;
             if (mSoundEffect) {
                 playAudio(AUDIO_WIN);
             }
             playAnimation();
-        } else if (mWinner == 3) {
-            mGameOver = true;
+        } else if (winner == 3) {
+            mModel.setGameOver(true);
             iLoss++;
             if (mSoundEffect) {
                 playAudio(AUDIO_LOSE);
             }
         }
-        savePreferences(mDarkMode, mAndroidFirst, mSoundEffect, mDifficulty, iWin, iDraw, iLoss);
+        //--- The history replays games on m,n,k boards only
+        if (mModel.isGameOver() && !mModel.isUltimate())
+            mHistory.record(mBoardSize, mDifficulty, mModel.getFirstPlayer(), winner, mModel.getMoves(), mModel.getMoveCount());
+        savePreferences(mDarkMode, mAndroidFirst, mSoundEffect, mDifficulty, mBoardSize, iWin, iDraw, iLoss);
     }
 
     //--- Update the information view component.
     private void setInfoView() {
-        if (mWinner == -1) {
+        int winner = mModel.getWinner();
+        if (winner == -1) {
             mInfoTextView.setTextColor(BLACK_COLOR);
             mInfoTextView.setText(R.string.human_first);
-        } else if (mWinner == 0) {
+        } else if (winner == 0) {
             mInfoTextView.setTextColor(BLACK_COLOR);
-            mInfoTextView.setText(R.string.human_turn);
-        } else if (mWinner == 1) {
+            mInfoTextView.setText(mMoveScheduler.isThinking() ? R.string.android_turn : R.string.human_turn);
+        } else if (winner == 1) {
             mInfoTextView.setTextColor(BLUE_COLOR);
             mInfoTextView.setText(R.string.tie);
-        } else if (mWinner == 2) {
+        } else if (winner == 2) {
             mInfoTextView.setTextColor(GREEN_COLOR);
             mInfoTextView.setText(R.string.human_won);
             mResultImage.setImageResource(R.drawable.medal);
-        } else if (mWinner == 3) {
+        } else if (winner == 3) {
             mInfoTextView.setTextColor(RED_COLOR);
             mInfoTextView.setText(R.string.android_won);
         }
@@ -229,60 +394,63 @@ public class MainActivity extends AppCompatActivity {
             levelText.append(getResources().getString(R.string.level_2));
         else if (mDifficulty == TicTacToeGame.HARD)
             levelText.append(getResources().getString(R.string.level_3));
+        else if (mDifficulty == TicTacToeGame.PERFECT)
+            levelText.append(getResources().getString(R.string.level_4));
+        else if (mDifficulty == TicTacToeGame.LEARNED)
+            levelText.append(getResources().getString(R.string.level_5));
         mLevelTextView.setText(levelText.toString());
 
         mWinTextView.setText(new StringBuilder().append(getResources().getString(R.string.win)).append("\n").append(iWin).toString());
         mDrawTextView.setText(new StringBuilder().append(getResources().getString(R.string.draw)).append("\n").append(iDraw).toString());
         mLoseTextView.setText(new StringBuilder().append(getResources().getString(R.string.loss)).append("\n").append(iLoss).toString());
+        updateBlocks();
+        updateHints();
+        updatePondering();
     }
 
     //--- Save the state of current game
     //--- One usual case is save the state before screen rotation
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
-        for (int i = 0; i < mBoardButtons.length; i++) {
-            outState.putCharSequence("Board" + i, mBoardButtons[i].getText());
+        if (mBoardView == null) {
+            if (mPendingState != null)
+                outState.putAll(mPendingState);
+            return;
         }
-
+        mModel.saveState(outState);
         outState.putBoolean("DarkMode", mDarkMode);
         outState.putBoolean("AndroidFirst", mAndroidFirst);
         outState.putBoolean("SoundEffect", mSoundEffect);
         outState.putInt("Difficulty", mDifficulty);
-        outState.putInt("Winner", mWinner);
-        outState.putBoolean("GameOver", mGameOver);
+        outState.putInt("BoardSize", mBoardSize);
         outState.putInt("Win", iWin);
         outState.putInt("Draw", iDraw);
         outState.putInt("Loss", iLoss);
     }
 
     //--- Restore the state of current game
-    //--- One usual case is restore the state after screen rotation
+    //--- Only needed after the process was killed; on rotation mModel still has it
     protected void onRestoreInstanceState(Bundle savedState) {
-        for (int i = 0; i < mBoardButtons.length; i++) {
-            CharSequence player = savedState.getCharSequence("Board" + i);
-            mBoardButtons[i].setText(player);
-            if (player.equals(String.valueOf(HUMAN_PLAYER))) {
-                mBoardButtons[i].setTextColor(GREEN_COLOR);
-                mBoardButtons[i].setEnabled(false);
-                mGame.setMove(player.charAt(0), i);
-            } else if (player.equals(String.valueOf(COMPUTER_PLAYER))) {
-                mBoardButtons[i].setTextColor(RED_COLOR);
-                mBoardButtons[i].setEnabled(false);
-                mGame.setMove(player.charAt(0), i);
-            } else {
-                mBoardButtons[i].setEnabled(true);
-            }
+        if (mRetained)
+            return;
+        if (mBoardView == null) {
+            mPendingState = savedState;
+            return;
         }
-
         mDarkMode = savedState.getBoolean("DarkMode");
         mAndroidFirst = savedState.getBoolean("AndroidFirst");
         mSoundEffect = savedState.getBoolean("SoundEffect");
+        mSoundEffects.setEnabled(mSoundEffect);
         mDifficulty = savedState.getInt("Difficulty");
-        mWinner = savedState.getInt("Winner");
-        mGameOver = savedState.getBoolean("GameOver");
+        mBoardSize = savedState.getInt("BoardSize");
         iWin = savedState.getInt("Win");
         iDraw = savedState.getInt("Draw");
         iLoss = savedState.getInt("Loss");
+        boolean thinking = mModel.restoreState(savedState);
+        showBoard();
+        //--- A search cut short by the process death starts over
+        if (thinking)
+            requestComputerMove();
         setInfoView();
     }
 
@@ -290,13 +458,26 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_options, menu);
+        menu.findItem(R.id.menu_hints).setChecked(mModel.isShowingHints());
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        if (mBoardView != null) {
+            menu.findItem(R.id.menu_undo).setEnabled(mModel.canUndo());
+            menu.findItem(R.id.menu_redo).setEnabled(mModel.canRedo());
+            menu.findItem(R.id.menu_hints).setEnabled(!mModel.isUltimate());
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     //--- Option item handler
     //--- 1. Setting, 2. Exit
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
+        if (mBoardView == null)
+            return false;
         if (item.getItemId() == R.id.menu_settings) {
             Intent intent = new Intent(getApplicationContext(), SettingActivity.class);
             Bundle bundle = new Bundle();
@@ -304,9 +485,37 @@ public class MainActivity extends AppCompatActivity {
             bundle.putBoolean("AndroidFirst", mAndroidFirst);
             bundle.putBoolean("SoundEffect", mSoundEffect);
             bundle.putInt("Difficulty", mDifficulty);
+            bundle.putInt("BoardSize", mBoardSize);
             intent.putExtras(bundle);
             startActivityForResult(intent, SETTING);
             return true;
+        } else if (item.getItemId() == R.id.menu_undo) {
+            mModel.undo();
+            showBoard();
+            setInfoView();
+            return true;
+        } else if (item.getItemId() == R.id.menu_redo) {
+            mModel.redo();
+            showBoard();
+            if (mModel.getWinner() > 0)
+                setStatus();
+            setInfoView();
+            return true;
+        } else if (item.getItemId() == R.id.menu_hints) {
+            mModel.setShowingHints(!mModel.isShowingHints());
+            item.setChecked(mModel.isShowingHints());
+            updateHints();
+            updatePondering();
+            return true;
+        } else if (item.getItemId() == R.id.menu_metrics) {
+            if (Metrics.get().isEnabled()) {
+                Metrics.get().setEnabled(false);
+                stopMetrics();
+            } else {
+                Metrics.get().setEnabled(true);
+                startMetrics();
+            }
+            return true;
         } else if (item.getItemId() == R.id.menu_quit) {
             new AlertDialog.Builder(this)
                     .setIcon(android.R.drawable.ic_dialog_alert)
@@ -333,18 +542,29 @@ public class MainActivity extends AppCompatActivity {
         if (requestCode == SETTING) {
             boolean originTheme = mDarkMode;
             int originDifficulty = mDifficulty;
+            int originBoardSize = mBoardSize;
             mDarkMode = data.getBooleanExtra("DarkMode", false);
             mAndroidFirst = data.getBooleanExtra("AndroidFirst", false);
             mSoundEffect = data.getBooleanExtra("SoundEffect", true);
+            mSoundEffects.setEnabled(mSoundEffect);
             mDifficulty = data.getIntExtra("Difficulty", TicTacToeGame.HARD);
-            savePreferences(mDarkMode, mAndroidFirst, mSoundEffect, mDifficulty, iWin, iDraw, iLoss);
+            mBoardSize = data.getIntExtra("BoardSize", TicTacToeGame.DEFAULT_PRESET);
+            savePreferences(mDarkMode, mAndroidFirst, mSoundEffect, mDifficulty, mBoardSize, iWin, iDraw, iLoss);
 
-            if (mDarkMode != originTheme) {
-                Bundle bundle = new Bundle();
-                onSaveInstanceState(bundle);
+            if (mBoardView == null) {
+                //--- Views are not up yet; they will be built from the new settings
+                return;
+            }
+            if (mBoardSize != originBoardSize) {
+                // A different board needs a new game
+                createView();
+            } else if (mDarkMode != originTheme) {
+                //--- The game stays in mModel; only the views are rebuilt
                 createView();
-                onRestoreInstanceState(bundle);
             } else if (mDifficulty != originDifficulty) {
+                //--- Restart a search in flight at the new level
+                if (mMoveScheduler.isThinking())
+                    requestComputerMove();
                 StringBuilder levelText = new StringBuilder();
                 levelText.append(getResources().getString(R.string.level)).append("\n");
                 if (mDifficulty == TicTacToeGame.EASY)
@@ -353,6 +573,10 @@ public class MainActivity extends AppCompatActivity {
                     levelText.append(getResources().getString(R.string.level_2));
                 else if (mDifficulty == TicTacToeGame.HARD)
                     levelText.append(getResources().getString(R.string.level_3));
+                else if (mDifficulty == TicTacToeGame.PERFECT)
+                    levelText.append(getResources().getString(R.string.level_4));
+                else if (mDifficulty == TicTacToeGame.LEARNED)
+                    levelText.append(getResources().getString(R.string.level_5));
                 mLevelTextView.setText(levelText.toString());
             }
         }
@@ -360,54 +584,71 @@ public class MainActivity extends AppCompatActivity {
 
     //--- Saving user preferences
     //--- 1. Game configuration 2. Game statistics
-    public void savePreferences(Boolean darkMode, Boolean androidFirst, Boolean soundEffect, int difficulty, int won, int draw, int lose) {
-        SharedPreferences pref = getSharedPreferences("TicTacToe", MODE_PRIVATE);
-        pref.edit().putBoolean("DarkMode", darkMode).apply();
-        pref.edit().putBoolean("AndroidFirst", androidFirst).apply();
-        pref.edit().putBoolean("SoundEffect", soundEffect).apply();
-        pref.edit().putInt("Difficulty", difficulty).apply();
-        pref.edit().putInt("Win", won).apply();
-        pref.edit().putInt("Draw", draw).apply();
-        pref.edit().putInt("Loss", lose).apply();
+    //--- Written in one batch a moment later, or when the activity pauses
+    public void savePreferences(Boolean darkMode, Boolean androidFirst, Boolean soundEffect, int difficulty, int boardSize, int won, int draw, int lose) {
+        mPreferences.setSettings(darkMode, androidFirst, soundEffect, difficulty, boardSize);
+        mPreferences.setStats(won, draw, lose);
     }
 
     //--- Loading user preferences
     //--- 1. Game configuration 2. Game statistics
     public void loadPreferences() {
-        SharedPreferences pref = getSharedPreferences("TicTacToe", MODE_PRIVATE);
-        mDarkMode = pref.getBoolean("DarkMode", false);
-        mAndroidFirst = pref.getBoolean("AndroidFirst", false);
-        mSoundEffect = pref.getBoolean("SoundEffect", true);
-        mDifficulty = pref.getInt("Difficulty", TicTacToeGame.HARD);
-        iWin = pref.getInt("Win", 0);
-        iDraw = pref.getInt("Draw", 0);
-        iLoss = pref.getInt("Loss", 0);
+        mDarkMode = mPreferences.isDarkMode();
+        mAndroidFirst = mPreferences.isAndroidFirst();
+        mSoundEffect = mPreferences.isSoundEffect();
+        mDifficulty = mPreferences.getDifficulty();
+        mBoardSize = mPreferences.getBoardSize();
+        iWin = mPreferences.getWins();
+        iDraw = mPreferences.getDraws();
+        iLoss = mPreferences.getLosses();
     }
 
-    //--- Play audio effect
+    //--- Play audio effect from the preloaded pool
     private void playAudio(int iAction) {
-        String audioFile = "";
-
-        switch (iAction) {
-            case AUDIO_MOVE:
-                audioFile = "android.resource://"
-                        + getPackageName() + "/" + R.raw.human_move;
-                break;
-            case AUDIO_WIN:
-                audioFile = "android.resource://"
-                        + getPackageName() + "/" + R.raw.win;
-                break;
-            case AUDIO_LOSE:
-                audioFile = "android.resource://"
-                        + getPackageName() + "/" + R.raw.lose;
-                break;
-        }
+        mSoundEffects.play(iAction);
+    }
+
+    //--- Show the metrics overlay and dump the metrics to a file now and then
+    private void startMetrics() {
+        mMetricsView.setVisibility(View.VISIBLE);
+        mMetricsView.removeCallbacks(mMetricsRefresh);
+        mMetricsView.post(mMetricsRefresh);
+        if (mMetricsExecutor == null)
+            mMetricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        if (mMetricsDump == null)
+            mMetricsDump = Metrics.get().scheduleDump(mMetricsExecutor,
+                    new File(getFilesDir(), METRICS_FILE), METRICS_DUMP_MILLIS);
+    }
 
-        Uri uri = Uri.parse(audioFile);
-        MediaPlayer mediaPlayer = MediaPlayer.create(getApplicationContext(), uri);
-        mediaPlayer.start();
+    private void stopMetrics() {
+        if (mMetricsView != null) {
+            mMetricsView.removeCallbacks(mMetricsRefresh);
+            mMetricsView.setVisibility(View.GONE);
+        }
+        if (mMetricsDump != null) {
+            mMetricsDump.cancel(false);
+            mMetricsDump = null;
+        }
+        if (mMetricsExecutor != null) {
+            mMetricsExecutor.shutdown();
+            mMetricsExecutor = null;
+        }
     }
 
+    private final Runnable mMetricsRefresh = new Runnable() {
+        @Override
+        public void run() {
+            mMetricsText.setLength(0);
+            try {
+                Metrics.get().writeReport(mMetricsText);
+            } catch (IOException e) {
+                // A StringBuilder does not throw
+            }
+            mMetricsView.setText(mMetricsText);
+            mMetricsView.postDelayed(this, METRICS_REFRESH_MILLIS);
+        }
+    };
+
     //--- Play animation
     private void playAnimation() {
         mResultImage.setImageResource(R.drawable.medal);
@@ -14,8 +14,8 @@ import android.widget.TextView;
 
 public class SettingActivity extends AppCompatActivity {
     private Switch mDarkModeSwitch, mAndroidFirstSwitch, mSoundEffectSwitch;
-    private TextView mDifficultyTextView;
-    private int mDifficulty;
+    private TextView mDifficultyTextView, mBoardSizeTextView;
+    private int mDifficulty, mBoardSize;
     private static final int SETTING = 0;
 
     @Override
@@ -25,6 +25,7 @@ public class SettingActivity extends AppCompatActivity {
         boolean mAndroidFirst = getIntent().getBooleanExtra("AndroidFirst", false);
         boolean mSoundEffect = getIntent().getBooleanExtra("SoundEffect", true);
         mDifficulty = getIntent().getIntExtra("Difficulty", TicTacToeGame.HARD);
+        mBoardSize = getIntent().getIntExtra("BoardSize", TicTacToeGame.DEFAULT_PRESET);
 
         super.onCreate(savedInstanceState);
         setTheme(mDarkMode ? R.style.Theme_TicTacToeDark : R.style.Theme_TicTacToe);
@@ -34,6 +35,7 @@ public class SettingActivity extends AppCompatActivity {
         mAndroidFirstSwitch = (Switch) findViewById(R.id.switch_android_first);
         mSoundEffectSwitch = (Switch) findViewById(R.id.switch_sound_effect);
         mDifficultyTextView = (TextView) findViewById(R.id.switch_difficulty);
+        mBoardSizeTextView = (TextView) findViewById(R.id.switch_board_size);
 
         mDarkModeSwitch.setChecked(mDarkMode);
         mAndroidFirstSwitch.setChecked(mAndroidFirst);
@@ -45,6 +47,11 @@ public class SettingActivity extends AppCompatActivity {
             mDifficultyTextView.setText(R.string.level_2);
         else if (mDifficulty == TicTacToeGame.HARD)
             mDifficultyTextView.setText(R.string.level_3);
+        else if (mDifficulty == TicTacToeGame.PERFECT)
+            mDifficultyTextView.setText(R.string.level_4);
+        else if (mDifficulty == TicTacToeGame.LEARNED)
+            mDifficultyTextView.setText(R.string.level_5);
+        mBoardSizeTextView.setText(boardSizeLabel(mBoardSize));
     }
 
     //--- To inflate the option menu; this adds items to the action bar if it is present
@@ -65,6 +72,7 @@ public class SettingActivity extends AppCompatActivity {
         intent.putExtra("AndroidFirst", mAndroidFirstSwitch.isChecked());
         intent.putExtra("SoundEffect", mSoundEffectSwitch.isChecked());
         intent.putExtra("Difficulty", mDifficulty);
+        intent.putExtra("BoardSize", mBoardSize);
         setResult(SETTING, intent);
         finish();
 
@@ -73,7 +81,7 @@ public class SettingActivity extends AppCompatActivity {
 
     //--- To show the difficulty selection dialog
     public void chooseDifficulty(View view) {
-        String[] listItems = {getResources().getString(R.string.level_1), getResources().getString(R.string.level_2), getResources().getString(R.string.level_3)};
+        String[] listItems = {getResources().getString(R.string.level_1), getResources().getString(R.string.level_2), getResources().getString(R.string.level_3), getResources().getString(R.string.level_4), getResources().getString(R.string.level_5)};
 
         new AlertDialog.Builder(SettingActivity.this)
                 .setTitle(getResources().getString(R.string.choose_difficulty))
@@ -87,4 +95,31 @@ public class SettingActivity extends AppCompatActivity {
                 })
                 .show();
     }
-}
\ No newline at end of file
+
+    //--- To show the board size selection dialog
+    public void chooseBoardSize(View view) {
+        String[] listItems = new String[UltimateGame.PRESET + 1];
+        for (int i = 0; i < listItems.length; i++)
+            listItems[i] = boardSizeLabel(i);
+
+        new AlertDialog.Builder(SettingActivity.this)
+                .setTitle(getResources().getString(R.string.choose_board_size))
+                .setSingleChoiceItems(listItems, mBoardSize, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialogInterface, int i) {
+                        mBoardSize = i;
+                        mBoardSizeTextView.setText(listItems[i]);
+                        dialogInterface.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    //--- e.g. "7 x 7 (5 in a row)", and the Ultimate mode after the presets
+    private String boardSizeLabel(int preset) {
+        if (preset == UltimateGame.PRESET)
+            return getResources().getString(R.string.board_ultimate);
+        int[] config = TicTacToeGame.BOARD_PRESETS[preset];
+        return getResources().getString(R.string.board_size_format, config[0], config[1], config[2]);
+    }
+}
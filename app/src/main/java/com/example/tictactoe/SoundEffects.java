@@ -0,0 +1,74 @@
+package com.example.tictactoe;
+
+/* SoundEffects.java
+ *
+ * The game's sound effects, decoded once into a Backend and played from
+ * there.  Nothing is loaded or played while sound is disabled; the sounds
+ * are loaded the first time it is enabled.
+ *
+ * The backend is an interface so the bookkeeping can be tested on the JVM;
+ * on the device it is a SoundPoolBackend.
+ */
+
+public class SoundEffects {
+
+    public static final int MOVE = 0;
+    public static final int WIN = 1;
+    public static final int LOSE = 2;
+
+    private static final int[] RESOURCES = {R.raw.human_move, R.raw.win, R.raw.lose};
+
+    public interface Backend {
+        /**
+         * Decode a raw resource.
+         *
+         * @return an id for play()
+         */
+        int load(int resourceId);
+
+        void play(int soundId);
+
+        void release();
+    }
+
+    private final Backend mBackend;
+    private final int[] mSoundIds = new int[RESOURCES.length];
+    private boolean mLoaded;
+    private boolean mEnabled;
+    private boolean mReleased;
+
+    public SoundEffects(Backend backend, boolean enabled) {
+        mBackend = backend;
+        setEnabled(enabled);
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (enabled && !mLoaded && !mReleased) {
+            for (int i = 0; i < RESOURCES.length; i++)
+                mSoundIds[i] = mBackend.load(RESOURCES[i]);
+            mLoaded = true;
+        }
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Play MOVE, WIN or LOSE, unless sound is disabled.
+     */
+    public void play(int effect) {
+        if (!mEnabled || mReleased)
+            return;
+        mBackend.play(mSoundIds[effect]);
+    }
+
+    public void release() {
+        if (mReleased)
+            return;
+        mReleased = true;
+        if (mLoaded)
+            mBackend.release();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.tictactoe;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+
+/* SoundPoolBackend.java
+ *
+ * SoundEffects backend on a SoundPool: sounds are decoded up front and
+ * played with low latency, at most MAX_STREAMS at a time.  The pool itself
+ * is only created on the first load.
+ */
+
+public class SoundPoolBackend implements SoundEffects.Backend {
+
+    private static final int MAX_STREAMS = 4;
+
+    private final Context mContext;
+    private SoundPool mPool;
+
+    public SoundPoolBackend(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public int load(int resourceId) {
+        if (mPool == null) {
+            AudioAttributes attributes = new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_GAME)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                    .build();
+            mPool = new SoundPool.Builder()
+                    .setMaxStreams(MAX_STREAMS)
+                    .setAudioAttributes(attributes)
+                    .build();
+        }
+        return mPool.load(mContext, resourceId, 1);
+    }
+
+    @Override
+    public void play(int soundId) {
+        // A sound still decoding is simply skipped by the pool
+        mPool.play(soundId, 1f, 1f, 1, 0, 1f);
+    }
+
+    @Override
+    public void release() {
+        if (mPool != null) {
+            mPool.release();
+            mPool = null;
+        }
+    }
+}
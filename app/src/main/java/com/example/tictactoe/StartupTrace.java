@@ -0,0 +1,78 @@
+package com.example.tictactoe;
+
+import android.os.Build;
+import android.os.Trace;
+
+/* StartupTrace.java
+ *
+ * Trace sections for the cold start, to read in a system trace (Perfetto
+ * or systrace).  Each startup phase gets a section on the thread it runs
+ * on, and two async sections are recorded once per process:
+ *
+ *   TicTacToe.firstFrame  from the first onCreate() to the first draw of
+ *                         the board
+ *   TicTacToe.firstMove   from the first computer move request to the
+ *                         move on the board, including the wait for the
+ *                         engine and its tables on the search thread
+ *
+ * Async sections need API 29; below that only the phase sections are
+ * recorded.  Call the async methods from the main thread.
+ */
+
+final class StartupTrace {
+
+    static final String FIRST_FRAME = "TicTacToe.firstFrame";
+    static final String FIRST_MOVE = "TicTacToe.firstMove";
+
+    private static boolean sFirstFrameStarted, sFirstFrameDone;
+    private static boolean sFirstMoveStarted, sFirstMoveDone;
+
+    private StartupTrace() {
+    }
+
+    static void begin(String section) {
+        Trace.beginSection(section);
+    }
+
+    static void end() {
+        Trace.endSection();
+    }
+
+    static void beginFirstFrame() {
+        if (sFirstFrameStarted)
+            return;
+        sFirstFrameStarted = true;
+        beginAsync(FIRST_FRAME);
+    }
+
+    static void endFirstFrame() {
+        if (!sFirstFrameStarted || sFirstFrameDone)
+            return;
+        sFirstFrameDone = true;
+        endAsync(FIRST_FRAME);
+    }
+
+    static void beginFirstMove() {
+        if (sFirstMoveStarted)
+            return;
+        sFirstMoveStarted = true;
+        beginAsync(FIRST_MOVE);
+    }
+
+    static void endFirstMove() {
+        if (!sFirstMoveStarted || sFirstMoveDone)
+            return;
+        sFirstMoveDone = true;
+        endAsync(FIRST_MOVE);
+    }
+
+    private static void beginAsync(String section) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+            Trace.beginAsyncSection(section, 0);
+    }
+
+    private static void endAsync(String section) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+            Trace.endAsyncSection(section, 0);
+    }
+}
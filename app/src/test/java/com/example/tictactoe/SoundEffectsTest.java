@@ -0,0 +1,71 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SoundEffectsTest {
+
+    private static class CountingBackend implements SoundEffects.Backend {
+        int loads;
+        int plays;
+        int releases;
+        int lastPlayed = -1;
+
+        @Override
+        public int load(int resourceId) {
+            return ++loads;
+        }
+
+        @Override
+        public void play(int soundId) {
+            plays++;
+            lastPlayed = soundId;
+        }
+
+        @Override
+        public void release() {
+            releases++;
+        }
+    }
+
+    @Test
+    public void soundsAreLoadedOnceForAnyNumberOfMoves() {
+        CountingBackend backend = new CountingBackend();
+        SoundEffects sounds = new SoundEffects(backend, true);
+        for (int i = 0; i < 1000; i++)
+            sounds.play(SoundEffects.MOVE);
+        sounds.play(SoundEffects.WIN);
+        assertEquals(3, backend.loads);
+        assertEquals(1001, backend.plays);
+        assertEquals(2, backend.lastPlayed);
+        sounds.release();
+        sounds.release();
+        assertEquals(1, backend.releases);
+        sounds.play(SoundEffects.LOSE);
+        assertEquals(1001, backend.plays);
+    }
+
+    @Test
+    public void disabledSound_neverTouchesTheBackend() {
+        CountingBackend backend = new CountingBackend();
+        SoundEffects sounds = new SoundEffects(backend, false);
+        sounds.play(SoundEffects.MOVE);
+        sounds.release();
+        assertEquals(0, backend.loads);
+        assertEquals(0, backend.plays);
+        assertEquals(0, backend.releases);
+    }
+
+    @Test
+    public void enablingLater_loadsOnce() {
+        CountingBackend backend = new CountingBackend();
+        SoundEffects sounds = new SoundEffects(backend, false);
+        sounds.setEnabled(true);
+        sounds.setEnabled(false);
+        sounds.setEnabled(true);
+        sounds.play(SoundEffects.LOSE);
+        assertEquals(3, backend.loads);
+        assertEquals(1, backend.plays);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One computer move at each difficulty from an early-game position; the
+ * move is taken back so every invocation sees the same board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComputerMoveBenchmark {
+
+    @Param({"0", "1", "2", "3"})
+    public int difficulty;
+
+    private TicTacToeGame mGame;
+
+    @Setup
+    public void setUp() {
+        mGame = new TicTacToeGame(3, 3, 3, new SplitRandom(1));
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, 4);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 8);
+    }
+
+    @Benchmark
+    public int getComputerMove() {
+        int move = mGame.getComputerMove(difficulty);
+        mGame.setMove(TicTacToeGame.OPEN_SPOT, move);
+        return move;
+    }
+}
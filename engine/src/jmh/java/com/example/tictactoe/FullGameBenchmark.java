@@ -0,0 +1,46 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole engine-vs-engine game from an empty 3 x 3 board.  Run with the
+ * gc profiler (the default for ./gradlew :engine:jmh) to see the
+ * allocation rate per game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FullGameBenchmark {
+
+    @Param({"0", "1", "2", "3"})
+    public int difficulty;
+
+    private TicTacToeGame mGame;
+
+    @Setup
+    public void setUp() {
+        mGame = new TicTacToeGame(3, 3, 3, new SplitRandom(1));
+    }
+
+    @Benchmark
+    public int playGame() {
+        mGame.clearBoard();
+        char player = TicTacToeGame.HUMAN_PLAYER;
+        int winner = 0;
+        while (winner == 0) {
+            mGame.getMove(player, difficulty);
+            winner = mGame.checkForWinner();
+            player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+        }
+        return winner;
+    }
+}
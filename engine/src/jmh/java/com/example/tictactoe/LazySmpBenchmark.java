@@ -0,0 +1,53 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to depth of the Lazy SMP search: a fixed-depth search of a 15 x 15
+ * middle game from an empty table, by thread count.  The speedup on n
+ * threads is the 1-thread time over the n-thread time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LazySmpBenchmark {
+
+    private static final int DEPTH = 5;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private TicTacToeGame mGame;
+    private SearchEngine mEngine;
+
+    @Setup
+    public void setUp() {
+        mGame = new TicTacToeGame(15, 15, 5);
+        int[] stones = {112, 113, 97, 127, 98, 96, 128, 126};
+        for (int i = 0; i < stones.length; i++)
+            mGame.setMove(i % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER, stones[i]);
+        mEngine = new SearchEngine(mGame);
+        mEngine.setThreads(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mEngine.shutdown();
+    }
+
+    @Benchmark
+    public int timeToDepth() {
+        mEngine.clear();
+        return mEngine.findBestMove(TicTacToeGame.HUMAN_PLAYER, DEPTH, SearchBudget.UNLIMITED);
+    }
+}
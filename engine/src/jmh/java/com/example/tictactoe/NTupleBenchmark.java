@@ -0,0 +1,63 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The learned evaluation on a half-full board: a stone added, the value
+ * read and the stone removed, as at a search leaf; the value after a
+ * candidate move without playing it; and the full reset of a position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NTupleBenchmark {
+
+    @Param({"1", "3"})
+    public int preset;
+
+    private TicTacToeGame mGame;
+    private NTupleEvaluator mEvaluator;
+    private int mProbe;
+
+    @Setup
+    public void setUp() {
+        mGame = TicTacToeGame.fromPreset(preset);
+        NTupleNetwork network = new NTupleNetwork(mGame.getWinLength());
+        Random random = new Random(1);
+        for (int i = 0; i < network.getWeightCount(); i++)
+            network.mWeights[i] = (float) random.nextGaussian() * 0.1f;
+        mEvaluator = new NTupleEvaluator(network, mGame.getRows(), mGame.getColumns());
+        Positions.fill(mGame, mGame.getBoardSize() / 2);
+        mEvaluator.reset(mGame);
+        mProbe = mGame.getBoardSize() - 1;
+    }
+
+    @Benchmark
+    public int addEvaluateRemove() {
+        mEvaluator.add(TicTacToeGame.HUMAN_PLAYER, mProbe);
+        int value = mEvaluator.value(TicTacToeGame.HUMAN_PLAYER);
+        mEvaluator.remove(TicTacToeGame.HUMAN_PLAYER, mProbe);
+        return value;
+    }
+
+    @Benchmark
+    public int valueAfter() {
+        return mEvaluator.valueAfter(TicTacToeGame.HUMAN_PLAYER, mProbe);
+    }
+
+    @Benchmark
+    public int reset() {
+        mEvaluator.reset(mGame);
+        return mEvaluator.value(TicTacToeGame.COMPUTER_PLAYER);
+    }
+}
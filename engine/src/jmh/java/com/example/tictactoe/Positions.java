@@ -0,0 +1,28 @@
+package com.example.tictactoe;
+
+/**
+ * Deterministic benchmark positions.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    /**
+     * Put the given number of stones on the board, alternating X and O in
+     * a pattern that avoids completing a line for as long as possible.
+     */
+    static void fill(TicTacToeGame game, int stones) {
+        game.clearBoard();
+        int cols = game.getColumns();
+        int placed = 0;
+        for (int i = 0; i < game.getBoardSize() && placed < stones; i++) {
+            int row = i / cols;
+            int col = i % cols;
+            // Pairs of columns alternate, shifted by one every row
+            boolean x = ((col + row) / 2) % 2 == 0;
+            game.setMove(x ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER, i);
+            placed++;
+        }
+    }
+}
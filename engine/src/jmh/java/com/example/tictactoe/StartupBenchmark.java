@@ -0,0 +1,97 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the engine: one invocation per fresh JVM, so class
+ * loading, static tables and the interpreter are all measured, as on a
+ * first launch.  mainThread is what the app does before its first frame:
+ * the board's game and the scheduler, with the search thread's tasks only
+ * queued.  firstMove also runs them and the computer's opening move,
+ * searched with a fixed node budget so every fork does the same work.
+ * Preset 4 is the Ultimate mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+
+    @Param({"0", "3", "4"})
+    public int preset;
+
+    private static final SearchBudget BUDGET = SearchBudget.nodes(20000);
+
+    // Runs queued tasks only when asked, as a search thread that has not
+    // been scheduled yet
+    private static class QueueExecutor implements Executor {
+        final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty())
+                mTasks.poll().run();
+        }
+    }
+
+    private final QueueExecutor mBackground = new QueueExecutor();
+    private final QueueExecutor mForeground = new QueueExecutor();
+    private TicTacToeGame mGame;
+    private UltimateGame mUltimate;
+    private final int[] mMove = {-1};
+    private final ComputerMoveScheduler.Callback mCallback = new ComputerMoveScheduler.Callback() {
+        @Override
+        public void onComputerMove(int move) {
+            mMove[0] = move;
+        }
+    };
+
+    private ComputerMoveScheduler startScheduler() {
+        if (preset == UltimateGame.PRESET) {
+            mUltimate = new UltimateGame();
+            ComputerMoveScheduler scheduler = new ComputerMoveScheduler(3, 3, 3, mBackground, mForeground);
+            scheduler.prepareUltimate();
+            return scheduler;
+        }
+        mGame = TicTacToeGame.fromPreset(preset);
+        return new ComputerMoveScheduler(mGame.getRows(), mGame.getColumns(), mGame.getWinLength(), mBackground,
+                mForeground);
+    }
+
+    @Benchmark
+    public ComputerMoveScheduler mainThread() {
+        return startScheduler();
+    }
+
+    @Benchmark
+    public int firstMove() {
+        ComputerMoveScheduler scheduler = startScheduler();
+        if (mUltimate != null)
+            scheduler.requestUltimateMove(mUltimate, TicTacToeGame.HARD, BUDGET, mCallback);
+        else
+            scheduler.requestMove(mGame, TicTacToeGame.HARD, BUDGET, mCallback);
+        mBackground.runAll();
+        mForeground.runAll();
+        return mMove[0];
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ultimate tic-tac-toe on the table-driven UltimateGame: a random playout
+ * to the end and back with make/unmake, and a fixed-depth search from the
+ * second move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UltimateBenchmark {
+
+    @Param({"6", "8"})
+    public int depth;
+
+    private UltimateGame mGame;
+    private final int[] mMoves = new int[UltimateGame.CELLS];
+    private Random mRandom;
+
+    @Setup
+    public void setUp() {
+        mRandom = new Random(1);
+        mGame = new UltimateGame(new Random(1));
+    }
+
+    @Benchmark
+    public int playout() {
+        char player = TicTacToeGame.HUMAN_PLAYER;
+        int count;
+        while ((count = mGame.getLegalMoves(mMoves)) > 0) {
+            mGame.makeMove(player, mMoves[mRandom.nextInt(count)]);
+            player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+        }
+        int winner = mGame.checkForWinner();
+        while (mGame.getMoveCount() > 0)
+            mGame.unmakeMove();
+        return winner;
+    }
+
+    @Benchmark
+    public int search() {
+        mGame.clearBoard();
+        mGame.makeMove(TicTacToeGame.HUMAN_PLAYER, 40);
+        return mGame.getEngine().findBestMove(TicTacToeGame.COMPUTER_PLAYER, depth, SearchBudget.UNLIMITED);
+    }
+}
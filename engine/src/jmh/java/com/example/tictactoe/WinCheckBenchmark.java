@@ -0,0 +1,60 @@
+package com.example.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Winner detection on empty, mid-game and full boards: the cached
+ * checkForWinner(), the static 3 x 3 mask check and the last-move line
+ * scan used by trial moves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WinCheckBenchmark {
+
+    @Param({"0", "3"})
+    public int preset;
+
+    @Param({"empty", "mid", "full"})
+    public String position;
+
+    private TicTacToeGame mGame;
+    private int mHumanBits;
+    private int mComputerBits;
+    private int mProbe;
+
+    @Setup
+    public void setUp() {
+        mGame = TicTacToeGame.fromPreset(preset);
+        int cells = mGame.getBoardSize();
+        int stones = position.equals("empty") ? 0 : position.equals("mid") ? cells / 2 : cells;
+        Positions.fill(mGame, stones);
+        mHumanBits = mGame.getPlayerBits(TicTacToeGame.HUMAN_PLAYER);
+        mComputerBits = mGame.getPlayerBits(TicTacToeGame.COMPUTER_PLAYER);
+        mProbe = cells / 2;
+    }
+
+    @Benchmark
+    public int checkForWinner() {
+        return mGame.checkForWinner();
+    }
+
+    @Benchmark
+    public int checkForWinnerMasks() {
+        return TicTacToeGame.checkForWinner(mHumanBits, mComputerBits);
+    }
+
+    @Benchmark
+    public boolean completesLine() {
+        return mGame.completesLine(TicTacToeGame.HUMAN_PLAYER, mProbe);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.tictactoe;
+
+/* BoardAnalysis.java
+ *
+ * The value of every open cell as the next move of one player: a proven
+ * win, draw or loss and the number of plies until the game ends that way,
+ * or UNKNOWN with the search's heuristic score when the search did not
+ * reach the end of the game.  Cells that are occupied, or that the search
+ * did not consider, are NOT_EVALUATED.
+ */
+
+public class BoardAnalysis {
+
+    public static final int NOT_EVALUATED = 0;
+    public static final int WIN = 1;
+    public static final int DRAW = 2;
+    public static final int LOSS = 3;
+    public static final int UNKNOWN = 4;
+
+    private final char mPlayer;
+    private final byte[] mOutcomes;
+    private final int[] mValues;
+    private int mDepth;
+
+    public BoardAnalysis(char player, int cells) {
+        mPlayer = player;
+        mOutcomes = new byte[cells];
+        mValues = new int[cells];
+    }
+
+    public char getPlayer() {
+        return mPlayer;
+    }
+
+    public int getCellCount() {
+        return mOutcomes.length;
+    }
+
+    /**
+     * @return WIN, DRAW, LOSS, UNKNOWN or NOT_EVALUATED
+     */
+    public int getOutcome(int cell) {
+        return mOutcomes[cell];
+    }
+
+    /**
+     * @return for a proven outcome, plies until the game ends counting the
+     * move itself; for UNKNOWN, the heuristic score
+     */
+    public int getValue(int cell) {
+        return mValues[cell];
+    }
+
+    /**
+     * @return plies searched below every move, or Integer.MAX_VALUE if the
+     * values are from a complete solution
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * @return true if every evaluated cell has a proven outcome
+     */
+    public boolean isSolved() {
+        for (byte outcome : mOutcomes) {
+            if (outcome == UNKNOWN)
+                return false;
+        }
+        return true;
+    }
+
+    void set(int cell, int outcome, int value) {
+        mOutcomes[cell] = (byte) outcome;
+        mValues[cell] = value;
+    }
+
+    void setDepth(int depth) {
+        mDepth = depth;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.tictactoe;
+
+/* BoardSymmetry.java
+ *
+ * The rotations and reflections that map a rows x cols board onto
+ * itself: all eight dihedral symmetries for a square board, and the
+ * identity, both mirrors and the half turn otherwise.
+ */
+
+public final class BoardSymmetry {
+
+    private BoardSymmetry() {
+    }
+
+    /**
+     * @return one permutation per symmetry; [s][cell] is where cell goes
+     * under symmetry s.  Symmetry 0 is the identity.
+     */
+    public static int[][] transforms(int rows, int cols) {
+        int count = rows == cols ? 8 : 4;
+        int[][] result = new int[count][rows * cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int cell = r * cols + c;
+                int mirrorRow = rows - 1 - r;
+                int mirrorCol = cols - 1 - c;
+                result[0][cell] = cell;
+                result[1][cell] = r * cols + mirrorCol;             // mirror left-right
+                result[2][cell] = mirrorRow * cols + c;             // mirror top-bottom
+                result[3][cell] = mirrorRow * cols + mirrorCol;     // half turn
+                if (count == 8) {
+                    result[4][cell] = c * cols + r;                 // main diagonal
+                    result[5][cell] = mirrorCol * cols + mirrorRow; // anti-diagonal
+                    result[6][cell] = c * cols + mirrorRow;         // quarter turn clockwise
+                    result[7][cell] = mirrorCol * cols + r;         // quarter turn counter-clockwise
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the inverse permutations of transforms.
+     */
+    public static int[][] inverses(int[][] transforms) {
+        int[][] result = new int[transforms.length][];
+        for (int s = 0; s < transforms.length; s++) {
+            result[s] = new int[transforms[s].length];
+            for (int cell = 0; cell < transforms[s].length; cell++)
+                result[s][transforms[s][cell]] = cell;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,448 @@
+package com.example.tictactoe;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/* ComputerMoveScheduler.java
+ *
+ * Runs the computer's move off the UI thread.  Each request snapshots the
+ * board, searches on a private copy of the game on the background
+ * executor, and delivers the move through the foreground executor (the
+ * main thread on Android).  Requests are numbered, so cancel() both stops
+ * a running search and drops any result that is already on its way.
+ *
+ * Hint analyses of the human's options run the same way, in slices, and a
+ * move request cancels them.
+ *
+ * While the human thinks, the scheduler can ponder: it predicts the
+ * human's reply and searches the computer's answer to it, on one thread
+ * whatever setThreads() gives move searches, and in slices that rest
+ * between them, so pondering uses at most its duty cycle of one core.
+ * The search engine keeps the result and its tables, so if the human plays
+ * the predicted move the next request finishes at once or searches deeper
+ * in its budget; any other move only finds the shared subtrees warm.
+ *
+ * The background executor must run tasks one at a time; the private game
+ * and its search engine are only touched from there.  The engine's own
+ * helper threads run only inside a search started there.  The game and
+ * engine are built by the first background task, so creating a scheduler
+ * costs the calling thread nothing and the first request waits for them
+ * in the queue.
+ */
+
+public class ComputerMoveScheduler {
+
+    public interface Callback {
+        void onComputerMove(int move);
+    }
+
+    public interface AnalysisCallback {
+        void onAnalysis(BoardAnalysis analysis);
+    }
+
+    // An analysis runs in slices that double from about one frame, so a
+    // rough answer shows at once and a move request waits at most a slice
+    private static final long FIRST_SLICE_MILLIS = 16;
+    private static final long LAST_SLICE_MILLIS = 1024;
+    // Pondering searches in slices this long, so a cancel waits at most
+    // one node check and the rest between slices keeps to the duty cycle
+    private static final long PONDER_SLICE_MILLIS = 100;
+    public static final double DEFAULT_PONDER_DUTY_CYCLE = 0.5;
+
+    private final Executor mBackground;
+    private final Executor mForeground;
+    // The 3 x 3 board is played from a table, never searched
+    private final boolean mStandard;
+    // Threads a move search uses through Lazy SMP
+    private volatile int mThreads = Runtime.getRuntime().availableProcessors();
+    private TicTacToeGame mSearchGame;
+    // Null until the first background task built it; also stopped from
+    // the foreground
+    private volatile SearchEngine mEngine;
+
+    // Incremented by every request and cancel; a result is only delivered
+    // if no newer request or cancel happened in between
+    private volatile int mGeneration;
+    private boolean mThinking;
+    // The same for analyses, which never deliver after a move request
+    private volatile int mAnalysisGeneration;
+    private boolean mAnalyzing;
+    // The same for pondering; a cancel also wakes a slice that is resting
+    private volatile int mPonderGeneration;
+    private boolean mPondering;
+    private volatile double mPonderDutyCycle = DEFAULT_PONDER_DUTY_CYCLE;
+    private final Object mPonderLock = new Object();
+    // The position pondered for the computer, after the predicted reply;
+    // only touched on the background executor
+    private char[] mPonderBoard;
+    // Ultimate games are searched on their own private copy, created by the
+    // first such request; the engine is also stopped from the foreground
+    private UltimateGame mUltimateGame;
+    private volatile UltimateEngine mUltimateEngine;
+
+    public ComputerMoveScheduler(final int rows, final int cols, final int winLength, Executor background,
+                                 Executor foreground) {
+        mBackground = background;
+        mForeground = foreground;
+        mStandard = rows == 3 && cols == 3 && winLength == 3;
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSearchGame = new TicTacToeGame(rows, cols, winLength);
+                mEngine = mSearchGame.getSearchEngine();
+            }
+        });
+    }
+
+    /**
+     * Search moves on this many threads, the background executor's
+     * included; every core by default.  Pondering always searches on one.
+     * Takes effect from the next request.
+     */
+    public void setThreads(int threads) {
+        mThreads = Math.max(1, threads);
+    }
+
+    private void stopEngine() {
+        SearchEngine engine = mEngine;
+        if (engine != null)
+            engine.stop();
+    }
+
+    /**
+     * Give the search an opening book.  Takes effect on the background
+     * executor, before any request made after this call.
+     */
+    public void setOpeningBook(final OpeningBook book) {
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSearchGame.setOpeningBook(book);
+            }
+        });
+    }
+
+    /**
+     * Give the search a tablebase, like setOpeningBook().
+     */
+    public void setTablebase(final Tablebase tablebase) {
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSearchGame.setTablebase(tablebase);
+            }
+        });
+    }
+
+    /**
+     * Give the search a learned network, like setOpeningBook().
+     */
+    public void setNetwork(final NTupleNetwork network) {
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSearchGame.setNetwork(network);
+            }
+        });
+    }
+
+    /**
+     * @return true between a request and the delivery or cancellation of
+     * its move.  Only meaningful on the foreground thread.
+     */
+    public boolean isThinking() {
+        return mThinking;
+    }
+
+    /**
+     * Search for a computer move in the current position of game.  The
+     * game itself is not touched; the callback receives the move on the
+     * foreground executor and is expected to play it.
+     */
+    public void requestMove(TicTacToeGame game, final int difficulty, final SearchBudget budget, final Callback callback) {
+        cancelAnalysis();
+        cancelPondering();
+        // A search for an older request is no longer wanted
+        if (mThinking)
+            stopEngine();
+        final int generation = ++mGeneration;
+        final char[] board = game.saveBoard();
+        mThinking = true;
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                mEngine.resume();
+                if (generation != mGeneration)
+                    return;
+                mSearchGame.restoreBoard(board);
+                mEngine.setThreads(mStandard ? 1 : mThreads);
+                if (mPonderBoard != null) {
+                    Metrics.get().recordPonder(Arrays.equals(board, mPonderBoard));
+                    mPonderBoard = null;
+                }
+                long start = System.nanoTime();
+                final int move = mSearchGame.getComputerMove(difficulty, budget);
+                Metrics.get().recordMove(difficulty, System.nanoTime() - start);
+                mForeground.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration)
+                            return;
+                        mThinking = false;
+                        callback.onComputerMove(move);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Build the ultimate game's tables and engine on the background
+     * executor now rather than on the first ultimate request.
+     */
+    public void prepareUltimate() {
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                getUltimateGame();
+            }
+        });
+    }
+
+    // Only on the background executor
+    private UltimateGame getUltimateGame() {
+        if (mUltimateGame == null) {
+            mUltimateGame = new UltimateGame();
+            mUltimateEngine = mUltimateGame.getEngine();
+        }
+        return mUltimateGame;
+    }
+
+    /**
+     * Search for a computer move in the current position of an ultimate
+     * game, like requestMove().  The computer plays O.
+     */
+    public void requestUltimateMove(UltimateGame game, final int difficulty, final SearchBudget budget,
+                                    final Callback callback) {
+        cancelAnalysis();
+        cancelPondering();
+        if (mThinking)
+            stopUltimate();
+        final int generation = ++mGeneration;
+        final int[] moves = game.saveMoves();
+        final char first = moves.length % 2 == 0 ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+        mThinking = true;
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                UltimateGame game = getUltimateGame();
+                mUltimateEngine.resume();
+                if (generation != mGeneration)
+                    return;
+                game.restoreMoves(moves, first);
+                long start = System.nanoTime();
+                final int move = game.getMove(TicTacToeGame.COMPUTER_PLAYER, difficulty, budget);
+                Metrics.get().recordMove(difficulty, System.nanoTime() - start);
+                mForeground.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration)
+                            return;
+                        mThinking = false;
+                        callback.onComputerMove(move);
+                    }
+                });
+            }
+        });
+    }
+
+    private void stopUltimate() {
+        UltimateEngine engine = mUltimateEngine;
+        if (engine != null)
+            engine.stop();
+    }
+
+    /**
+     * Abandon the pending request, if any.  A running search stops at its
+     * next node check and its result is discarded.
+     */
+    public void cancel() {
+        cancelAnalysis();
+        cancelPondering();
+        mGeneration++;
+        mThinking = false;
+        stopEngine();
+        stopUltimate();
+    }
+
+    /**
+     * Value every open cell as player's next move in the current position
+     * of game.  The callback runs on the foreground executor once per
+     * slice, with deeper results each time, until the position is solved,
+     * the last slice ends, or the analysis is cancelled.  Each slice
+     * starts from the transposition table the previous ones filled.
+     */
+    public void requestAnalysis(TicTacToeGame game, char player, AnalysisCallback callback) {
+        cancelAnalysis();
+        cancelPondering();
+        mAnalyzing = true;
+        mBackground.execute(new AnalysisSlice(++mAnalysisGeneration, game.saveBoard(), player, callback,
+                FIRST_SLICE_MILLIS));
+    }
+
+    public void cancelAnalysis() {
+        mAnalysisGeneration++;
+        if (mAnalyzing) {
+            mAnalyzing = false;
+            stopEngine();
+        }
+    }
+
+    private class AnalysisSlice implements Runnable {
+        private final int mSliceGeneration;
+        private final char[] mBoard;
+        private final char mPlayer;
+        private final AnalysisCallback mCallback;
+        private final long mMillis;
+
+        AnalysisSlice(int generation, char[] board, char player, AnalysisCallback callback, long millis) {
+            mSliceGeneration = generation;
+            mBoard = board;
+            mPlayer = player;
+            mCallback = callback;
+            mMillis = millis;
+        }
+
+        @Override
+        public void run() {
+            mEngine.resume();
+            if (mSliceGeneration != mAnalysisGeneration)
+                return;
+            mSearchGame.restoreBoard(mBoard);
+            final BoardAnalysis analysis = mSearchGame.evaluateAllMoves(mPlayer, SearchBudget.millis(mMillis));
+            final boolean last = analysis.isSolved() || mMillis >= LAST_SLICE_MILLIS;
+            mForeground.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mSliceGeneration != mAnalysisGeneration)
+                        return;
+                    if (last)
+                        mAnalyzing = false;
+                    mCallback.onAnalysis(analysis);
+                }
+            });
+            if (!last && mSliceGeneration == mAnalysisGeneration)
+                mBackground.execute(new AnalysisSlice(mSliceGeneration, mBoard, mPlayer, mCallback, mMillis * 2));
+        }
+    }
+
+    /**
+     * Share of wall-clock time pondering may search, above 0 and at most 1
+     * for no rest.  Takes effect from the next slice.
+     */
+    public void setPonderDutyCycle(double dutyCycle) {
+        if (dutyCycle <= 0 || dutyCycle > 1)
+            throw new IllegalArgumentException("Duty cycle out of range: " + dutyCycle);
+        mPonderDutyCycle = dutyCycle;
+    }
+
+    /**
+     * @return true between startPondering() and its search finishing or
+     * being cancelled.  Only meaningful on the foreground thread.
+     */
+    public boolean isPondering() {
+        return mPondering;
+    }
+
+    /**
+     * Think on the human's time in the current position of game, with the
+     * human to move: predict the human's reply as the given level would
+     * play it, then search the computer's answer at that level until the
+     * search finishes or pondering is cancelled.  A move request, an
+     * analysis or cancel() stops it.
+     */
+    public void startPondering(TicTacToeGame game, int difficulty) {
+        cancelPondering();
+        mPondering = true;
+        mBackground.execute(new PonderSlice(++mPonderGeneration, game.saveBoard(), difficulty, false));
+    }
+
+    public void cancelPondering() {
+        mPonderGeneration++;
+        if (mPondering) {
+            mPondering = false;
+            stopEngine();
+            synchronized (mPonderLock) {
+                mPonderLock.notifyAll();
+            }
+        }
+    }
+
+    private class PonderSlice implements Runnable {
+        private final int mSliceGeneration;
+        private final char[] mBoard;
+        private final int mDifficulty;
+        // False for the first slice, which predicts the human's reply
+        private final boolean mPredicted;
+
+        PonderSlice(int generation, char[] board, int difficulty, boolean predicted) {
+            mSliceGeneration = generation;
+            mBoard = board;
+            mDifficulty = difficulty;
+            mPredicted = predicted;
+        }
+
+        @Override
+        public void run() {
+            mEngine.resume();
+            if (mSliceGeneration != mPonderGeneration)
+                return;
+            long start = System.nanoTime();
+            SearchBudget slice = SearchBudget.millis(PONDER_SLICE_MILLIS);
+            mSearchGame.restoreBoard(mBoard);
+            // Helpers would multiply the duty cycle by the core count
+            mEngine.setThreads(1);
+            boolean finished;
+            if (!mPredicted) {
+                finished = mSearchGame.checkForWinner() != 0;
+                if (!finished) {
+                    mSearchGame.getMove(TicTacToeGame.HUMAN_PLAYER, mDifficulty, slice);
+                    finished = mSearchGame.checkForWinner() != 0;
+                }
+                mPonderBoard = mSearchGame.saveBoard();
+            } else {
+                finished = mSearchGame.ponder(TicTacToeGame.COMPUTER_PLAYER, mDifficulty, slice);
+            }
+            if (finished) {
+                mForeground.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mSliceGeneration == mPonderGeneration)
+                            mPondering = false;
+                    }
+                });
+                return;
+            }
+            double duty = mPonderDutyCycle;
+            rest((long) ((System.nanoTime() - start) * (1 - duty) / duty));
+            if (mSliceGeneration == mPonderGeneration)
+                mBackground.execute(new PonderSlice(mSliceGeneration, mPonderBoard, mDifficulty, true));
+        }
+
+        // Wait out the rest of the duty cycle, or until cancelled
+        private void rest(long nanos) {
+            long deadline = System.nanoTime() + nanos;
+            synchronized (mPonderLock) {
+                long left;
+                while (mSliceGeneration == mPonderGeneration && (left = deadline - System.nanoTime()) > 0) {
+                    try {
+                        mPonderLock.wait(left / 1000000, (int) (left % 1000000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.tictactoe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/* GameLog.java
+ *
+ * Append-only record of finished games.  Each game is one header long
+ * (timestamp, difficulty, first player, result, board preset, move count)
+ * followed by its moves packed into longs: 4 bits per move on boards of up
+ * to 16 cells, so a whole 3 x 3 game is one header and one move word, and
+ * 8 bits per move on larger boards.
+ *
+ * A second file holds the byte offset of every game.  Both files are read
+ * through memory maps, so replaying game n is a couple of lookups and
+ * statistics over the whole history walk the maps without copying games
+ * onto the heap.
+ *
+ * Appends are synchronized; reads see every game appended before them.
+ */
+
+public class GameLog implements Closeable {
+
+    public static final String DATA_FILE = "games.log";
+    public static final String INDEX_FILE = "games.idx";
+
+    // Result codes are those of TicTacToeGame.checkForWinner(), plus this
+    public static final int UNFINISHED = 0;
+    public static final int RESULT_COUNT = 4;
+
+    public static final int MAX_MOVES = 255;
+
+    // Header layout, from the low bit up
+    private static final long TIMESTAMP_MASK = (1L << 42) - 1;
+    private static final int DIFFICULTY_SHIFT = 42;
+    private static final int FIRST_PLAYER_SHIFT = 44;
+    private static final int RESULT_SHIFT = 45;
+    private static final int PRESET_SHIFT = 47;
+    private static final int COUNT_SHIFT = 50;
+    // Third difficulty bit, added after the count so older logs still read
+    private static final int DIFFICULTY_HIGH_SHIFT = 58;
+
+    private final RandomAccessFile mDataFile;
+    private final RandomAccessFile mIndexFile;
+    private final FileChannel mData;
+    private final FileChannel mIndex;
+    private final ByteBuffer mWriteBuffer;
+    private final ByteBuffer mIndexEntry;
+    private long mDataSize;
+    private int mCount;
+
+    // Read-only maps, renewed when they fall behind the files
+    private volatile LongBuffer mDataMap;
+    private volatile LongBuffer mIndexMap;
+    private int mMappedCount = -1;
+
+    /**
+     * Open the log in directory, creating it if needed.  A game whose write
+     * was cut short is dropped.
+     */
+    public GameLog(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        mDataFile = new RandomAccessFile(new File(directory, DATA_FILE), "rw");
+        mIndexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        mData = mDataFile.getChannel();
+        mIndex = mIndexFile.getChannel();
+        mWriteBuffer = ByteBuffer.allocate(8 * (2 + MAX_MOVES * 8 / 64)).order(ByteOrder.LITTLE_ENDIAN);
+        mIndexEntry = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        recover();
+    }
+
+    //--- Data is written before its index entry, so trim whichever is ahead
+    private void recover() throws IOException {
+        int count = (int) (mIndex.size() / 8);
+        long dataSize = 0;
+        ByteBuffer word = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (count > 0) {
+            word.clear();
+            mIndex.read(word, (count - 1) * 8L);
+            long offset = word.getLong(0);
+            word.clear();
+            if (mData.read(word, offset) == 8) {
+                long end = offset + 8L * recordWords(word.getLong(0));
+                if (end <= mData.size()) {
+                    dataSize = end;
+                    break;
+                }
+            }
+            count--;
+        }
+        mIndex.truncate(count * 8L);
+        mData.truncate(dataSize);
+        mCount = count;
+        mDataSize = dataSize;
+    }
+
+    public synchronized int getGameCount() {
+        return mCount;
+    }
+
+    /**
+     * Append a game.
+     *
+     * @param moves cells in the order they were played, starting with firstPlayer
+     * @return the number of the new game
+     */
+    public synchronized int append(int preset, int difficulty, char firstPlayer, int result,
+                                   long timestamp, int[] moves, int moveCount) throws IOException {
+        if (moveCount > MAX_MOVES)
+            throw new IllegalArgumentException("Too many moves: " + moveCount);
+        long header = (timestamp & TIMESTAMP_MASK)
+                | (long) (difficulty & 3) << DIFFICULTY_SHIFT
+                | (long) (difficulty >> 2 & 1) << DIFFICULTY_HIGH_SHIFT
+                | (long) (firstPlayer == TicTacToeGame.COMPUTER_PLAYER ? 1 : 0) << FIRST_PLAYER_SHIFT
+                | (long) (result & 3) << RESULT_SHIFT
+                | (long) (preset & 7) << PRESET_SHIFT
+                | (long) moveCount << COUNT_SHIFT;
+        int bits = bitsPerMove(preset);
+        mWriteBuffer.clear();
+        mWriteBuffer.putLong(header);
+        long word = 0;
+        int used = 0;
+        for (int i = 0; i < moveCount; i++) {
+            word |= (long) moves[i] << used;
+            used += bits;
+            if (used == 64) {
+                mWriteBuffer.putLong(word);
+                word = 0;
+                used = 0;
+            }
+        }
+        if (used > 0)
+            mWriteBuffer.putLong(word);
+        mWriteBuffer.flip();
+        long offset = mDataSize;
+        while (mWriteBuffer.hasRemaining())
+            mDataSize += mData.write(mWriteBuffer, mDataSize);
+
+        mIndexEntry.clear();
+        mIndexEntry.putLong(0, offset);
+        while (mIndexEntry.hasRemaining())
+            mIndex.write(mIndexEntry, mCount * 8L + mIndexEntry.position());
+        return mCount++;
+    }
+
+    /**
+     * Force appended games to the storage device.
+     */
+    public synchronized void sync() throws IOException {
+        mData.force(false);
+        mIndex.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mDataMap = null;
+        mIndexMap = null;
+        mDataFile.close();
+        mIndexFile.close();
+    }
+
+    public long getTimestamp(int game) {
+        return header(game) & TIMESTAMP_MASK;
+    }
+
+    public int getDifficulty(int game) {
+        return difficulty(header(game));
+    }
+
+    private static int difficulty(long header) {
+        return (int) (header >>> DIFFICULTY_SHIFT) & 3 | (int) (header >>> DIFFICULTY_HIGH_SHIFT & 1) << 2;
+    }
+
+    public char getFirstPlayer(int game) {
+        return ((header(game) >>> FIRST_PLAYER_SHIFT) & 1) == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER;
+    }
+
+    public int getResult(int game) {
+        return (int) (header(game) >>> RESULT_SHIFT) & 3;
+    }
+
+    public int getBoardPreset(int game) {
+        return (int) (header(game) >>> PRESET_SHIFT) & 7;
+    }
+
+    public int getMoveCount(int game) {
+        return (int) (header(game) >>> COUNT_SHIFT) & MAX_MOVES;
+    }
+
+    public int getMove(int game, int ply) {
+        LongBuffer data = map(game);
+        int start = (int) (mIndexMap.get(game) >>> 3);
+        return move(data, start, bitsPerMove(getBoardPreset(game)), ply);
+    }
+
+    /**
+     * Rebuild a game's position after its first plies moves.
+     */
+    public TicTacToeGame replay(int game, int plies) {
+        TicTacToeGame board = TicTacToeGame.fromPreset(getBoardPreset(game));
+        char player = getFirstPlayer(game);
+        int count = Math.min(plies, getMoveCount(game));
+        for (int ply = 0; ply < count; ply++) {
+            board.setMove(player, getMove(game, ply));
+            player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+        }
+        return board;
+    }
+
+    /**
+     * Count results by opening move and by difficulty over every game on
+     * the given board preset.
+     */
+    public Stats getStats(int preset) {
+        int[] config = TicTacToeGame.BOARD_PRESETS[preset];
+        Stats stats = new Stats(config[0] * config[1]);
+        int count;
+        LongBuffer data;
+        LongBuffer index;
+        synchronized (this) {
+            count = mCount;
+            data = map(count - 1);
+            index = mIndexMap;
+        }
+        int bits = bitsPerMove(preset);
+        for (int game = 0; game < count; game++) {
+            int start = (int) (index.get(game) >>> 3);
+            long header = data.get(start);
+            if (((header >>> PRESET_SHIFT) & 7) != preset)
+                continue;
+            // Three bits can hold levels that do not exist, e.g. in a torn header
+            int difficulty = difficulty(header);
+            if (difficulty >= TicTacToeGame.DIFFICULTY_COUNT)
+                continue;
+            int result = (int) (header >>> RESULT_SHIFT) & 3;
+            stats.mByDifficulty[difficulty][result]++;
+            if (((header >>> COUNT_SHIFT) & MAX_MOVES) > 0)
+                stats.mByOpening[move(data, start, bits, 0)][result]++;
+        }
+        return stats;
+    }
+
+    public static class Stats {
+        private final int[][] mByOpening;
+        private final int[][] mByDifficulty;
+
+        Stats(int cells) {
+            mByOpening = new int[cells][RESULT_COUNT];
+            mByDifficulty = new int[TicTacToeGame.DIFFICULTY_COUNT][RESULT_COUNT];
+        }
+
+        /**
+         * @return how many games that opened on cell ended with result
+         */
+        public int getOpeningCount(int cell, int result) {
+            return mByOpening[cell][result];
+        }
+
+        public int getDifficultyCount(int difficulty, int result) {
+            return mByDifficulty[difficulty][result];
+        }
+
+        /**
+         * @return the share of finished games opening on cell that the
+         * human lost
+         */
+        public double getOpeningLossRate(int cell) {
+            return lossRate(mByOpening[cell]);
+        }
+
+        public double getDifficultyLossRate(int difficulty) {
+            return lossRate(mByDifficulty[difficulty]);
+        }
+
+        private static double lossRate(int[] results) {
+            int finished = results[1] + results[2] + results[3];
+            return finished == 0 ? 0 : (double) results[3] / finished;
+        }
+    }
+
+    private long header(int game) {
+        LongBuffer data = map(game);
+        return data.get((int) (mIndexMap.get(game) >>> 3));
+    }
+
+    private static int move(LongBuffer data, int start, int bits, int ply) {
+        int bit = ply * bits;
+        return (int) (data.get(start + 1 + (bit >>> 6)) >>> (bit & 63)) & ((1 << bits) - 1);
+    }
+
+    //--- Map both files again if game lies past the current maps
+    private synchronized LongBuffer map(int game) {
+        if (game >= mCount || game < -1)
+            throw new IndexOutOfBoundsException("Game " + game + " of " + mCount);
+        if (game >= mMappedCount) {
+            try {
+                mDataMap = mData.map(FileChannel.MapMode.READ_ONLY, 0, mDataSize)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                mIndexMap = mIndex.map(FileChannel.MapMode.READ_ONLY, 0, mCount * 8L)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map game log", e);
+            }
+            mMappedCount = mCount;
+        }
+        return mDataMap;
+    }
+
+    private static int recordWords(long header) {
+        int count = (int) (header >>> COUNT_SHIFT) & MAX_MOVES;
+        int bits = bitsPerMove((int) (header >>> PRESET_SHIFT) & 7);
+        return 1 + (count * bits + 63) / 64;
+    }
+
+    private static int bitsPerMove(int preset) {
+        if (preset >= TicTacToeGame.BOARD_PRESETS.length)
+            return 8;
+        int[] config = TicTacToeGame.BOARD_PRESETS[preset];
+        return config[0] * config[1] <= 16 ? 4 : 8;
+    }
+}
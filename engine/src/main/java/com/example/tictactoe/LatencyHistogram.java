@@ -0,0 +1,96 @@
+package com.example.tictactoe;
+
+/* LatencyHistogram.java
+ *
+ * Fixed-memory histogram of non-negative values (typically nanoseconds)
+ * with log-linear buckets: every power of two is split into 32 buckets,
+ * so percentiles are accurate to about 3% over the whole long range.
+ * Recording never allocates.  Not thread-safe; record per thread and
+ * add() the results together.
+ */
+
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mTotal;
+    private long mSum;
+    private long mMax;
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Smallest value that falls into the bucket
+    private static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (1L << exponent) | (sub << (exponent - SUB_BITS));
+    }
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        mCounts[bucketOf(value)]++;
+        mTotal++;
+        mSum += value;
+        if (value > mMax)
+            mMax = value;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++)
+            mCounts[i] += other.mCounts[i];
+        mTotal += other.mTotal;
+        mSum += other.mSum;
+        mMax = Math.max(mMax, other.mMax);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            mCounts[i] = 0;
+        mTotal = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    public long getCount() {
+        return mTotal;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public double getMean() {
+        return mTotal == 0 ? 0 : (double) mSum / mTotal;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the lowest value of the bucket holding the given percentile
+     */
+    public long getPercentile(double percentile) {
+        if (mTotal == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * mTotal);
+        if (rank < 1)
+            rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank)
+                return Math.min(lowestValue(i), mMax);
+        }
+        return mMax;
+    }
+}
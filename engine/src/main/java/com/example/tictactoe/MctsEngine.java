@@ -0,0 +1,480 @@
+package com.example.tictactoe;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* MctsEngine.java
+ *
+ * Monte Carlo Tree Search with UCT selection for a TicTacToeGame of any
+ * size, using one worker thread per core.
+ *
+ * In TREE_PARALLEL mode all workers share one tree.  Node statistics live
+ * in atomic arrays and are updated without locks; a worker counts its
+ * visit on the way down and adds the result on the way back, so a node
+ * that is being played out looks like a loss to the other workers until
+ * then (virtual loss) and they spread to other branches.
+ *
+ * In ROOT_PARALLEL mode every worker grows its own tree and the root
+ * visit counts are summed at the end.
+ *
+ * A playout budget is always met exactly.  With a seed, a playout budget
+ * and either ROOT_PARALLEL or a single thread the chosen move is
+ * reproducible; a shared tree depends on thread timing.
+ */
+
+public class MctsEngine {
+
+    public static final int TREE_PARALLEL = 0;
+    public static final int ROOT_PARALLEL = 1;
+
+    public static final int RANDOM_PLAYOUT = 0;
+    // Win now if possible, otherwise block an immediate loss, otherwise random
+    public static final int HEURISTIC_PLAYOUT = 1;
+
+    public static final int DEFAULT_NODE_BITS = 18;
+    private static final double EXPLORATION = 1.4;
+    // Boards up to this size expand every open spot; larger boards only
+    // expand spots within NEIGHBOR_RADIUS of a stone
+    private static final int SMALL_BOARD = 16;
+    private static final int NEIGHBOR_RADIUS = 2;
+    private static final int TIME_CHECK_INTERVAL = 63;
+
+    // Playout results in half points for the player who moved into a node
+    private static final int WIN = 2;
+    private static final int DRAW = 1;
+    private static final int LOSS = 0;
+
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    // Left unexpanded for good because the tree is full
+    private static final int LEAF = -3;
+
+    private final TicTacToeGame mGame;
+    private final int mThreads;
+    private final int mNodeCapacity;
+    private final Worker[] mWorkers;
+    private ExecutorService mPool;
+
+    private int mMode = TREE_PARALLEL;
+    private int mPlayoutPolicy = RANDOM_PLAYOUT;
+    private long mSeed = System.nanoTime();
+
+    private final AtomicLong mPlayouts = new AtomicLong();
+    private volatile boolean mStopped;
+
+    public MctsEngine(TicTacToeGame game) {
+        this(game, Runtime.getRuntime().availableProcessors(), DEFAULT_NODE_BITS);
+    }
+
+    public MctsEngine(TicTacToeGame game, int threads, int nodeBits) {
+        mGame = game;
+        mThreads = Math.max(1, threads);
+        mNodeCapacity = 1 << nodeBits;
+        mWorkers = new Worker[mThreads];
+        for (int i = 0; i < mThreads; i++)
+            mWorkers[i] = new Worker(new TicTacToeGame(game.getRows(), game.getColumns(), game.getWinLength()));
+    }
+
+    public void setMode(int mode) {
+        mMode = mode;
+    }
+
+    public void setPlayoutPolicy(int policy) {
+        mPlayoutPolicy = policy;
+    }
+
+    public void setSeed(long seed) {
+        mSeed = seed;
+    }
+
+    public int getThreadCount() {
+        return mThreads;
+    }
+
+    /**
+     * @return the number of playouts run by the last search.
+     */
+    public long getPlayoutCount() {
+        return mPlayouts.get();
+    }
+
+    public void stop() {
+        mStopped = true;
+    }
+
+    public void resume() {
+        mStopped = false;
+    }
+
+    /**
+     * Release the worker threads.  The engine starts new ones if it is
+     * used again.
+     */
+    public synchronized void shutdown() {
+        if (mPool != null) {
+            mPool.shutdownNow();
+            mPool = null;
+        }
+    }
+
+    /**
+     * Find the most visited move for player.  The budget counts playouts
+     * as nodes; with no limit at all the search runs until stop().
+     */
+    public int findBestMove(char player, SearchBudget budget) {
+        mPlayouts.set(0);
+        final char[] board = mGame.saveBoard();
+        final long deadline = budget.getMillis() > 0 ? System.nanoTime() + budget.getMillis() * 1000000L : Long.MAX_VALUE;
+        final long limit = budget.getNodes() > 0 ? budget.getNodes() : Long.MAX_VALUE;
+
+        int trees = mMode == ROOT_PARALLEL ? mThreads : 1;
+        Tree[] forest = new Tree[trees];
+        for (int t = 0; t < trees; t++) {
+            forest[t] = new Tree(mMode == ROOT_PARALLEL ? Math.max(1024, mNodeCapacity / mThreads) : mNodeCapacity);
+            forest[t].expandRoot(mWorkers[t], board, player);
+        }
+        if (forest[0].mChildCount[0] == 0)
+            return -1;
+
+        // The shared tree splits one budget; separate trees get a fixed share each
+        AtomicLong sharedBudget = new AtomicLong(limit);
+        Future<?>[] futures = new Future<?>[mThreads];
+        ExecutorService pool = getPool();
+        for (int i = 0; i < mThreads; i++) {
+            final Worker worker = mWorkers[i];
+            final Tree tree = forest[mMode == ROOT_PARALLEL ? i : 0];
+            final AtomicLong remaining;
+            if (mMode == ROOT_PARALLEL)
+                remaining = new AtomicLong(limit == Long.MAX_VALUE ? limit : limit / mThreads + (i < limit % mThreads ? 1 : 0));
+            else
+                remaining = sharedBudget;
+            worker.reset(board, mSeed + 0x9E3779B97F4A7C15L * (i + 1));
+            futures[i] = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    worker.run(tree, player, remaining, deadline);
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("MCTS worker failed", e);
+            }
+        }
+
+        // Most visited root move over all trees
+        Tree first = forest[0];
+        int bestMove = -1;
+        long bestVisits = -1;
+        for (int c = 0; c < first.mChildCount[0]; c++) {
+            int move = first.mMove[first.mFirstChild.get(0) + c];
+            long visits = 0;
+            for (Tree tree : forest)
+                visits += tree.rootVisits(move);
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                bestMove = move;
+            }
+        }
+        Metrics.get().recordPlayouts(mPlayouts.get());
+        return bestMove;
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (mPool == null) {
+            mPool = Executors.newFixedThreadPool(mThreads, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "mcts-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mPool;
+    }
+
+    private static char opponent(char player) {
+        return player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+    }
+
+    /**
+     * A search tree in flat arrays.  Node 0 is the root; the children of a
+     * node occupy a contiguous block starting at mFirstChild.
+     */
+    private static class Tree {
+        final int[] mMove;
+        final int[] mChildCount;
+        final AtomicIntegerArray mFirstChild;
+        final AtomicLongArray mVisits;
+        final AtomicLongArray mScores;
+        final AtomicInteger mSize = new AtomicInteger(1);
+
+        Tree(int capacity) {
+            mMove = new int[capacity];
+            mChildCount = new int[capacity];
+            mFirstChild = new AtomicIntegerArray(capacity);
+            mVisits = new AtomicLongArray(capacity);
+            mScores = new AtomicLongArray(capacity);
+            mMove[0] = -1;
+            mFirstChild.set(0, UNEXPANDED);
+        }
+
+        void expandRoot(Worker worker, char[] board, char player) {
+            worker.mGame.restoreBoard(board);
+            if (worker.mGame.checkForWinner() == 0 && mFirstChild.compareAndSet(0, UNEXPANDED, EXPANDING))
+                expand(worker, 0);
+        }
+
+        /**
+         * Allocate the children of a node the caller has claimed.  When the
+         * tree is full the node stays a leaf.
+         */
+        void expand(Worker worker, int node) {
+            int count = worker.generateCandidates();
+            if (mSize.get() + count > mMove.length) {
+                mFirstChild.set(node, LEAF);
+                return;
+            }
+            int first = mSize.getAndAdd(count);
+            if (first + count > mMove.length) {
+                mFirstChild.set(node, LEAF);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                int child = first + i;
+                mMove[child] = worker.mCandidates[i];
+                mFirstChild.set(child, UNEXPANDED);
+            }
+            mChildCount[node] = count;
+            // Publishes the children to the other workers
+            mFirstChild.set(node, first);
+        }
+
+        long rootVisits(int move) {
+            int first = mFirstChild.get(0);
+            for (int c = 0; c < mChildCount[0]; c++) {
+                if (mMove[first + c] == move)
+                    return mVisits.get(first + c);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Per-thread state: a private copy of the game, a random generator and
+     * scratch arrays, all allocated once.
+     */
+    private class Worker {
+        final TicTacToeGame mGame;
+        final int mRows;
+        final int mCols;
+        final int[] mPath;
+        final int[] mCandidates;
+        final int[] mEmpty;
+        long mRandom;
+
+        Worker(TicTacToeGame game) {
+            mGame = game;
+            mRows = game.getRows();
+            mCols = game.getColumns();
+            int cells = game.getBoardSize();
+            mPath = new int[cells + 1];
+            mCandidates = new int[cells];
+            mEmpty = new int[cells];
+        }
+
+        void reset(char[] board, long seed) {
+            mGame.restoreBoard(board);
+            mRandom = seed;
+        }
+
+        // SplitMix64
+        int nextInt(int bound) {
+            long z = (mRandom += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z = z ^ (z >>> 31);
+            return (int) ((z >>> 33) % bound);
+        }
+
+        void run(Tree tree, char rootPlayer, AtomicLong remaining, long deadline) {
+            long iterations = 0;
+            while (!mStopped && remaining.getAndDecrement() > 0) {
+                if ((++iterations & TIME_CHECK_INTERVAL) == 0 && System.nanoTime() >= deadline)
+                    break;
+                iterate(tree, rootPlayer);
+                mPlayouts.incrementAndGet();
+            }
+        }
+
+        void iterate(Tree tree, char rootPlayer) {
+            int node = 0;
+            int depth = 0;
+            int played = 0;
+            char toMove = rootPlayer;
+
+            // Selection: count the visit on the way down (virtual loss)
+            while (true) {
+                tree.mVisits.incrementAndGet(node);
+                mPath[depth++] = node;
+                if (mGame.checkForWinner() != 0)
+                    break;
+                int first = tree.mFirstChild.get(node);
+                if (first == UNEXPANDED && tree.mVisits.get(node) > 1
+                        && tree.mFirstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                    tree.expand(this, node);
+                    first = tree.mFirstChild.get(node);
+                }
+                if (first < 0)
+                    break;
+                int child = select(tree, node, first);
+                mGame.makeMove(toMove, tree.mMove[child]);
+                played++;
+                toMove = opponent(toMove);
+                node = child;
+            }
+
+            // Simulation from the leaf; result for the player who moved last
+            int lastMoverResult = resultForLastMover(toMove);
+
+            // Backpropagation: the mover into each node alternates upwards
+            int result = lastMoverResult;
+            for (int i = depth - 1; i >= 0; i--) {
+                tree.mScores.addAndGet(mPath[i], result);
+                result = WIN - result;
+            }
+            for (int i = 0; i < played; i++)
+                mGame.unmakeMove();
+        }
+
+        private int select(Tree tree, int node, int first) {
+            int count = tree.mChildCount[node];
+            double logParent = Math.log(Math.max(1, tree.mVisits.get(node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            // Start at a random child so unvisited children are tried in random order
+            int offset = nextInt(count);
+            for (int i = 0; i < count; i++) {
+                int child = first + (i + offset) % count;
+                long visits = tree.mVisits.get(child);
+                double value;
+                if (visits == 0)
+                    value = Double.POSITIVE_INFINITY;
+                else
+                    value = tree.mScores.get(child) / (2.0 * visits)
+                            + EXPLORATION * Math.sqrt(logParent / visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Play the position out and return WIN, DRAW or LOSS for the player
+         * who made the last move in the tree (the opponent of toMove).
+         */
+        private int resultForLastMover(char toMove) {
+            char lastMover = opponent(toMove);
+            int winner = mGame.checkForWinner();
+            if (winner != 0)
+                return score(winner, lastMover);
+
+            int empty = 0;
+            for (int i = 0; i < mEmpty.length; i++) {
+                if (mGame.getBoardOccupant(i) == TicTacToeGame.OPEN_SPOT)
+                    mEmpty[empty++] = i;
+            }
+            char player = toMove;
+            int played = 0;
+            while (winner == 0) {
+                int move = pickPlayoutMove(player, empty);
+                // Swap-remove the chosen spot from the open list
+                for (int i = 0; i < empty; i++) {
+                    if (mEmpty[i] == move) {
+                        mEmpty[i] = mEmpty[--empty];
+                        break;
+                    }
+                }
+                winner = mGame.makeMove(player, move);
+                played++;
+                player = opponent(player);
+            }
+            for (int i = 0; i < played; i++)
+                mGame.unmakeMove();
+            return score(winner, lastMover);
+        }
+
+        private int pickPlayoutMove(char player, int empty) {
+            if (mPlayoutPolicy == HEURISTIC_PLAYOUT) {
+                int block = -1;
+                char opponent = opponent(player);
+                for (int i = 0; i < empty; i++) {
+                    int cell = mEmpty[i];
+                    if (mGame.completesLine(player, cell))
+                        return cell;
+                    if (block < 0 && mGame.completesLine(opponent, cell))
+                        block = cell;
+                }
+                if (block >= 0)
+                    return block;
+            }
+            return mEmpty[nextInt(empty)];
+        }
+
+        private int score(int winner, char player) {
+            if (winner == 1)
+                return DRAW;
+            char winningPlayer = winner == 2 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER;
+            return winningPlayer == player ? WIN : LOSS;
+        }
+
+        /**
+         * Fill mCandidates with the moves to expand in the current position.
+         */
+        int generateCandidates() {
+            int cells = mCandidates.length;
+            boolean all = cells <= SMALL_BOARD;
+            int count = 0;
+            boolean anyStone = false;
+            for (int i = 0; i < cells; i++) {
+                if (mGame.getBoardOccupant(i) != TicTacToeGame.OPEN_SPOT) {
+                    anyStone = true;
+                    continue;
+                }
+                if (all || nearStone(i))
+                    mCandidates[count++] = i;
+            }
+            if (!anyStone && !all) {
+                // Empty large board: start in the centre
+                mCandidates[0] = (mRows / 2) * mCols + mCols / 2;
+                count = 1;
+            }
+            return count;
+        }
+
+        private boolean nearStone(int cell) {
+            int row = cell / mCols;
+            int col = cell % mCols;
+            for (int r = Math.max(0, row - NEIGHBOR_RADIUS); r <= Math.min(mRows - 1, row + NEIGHBOR_RADIUS); r++) {
+                for (int c = Math.max(0, col - NEIGHBOR_RADIUS); c <= Math.min(mCols - 1, col + NEIGHBOR_RADIUS); c++) {
+                    if (mGame.getBoardOccupant(r * mCols + c) != TicTacToeGame.OPEN_SPOT)
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.tictactoe;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/* Metrics.java
+ *
+ * Process-wide performance counters: computer think time per difficulty,
+ * search nodes and MCTS playouts, position cache lookups, how often the
+ * human played the pondered move, and the time from a tap to the board
+ * being drawn.  Latencies go into fixed-memory
+ * LatencyHistograms, so recording never allocates.
+ *
+ * Metrics are off by default.  While disabled every record call returns
+ * after one volatile read.  Recording and reading are synchronized; calls
+ * come at most a few times per move, so the lock is uncontended.
+ */
+
+public final class Metrics {
+
+    private static final Metrics sInstance = new Metrics();
+
+    private volatile boolean mEnabled;
+
+    private final LatencyHistogram[] mMoveNanos = new LatencyHistogram[TicTacToeGame.DIFFICULTY_COUNT];
+    private final LatencyHistogram mNodesPerSearch = new LatencyHistogram();
+    private final LatencyHistogram mTapToRenderNanos = new LatencyHistogram();
+    private long mNodes;
+    private long mPlayouts;
+    private long mCacheHits;
+    private long mCacheMisses;
+    private long mPonderHits;
+    private long mPonderMisses;
+
+    private Metrics() {
+        for (int i = 0; i < mMoveNanos.length; i++)
+            mMoveNanos[i] = new LatencyHistogram();
+    }
+
+    public static Metrics get() {
+        return sInstance;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    //--- Recording
+
+    public void recordMove(int difficulty, long nanos) {
+        if (!mEnabled)
+            return;
+        synchronized (this) {
+            mMoveNanos[difficulty].record(nanos);
+        }
+    }
+
+    public void recordSearch(long nodes, long cacheHits, long cacheMisses) {
+        if (!mEnabled)
+            return;
+        synchronized (this) {
+            mNodesPerSearch.record(nodes);
+            mNodes += nodes;
+            mCacheHits += cacheHits;
+            mCacheMisses += cacheMisses;
+        }
+    }
+
+    public void recordPlayouts(long playouts) {
+        if (!mEnabled)
+            return;
+        synchronized (this) {
+            mPlayouts += playouts;
+        }
+    }
+
+    /**
+     * @param hit true if the human played the move pondering predicted
+     */
+    public void recordPonder(boolean hit) {
+        if (!mEnabled)
+            return;
+        synchronized (this) {
+            if (hit)
+                mPonderHits++;
+            else
+                mPonderMisses++;
+        }
+    }
+
+    public void recordTapToRender(long nanos) {
+        if (!mEnabled)
+            return;
+        synchronized (this) {
+            mTapToRenderNanos.record(nanos);
+        }
+    }
+
+    //--- Reading
+
+    public synchronized long getMoveCount(int difficulty) {
+        return mMoveNanos[difficulty].getCount();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return think time in nanoseconds
+     */
+    public synchronized long getMovePercentile(int difficulty, double percentile) {
+        return mMoveNanos[difficulty].getPercentile(percentile);
+    }
+
+    public synchronized long getTapToRenderPercentile(double percentile) {
+        return mTapToRenderNanos.getPercentile(percentile);
+    }
+
+    public synchronized long getTapCount() {
+        return mTapToRenderNanos.getCount();
+    }
+
+    public synchronized long getNodeCount() {
+        return mNodes;
+    }
+
+    public synchronized long getPlayoutCount() {
+        return mPlayouts;
+    }
+
+    public synchronized double getCacheHitRate() {
+        long lookups = mCacheHits + mCacheMisses;
+        return lookups == 0 ? 0 : (double) mCacheHits / lookups;
+    }
+
+    public synchronized double getPonderHitRate() {
+        long ponders = mPonderHits + mPonderMisses;
+        return ponders == 0 ? 0 : (double) mPonderHits / ponders;
+    }
+
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : mMoveNanos)
+            histogram.reset();
+        mNodesPerSearch.reset();
+        mTapToRenderNanos.reset();
+        mNodes = 0;
+        mPlayouts = 0;
+        mCacheHits = 0;
+        mCacheMisses = 0;
+        mPonderHits = 0;
+        mPonderMisses = 0;
+    }
+
+    /**
+     * Write a plain-text summary, one line per metric; latencies in ms.
+     */
+    public synchronized void writeReport(Appendable out) throws IOException {
+        for (int d = 0; d < mMoveNanos.length; d++) {
+            LatencyHistogram h = mMoveNanos[d];
+            out.append(String.format(Locale.US, "move[%d] n=%d p50=%.2f p99=%.2f max=%.2f%n",
+                    d, h.getCount(), h.getPercentile(50) / 1e6, h.getPercentile(99) / 1e6, h.getMax() / 1e6));
+        }
+        out.append(String.format(Locale.US, "tap n=%d p50=%.2f p99=%.2f max=%.2f%n", mTapToRenderNanos.getCount(),
+                mTapToRenderNanos.getPercentile(50) / 1e6, mTapToRenderNanos.getPercentile(99) / 1e6,
+                mTapToRenderNanos.getMax() / 1e6));
+        out.append(String.format(Locale.US, "nodes total=%d p50=%d p99=%d playouts=%d%n", mNodes,
+                mNodesPerSearch.getPercentile(50), mNodesPerSearch.getPercentile(99), mPlayouts));
+        long lookups = mCacheHits + mCacheMisses;
+        out.append(String.format(Locale.US, "cache lookups=%d hit=%.1f%%%n", lookups,
+                lookups == 0 ? 0 : 100.0 * mCacheHits / lookups));
+        long ponders = mPonderHits + mPonderMisses;
+        out.append(String.format(Locale.US, "ponder n=%d hit=%.1f%%%n", ponders,
+                ponders == 0 ? 0 : 100.0 * mPonderHits / ponders));
+    }
+
+    /**
+     * Append a timestamped report to file every periodMillis until the
+     * returned future is cancelled.  Nothing is written while disabled.
+     */
+    public ScheduledFuture<?> scheduleDump(ScheduledExecutorService executor, final File file, long periodMillis) {
+        return executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (!mEnabled)
+                    return;
+                try {
+                    Writer writer = new FileWriter(file, true);
+                    try {
+                        writer.append("# ").append(String.valueOf(System.currentTimeMillis())).append('\n');
+                        writeReport(writer);
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    // A failed dump is retried on the next period
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.tictactoe;
+
+/* NTupleEvaluator.java
+ *
+ * An NTupleNetwork laid over one board.  The evaluator keeps every tuple's
+ * pattern index and the weight sum for both players up to date as stones
+ * are added and removed, so a position's value is read in O(1) and a move
+ * costs O(tuples through its cell).  Weights are copied into fixed-point
+ * ints when the evaluator is built, so the sums stay exact however many
+ * moves are made and taken back.
+ *
+ * Values are the network's weight sum before tanh, times SCALE: the sign
+ * and order of positions are the network's, and the numbers fit the
+ * search's score range.
+ */
+
+public class NTupleEvaluator {
+
+    public static final int SCALE = 1000;
+
+    private final int mCells;
+    private final int mTupleCount;
+    // Per tuple: the offset of its table's weights
+    private final int[] mTupleOffsets;
+    // Per cell: the tuples through it and the cell's power of 3 in each,
+    // cell c's entries at [mCellStart[c], mCellStart[c + 1])
+    private final int[] mCellStart;
+    private final int[] mCellTuples;
+    private final int[] mCellPowers;
+
+    private final int[] mWeights;
+    // Pattern index of every tuple with X's stones as own stones, and with O's
+    private final int[] mHumanIndex;
+    private final int[] mComputerIndex;
+    private int mHumanSum;
+    private int mComputerSum;
+
+    public NTupleEvaluator(NTupleNetwork network, int rows, int cols) {
+        mCells = rows * cols;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        int[] tupleOffsets = new int[network.getTableCount() * 4 * mCells];
+        int[][] tupleCells = new int[tupleOffsets.length][];
+        int count = 0;
+        for (int table = 0; table < network.getTableCount(); table++) {
+            int length = network.getTupleLength(table);
+            for (int[] d : directions) {
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < cols; col++) {
+                        int endRow = row + d[0] * (length - 1);
+                        int endCol = col + d[1] * (length - 1);
+                        if (endRow < 0 || endRow >= rows || endCol < 0 || endCol >= cols)
+                            continue;
+                        int[] cells = new int[length];
+                        for (int i = 0; i < length; i++)
+                            cells[i] = (row + d[0] * i) * cols + col + d[1] * i;
+                        tupleOffsets[count] = network.getTableOffset(table);
+                        tupleCells[count] = cells;
+                        count++;
+                    }
+                }
+            }
+        }
+        mTupleCount = count;
+        mTupleOffsets = new int[count];
+        System.arraycopy(tupleOffsets, 0, mTupleOffsets, 0, count);
+
+        mCellStart = new int[mCells + 1];
+        for (int t = 0; t < count; t++) {
+            for (int cell : tupleCells[t])
+                mCellStart[cell + 1]++;
+        }
+        for (int c = 0; c < mCells; c++)
+            mCellStart[c + 1] += mCellStart[c];
+        mCellTuples = new int[mCellStart[mCells]];
+        mCellPowers = new int[mCellStart[mCells]];
+        int[] fill = new int[mCells];
+        for (int t = 0; t < count; t++) {
+            int power = 1;
+            for (int cell : tupleCells[t]) {
+                int slot = mCellStart[cell] + fill[cell]++;
+                mCellTuples[slot] = t;
+                mCellPowers[slot] = power;
+                power *= 3;
+            }
+        }
+
+        mWeights = new int[network.getWeightCount()];
+        for (int i = 0; i < mWeights.length; i++)
+            mWeights[i] = Math.round(network.getWeight(i) * SCALE);
+        mHumanIndex = new int[count];
+        mComputerIndex = new int[count];
+        clear();
+    }
+
+    public int getTupleCount() {
+        return mTupleCount;
+    }
+
+    /**
+     * Empty the board.
+     */
+    public void clear() {
+        for (int t = 0; t < mTupleCount; t++) {
+            mHumanIndex[t] = 0;
+            mComputerIndex[t] = 0;
+        }
+        mHumanSum = sum(mHumanIndex);
+        mComputerSum = mHumanSum;
+    }
+
+    /**
+     * Load the game's position.
+     */
+    public void reset(TicTacToeGame game) {
+        clear();
+        for (int cell = 0; cell < mCells; cell++) {
+            char occupant = game.getBoardOccupant(cell);
+            if (occupant == TicTacToeGame.HUMAN_PLAYER || occupant == TicTacToeGame.COMPUTER_PLAYER)
+                add(occupant, cell);
+        }
+    }
+
+    private int sum(int[] index) {
+        int sum = 0;
+        for (int t = 0; t < mTupleCount; t++)
+            sum += mWeights[mTupleOffsets[t] + index[t]];
+        return sum;
+    }
+
+    public void add(char player, int cell) {
+        // Own stones are digit 1, the opponent's digit 2
+        int human = player == TicTacToeGame.HUMAN_PLAYER ? 1 : 2;
+        update(cell, human, 3 - human);
+    }
+
+    public void remove(char player, int cell) {
+        int human = player == TicTacToeGame.HUMAN_PLAYER ? 1 : 2;
+        update(cell, -human, human - 3);
+    }
+
+    private void update(int cell, int humanDigit, int computerDigit) {
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+            int t = mCellTuples[i];
+            int offset = mTupleOffsets[t];
+            int power = mCellPowers[i];
+            int human = mHumanIndex[t];
+            int computer = mComputerIndex[t];
+            mHumanIndex[t] = human + humanDigit * power;
+            mComputerIndex[t] = computer + computerDigit * power;
+            mHumanSum += mWeights[offset + mHumanIndex[t]] - mWeights[offset + human];
+            mComputerSum += mWeights[offset + mComputerIndex[t]] - mWeights[offset + computer];
+        }
+    }
+
+    /**
+     * @return the value of the position for player, as just after player
+     * moved
+     */
+    public int value(char player) {
+        return player == TicTacToeGame.HUMAN_PLAYER ? mHumanSum : mComputerSum;
+    }
+
+    /**
+     * @return value(player) after player takes the open cell, without
+     * changing the position
+     */
+    public int valueAfter(char player, int cell) {
+        int[] own = player == TicTacToeGame.HUMAN_PLAYER ? mHumanIndex : mComputerIndex;
+        int sum = value(player);
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+            int t = mCellTuples[i];
+            int index = mTupleOffsets[t] + own[t];
+            sum += mWeights[index + mCellPowers[i]] - mWeights[index];
+        }
+        return sum;
+    }
+
+    //--- Floating-point access to the current patterns, for training
+
+    /**
+     * @return the weight sum for player over the given weights
+     */
+    float sum(float[] weights, char player) {
+        int[] own = player == TicTacToeGame.HUMAN_PLAYER ? mHumanIndex : mComputerIndex;
+        float sum = 0;
+        for (int t = 0; t < mTupleCount; t++)
+            sum += weights[mTupleOffsets[t] + own[t]];
+        return sum;
+    }
+
+    /**
+     * @return sum(weights, player) after player takes the open cell, given
+     * the current sum
+     */
+    float sumAfter(float[] weights, char player, int cell, float sum) {
+        int[] own = player == TicTacToeGame.HUMAN_PLAYER ? mHumanIndex : mComputerIndex;
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+            int t = mCellTuples[i];
+            int index = mTupleOffsets[t] + own[t];
+            sum += weights[index + mCellPowers[i]] - weights[index];
+        }
+        return sum;
+    }
+
+    /**
+     * Copy the weight index of every tuple for player into indices.
+     */
+    void weightIndices(char player, int[] indices) {
+        int[] own = player == TicTacToeGame.HUMAN_PLAYER ? mHumanIndex : mComputerIndex;
+        for (int t = 0; t < mTupleCount; t++)
+            indices[t] = mTupleOffsets[t] + own[t];
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.tictactoe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/* NTupleNetwork.java
+ *
+ * Learned position evaluation for the k-in-a-row games: a lookup table of
+ * weights for every pattern of own, opponent and open cells along a
+ * straight tuple of k cells, and another for tuples of k + 1, which also
+ * see whether a line is open at its ends.  Each table is shared by every
+ * tuple of its length in every direction and place on the board, so a
+ * network depends only on k and one network serves every board size.
+ *
+ * The value of a position for a player is tanh of the sum of the weights
+ * of all its tuples, read with that player's stones as own stones.  It
+ * estimates the player's result (+1 win, 0 draw, -1 loss) just after the
+ * player has moved.  Train networks with NTupleTrainer and evaluate them
+ * on a board with NTupleEvaluator.
+ *
+ * File layout (big-endian):
+ *   header   int magic, short version, byte win length, byte table count,
+ *            byte tuple length per table
+ *   weights  float per pattern, table by table; a pattern's index is its
+ *            base-3 encoding, first tuple cell least significant, with
+ *            digit 1 = own stone and 2 = opponent stone
+ */
+
+public class NTupleNetwork {
+
+    public static final int MAGIC = 0x54544E54;     // "TTNT"
+    public static final int VERSION = 1;
+
+    private final int mWinLength;
+    private final int[] mLengths;
+    private final int[] mOffsets;
+    // Every table's patterns back to back; shared with the trainer
+    final float[] mWeights;
+
+    /**
+     * An untrained network, all weights 0, for games of winLength in a row.
+     */
+    public NTupleNetwork(int winLength) {
+        this(winLength, new int[]{winLength, winLength + 1});
+    }
+
+    private NTupleNetwork(int winLength, int[] lengths) {
+        mWinLength = winLength;
+        mLengths = lengths;
+        mOffsets = new int[lengths.length];
+        int count = 0;
+        for (int t = 0; t < lengths.length; t++) {
+            mOffsets[t] = count;
+            count += pow3(lengths[t]);
+        }
+        mWeights = new float[count];
+    }
+
+    static int pow3(int n) {
+        int pow = 1;
+        for (int i = 0; i < n; i++)
+            pow *= 3;
+        return pow;
+    }
+
+    /**
+     * Read a network in the format written by write().  The stream is not
+     * closed.
+     */
+    public static NTupleNetwork read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not an n-tuple network");
+        int version = in.readShort();
+        if (version != VERSION)
+            throw new IOException("Unsupported n-tuple network version " + version);
+        int winLength = in.readByte();
+        int[] lengths = new int[in.readByte()];
+        for (int t = 0; t < lengths.length; t++)
+            lengths[t] = in.readByte();
+        NTupleNetwork network = new NTupleNetwork(winLength, lengths);
+        for (int i = 0; i < network.mWeights.length; i++)
+            network.mWeights[i] = in.readFloat();
+        return network;
+    }
+
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(mWinLength);
+            out.writeByte(mLengths.length);
+            for (int length : mLengths)
+                out.writeByte(length);
+            for (float weight : mWeights)
+                out.writeFloat(weight);
+        } finally {
+            out.close();
+        }
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    public int getTableCount() {
+        return mLengths.length;
+    }
+
+    public int getTupleLength(int table) {
+        return mLengths[table];
+    }
+
+    /**
+     * @return the index of the table's first weight in the weight array
+     */
+    public int getTableOffset(int table) {
+        return mOffsets[table];
+    }
+
+    public int getWeightCount() {
+        return mWeights.length;
+    }
+
+    public float getWeight(int index) {
+        return mWeights[index];
+    }
+
+    /**
+     * @return true if the network was trained for this game's win length
+     */
+    public boolean matches(TicTacToeGame game) {
+        return game.getWinLength() == mWinLength;
+    }
+}
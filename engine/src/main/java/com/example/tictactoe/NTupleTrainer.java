@@ -0,0 +1,311 @@
+package com.example.tictactoe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* NTupleTrainer.java
+ *
+ * Trains an NTupleNetwork by temporal-difference self-play, TD(0) on
+ * afterstates.  Both sides play the same network: an immediate win when
+ * there is one, else a block of the opponent's, otherwise the move with
+ * the best value after it, or a random move near the stones with the
+ * explore probability.  After every move the
+ * previous player's afterstate is pulled towards the negated value of the
+ * new one; a game's last move is pulled towards its result.
+ *
+ * Every thread plays its own games and updates the shared weights without
+ * locks.  The updates are small and sparse, so the occasional lost write
+ * between threads does not hurt the training, and it scales with the
+ * cores.
+ *
+ *   java -cp <classes> com.example.tictactoe.NTupleTrainer \
+ *       --board 9x9x5 --games 200000 --out 5.ntw
+ */
+
+public class NTupleTrainer {
+
+    private int mRows = 9;
+    private int mCols = 9;
+    private int mWinLength = 5;
+    private long mGames = 100000;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private float mLearningRate = 0.1f;
+    private double mExplore = 0.05;
+    private long mSeed = 1;
+    private NTupleNetwork mNetwork;
+
+    public NTupleTrainer setBoard(int rows, int cols, int winLength) {
+        mRows = rows;
+        mCols = cols;
+        mWinLength = winLength;
+        return this;
+    }
+
+    public NTupleTrainer setGames(long games) {
+        mGames = games;
+        return this;
+    }
+
+    public NTupleTrainer setThreads(int threads) {
+        mThreads = threads;
+        return this;
+    }
+
+    /**
+     * Step size for one afterstate, shared out over its tuples.
+     */
+    public NTupleTrainer setLearningRate(float learningRate) {
+        mLearningRate = learningRate;
+        return this;
+    }
+
+    public NTupleTrainer setExplore(double explore) {
+        mExplore = explore;
+        return this;
+    }
+
+    public NTupleTrainer setSeed(long seed) {
+        mSeed = seed;
+        return this;
+    }
+
+    /**
+     * Continue training the given network instead of a new one.
+     */
+    public NTupleTrainer setNetwork(NTupleNetwork network) {
+        mNetwork = network;
+        return this;
+    }
+
+    public NTupleNetwork getNetwork() {
+        return mNetwork;
+    }
+
+    private class Worker extends Thread {
+        private final TicTacToeGame mGame;
+        private final NTupleEvaluator mEvaluator;
+        private final Random mRandom;
+        private final AtomicLong mRemaining;
+        private final int[] mOpen;
+        // Weight indices of the previous and the final afterstate
+        private final int[] mPrevious;
+        private final int[] mCurrent;
+
+        Worker(int index, AtomicLong remaining) {
+            super("NTupleTrainer-" + index);
+            mRandom = new Random(mSeed * 31 + index);
+            mGame = new TicTacToeGame(mRows, mCols, mWinLength, mRandom);
+            mEvaluator = new NTupleEvaluator(mNetwork, mRows, mCols);
+            mRemaining = remaining;
+            mOpen = new int[mGame.getBoardSize()];
+            mPrevious = new int[mEvaluator.getTupleCount()];
+            mCurrent = new int[mEvaluator.getTupleCount()];
+        }
+
+        @Override
+        public void run() {
+            while (mRemaining.getAndDecrement() > 0)
+                playGame();
+        }
+
+        private void playGame() {
+            float[] weights = mNetwork.mWeights;
+            float step = mLearningRate / mEvaluator.getTupleCount();
+            mGame.clearBoard();
+            mEvaluator.clear();
+            char player = mRandom.nextBoolean() ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER;
+            boolean first = true;
+            while (true) {
+                int move = chooseMove(weights, player);
+                mGame.makeMove(player, move);
+                mEvaluator.add(player, move);
+                int winner = mGame.checkForWinner();
+                // The result for the player who just moved, or the
+                // network's estimate of it
+                float value = winner == 1 ? 0 : winner != 0 ? 1 : (float) Math.tanh(mEvaluator.sum(weights, player));
+                if (!first)
+                    train(weights, mPrevious, -value, step);
+                if (winner != 0) {
+                    mEvaluator.weightIndices(player, mCurrent);
+                    train(weights, mCurrent, value, step);
+                    return;
+                }
+                mEvaluator.weightIndices(player, mPrevious);
+                first = false;
+                player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            }
+        }
+
+        private int chooseMove(float[] weights, char player) {
+            char opponent = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            int count = 0;
+            int block = -1;
+            for (int cell = 0; cell < mOpen.length; cell++) {
+                char occupant = mGame.getBoardOccupant(cell);
+                if (occupant == TicTacToeGame.HUMAN_PLAYER || occupant == TicTacToeGame.COMPUTER_PLAYER)
+                    continue;
+                if (mGame.completesLine(player, cell))
+                    return cell;
+                if (block < 0 && mGame.completesLine(opponent, cell))
+                    block = cell;
+                mOpen[count++] = cell;
+            }
+            if (block >= 0)
+                return block;
+            if (mRandom.nextDouble() < mExplore) {
+                // Explore near the stones, where real games are played
+                for (int tries = 0; tries < 8; tries++) {
+                    int cell = mOpen[mRandom.nextInt(count)];
+                    if (mGame.getMoveCount() == 0 || nearStone(cell))
+                        return cell;
+                }
+            }
+            float sum = mEvaluator.sum(weights, player);
+            int best = mOpen[0];
+            float bestValue = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                float value = mEvaluator.sumAfter(weights, player, mOpen[i], sum);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = mOpen[i];
+                }
+            }
+            return best;
+        }
+
+        private boolean nearStone(int cell) {
+            int row = cell / mCols;
+            int col = cell % mCols;
+            for (int r = Math.max(0, row - 1); r <= Math.min(mRows - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(mCols - 1, col + 1); c++) {
+                    char occupant = mGame.getBoardOccupant(r * mCols + c);
+                    if (occupant == TicTacToeGame.HUMAN_PLAYER || occupant == TicTacToeGame.COMPUTER_PLAYER)
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        // Move the afterstate's value towards target by gradient descent
+        // through the tanh
+        private void train(float[] weights, int[] indices, float target, float step) {
+            float sum = 0;
+            for (int index : indices)
+                sum += weights[index];
+            float value = (float) Math.tanh(sum);
+            float delta = step * (target - value) * (1 - value * value);
+            for (int index : indices)
+                weights[index] += delta;
+        }
+    }
+
+    /**
+     * Play the training games.
+     *
+     * @return the trained network
+     */
+    public NTupleNetwork train() throws InterruptedException {
+        if (mNetwork == null)
+            mNetwork = new NTupleNetwork(mWinLength);
+        AtomicLong remaining = new AtomicLong(mGames);
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < mThreads; i++) {
+            Worker worker = new Worker(i, remaining);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Worker worker : workers)
+            worker.join();
+        return mNetwork;
+    }
+
+    /**
+     * Play the network at TicTacToeGame.LEARNED against another level,
+     * alternating who starts.
+     *
+     * @return {wins, draws, losses} of the network
+     */
+    public int[] playAgainst(int difficulty, int games) {
+        TicTacToeGame game = new TicTacToeGame(mRows, mCols, mWinLength, new Random(mSeed));
+        game.setNetwork(mNetwork);
+        int[] results = new int[3];
+        for (int g = 0; g < games; g++) {
+            game.clearBoard();
+            char player = g % 2 == 0 ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            while (game.checkForWinner() == 0) {
+                game.getMove(player, player == TicTacToeGame.COMPUTER_PLAYER ? TicTacToeGame.LEARNED : difficulty,
+                        SearchBudget.DEFAULT);
+                player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            }
+            int winner = game.checkForWinner();
+            results[winner == 3 ? 0 : winner == 1 ? 1 : 2]++;
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws Exception {
+        NTupleTrainer trainer = new NTupleTrainer();
+        File out = new File("network.ntw");
+        int matchGames = 200;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--board":
+                    String[] parts = value.split("x");
+                    trainer.setBoard(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    break;
+                case "--games":
+                    trainer.setGames(Long.parseLong(value));
+                    break;
+                case "--threads":
+                    trainer.setThreads(Integer.parseInt(value));
+                    break;
+                case "--rate":
+                    trainer.setLearningRate(Float.parseFloat(value));
+                    break;
+                case "--explore":
+                    trainer.setExplore(Double.parseDouble(value));
+                    break;
+                case "--seed":
+                    trainer.setSeed(Long.parseLong(value));
+                    break;
+                case "--in":
+                    FileInputStream in = new FileInputStream(value);
+                    try {
+                        trainer.setNetwork(NTupleNetwork.read(in));
+                    } finally {
+                        in.close();
+                    }
+                    break;
+                case "--match":
+                    matchGames = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    out = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        trainer.train();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        trainer.getNetwork().write(out);
+        System.out.printf(Locale.US, "%d games in %.1f s (%.0f games/s) on %d threads, %d weights written to %s%n",
+                trainer.mGames, seconds, trainer.mGames / seconds, trainer.mThreads,
+                trainer.getNetwork().getWeightCount(), out);
+        if (matchGames > 0) {
+            String[] names = {"EASY", "MEDIUM", "HARD"};
+            for (int difficulty = TicTacToeGame.EASY; difficulty <= TicTacToeGame.HARD; difficulty++) {
+                int[] results = trainer.playAgainst(difficulty, matchGames);
+                System.out.printf(Locale.US, "vs %s: %d wins, %d draws, %d losses%n",
+                        names[difficulty], results[0], results[1], results[2]);
+            }
+        }
+    }
+}
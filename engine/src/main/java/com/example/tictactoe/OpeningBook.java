@@ -0,0 +1,205 @@
+package com.example.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* OpeningBook.java
+ *
+ * Precomputed moves for the first plies of one m,n,k game, read from a
+ * memory-mapped file.  Positions are keyed by a canonical hash over all
+ * board symmetries plus the player to move, so one entry serves every
+ * rotation and reflection of a position; stored moves are in the canonical
+ * orientation.
+ *
+ * File layout (big-endian):
+ *   header  int magic, short version, byte rows, byte columns,
+ *           byte win length, byte rule, short reserved, int entry count
+ *   entries long key, short move, short weight; one per position, sorted
+ *           by key.  The weight is how many generator games passed
+ *           through the position, capped at 0xFFFF
+ *
+ * A lookup is a binary search over the mapped entries; nothing is read
+ * onto the heap.  Build books with OpeningBookGenerator.
+ */
+
+public class OpeningBook {
+
+    public static final int MAGIC = 0x5454424B;     // "TTBK"
+    public static final int VERSION = 1;
+    // Win rule: k or more in a row wins, the rule TicTacToeGame plays by
+    public static final int RULE_K_OR_MORE = 0;
+
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 12;
+
+    private final ByteBuffer mBuffer;
+    private final int mRows;
+    private final int mCols;
+    private final int mWinLength;
+    private final int mCount;
+
+    // Symmetries of the board and the scratch state of the last lookup
+    private final int[][] mSymmetries;
+    private final int[][] mInverseSymmetries;
+    private final long[] mSymmetryHashes;
+    private int mLastSymmetry;
+
+    /**
+     * Map a book file read-only.
+     *
+     * @throws IOException if the file is missing or not a book
+     */
+    public static OpeningBook open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new OpeningBook(buffer);
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    public OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not an opening book");
+        if (buffer.getShort(4) != VERSION)
+            throw new IOException("Unsupported opening book version " + buffer.getShort(4));
+        if (buffer.get(9) != RULE_K_OR_MORE)
+            throw new IOException("Unsupported win rule " + buffer.get(9));
+        mBuffer = buffer;
+        mRows = buffer.get(6);
+        mCols = buffer.get(7);
+        mWinLength = buffer.get(8);
+        mCount = buffer.getInt(12);
+        if (buffer.capacity() < HEADER_BYTES + (long) mCount * ENTRY_BYTES)
+            throw new IOException("Truncated opening book");
+        mSymmetries = BoardSymmetry.transforms(mRows, mCols);
+        mInverseSymmetries = BoardSymmetry.inverses(mSymmetries);
+        mSymmetryHashes = new long[mSymmetries.length];
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getColumns() {
+        return mCols;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return true if the book was built for this game's board and rule
+     */
+    public boolean matches(TicTacToeGame game) {
+        return game.getRows() == mRows && game.getColumns() == mCols && game.getWinLength() == mWinLength;
+    }
+
+    /**
+     * @return the book move for player in the position, in the game's
+     * orientation, or -1 if the position is not in the book
+     */
+    public synchronized int lookup(TicTacToeGame game, char player) {
+        int entry = find(game, player);
+        if (entry < 0)
+            return -1;
+        int move = mInverseSymmetries[mLastSymmetry][moveAt(entry)];
+        char occupant = game.getBoardOccupant(move);
+        if (occupant == TicTacToeGame.HUMAN_PLAYER || occupant == TicTacToeGame.COMPUTER_PLAYER)
+            return -1;  // Hash collision
+        return move;
+    }
+
+    /**
+     * @return how many generator games passed through the position, or 0
+     * if it is not in the book
+     */
+    public synchronized int getVisits(TicTacToeGame game, char player) {
+        int entry = find(game, player);
+        return entry < 0 ? 0 : weightAt(entry);
+    }
+
+    private int find(TicTacToeGame game, char player) {
+        if (!matches(game))
+            return -1;
+        mLastSymmetry = canonicalSymmetry(game, mSymmetries, mSymmetryHashes);
+        long key = key(mSymmetryHashes[mLastSymmetry], player);
+        int entry = lowerBound(key);
+        return entry < mCount && keyAt(entry) == key ? entry : -1;
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private long keyAt(int entry) {
+        return mBuffer.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+    }
+
+    private int moveAt(int entry) {
+        return mBuffer.getShort(HEADER_BYTES + entry * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int weightAt(int entry) {
+        return mBuffer.getShort(HEADER_BYTES + entry * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    //--- Hashing shared with OpeningBookGenerator
+
+    /**
+     * Fill hashes with the position's hash under every symmetry.
+     *
+     * @return the index of the smallest, i.e. canonical, hash
+     */
+    static int canonicalSymmetry(TicTacToeGame game, int[][] symmetries, long[] hashes) {
+        for (int s = 0; s < hashes.length; s++)
+            hashes[s] = 0;
+        for (int cell = 0; cell < game.getBoardSize(); cell++) {
+            char occupant = game.getBoardOccupant(cell);
+            if (occupant != TicTacToeGame.HUMAN_PLAYER && occupant != TicTacToeGame.COMPUTER_PLAYER)
+                continue;
+            int player = occupant == TicTacToeGame.HUMAN_PLAYER ? 0 : 1;
+            for (int s = 0; s < hashes.length; s++)
+                hashes[s] ^= cellKey(symmetries[s][cell], player);
+        }
+        int best = 0;
+        for (int s = 1; s < hashes.length; s++) {
+            if (hashes[s] < hashes[best])
+                best = s;
+        }
+        return best;
+    }
+
+    // Either player can be to move in the same position, depending on who
+    // started, so the mover is part of the key
+    static long key(long canonicalHash, char player) {
+        return player == TicTacToeGame.COMPUTER_PLAYER ? canonicalHash ^ cellKey(-1, 0) : canonicalHash;
+    }
+
+    // Fixed SplitMix64 keys, so books stay valid across JVMs and versions
+    private static long cellKey(int cell, int player) {
+        long z = (cell * 2L + player + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.tictactoe;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/* OpeningBookGenerator.java
+ *
+ * Builds an OpeningBook offline.  It plays many short games from the empty
+ * board; in every position it meets, the move is the result of a deep
+ * search, done once per canonical position and then reused.  To spread the
+ * book over lines a human might choose, each ply is replaced by a random
+ * move near the stones with the explore probability; only searched moves
+ * go into the book.  A position's weight is the number of times the games
+ * passed through it.
+ */
+
+public class OpeningBookGenerator {
+
+    private static final int NEIGHBOR_RADIUS = 2;
+
+    private int mRows = 15;
+    private int mCols = 15;
+    private int mWinLength = 5;
+    private int mGames = 200;
+    private int mPlies = 6;
+    private SearchBudget mBudget = SearchBudget.nodes(200000);
+    private double mExplore = 0.5;
+    private long mSeed = 1;
+
+    // Book key -> {move in canonical orientation, games through the position}
+    private final Map<Long, int[]> mEntries = new HashMap<>();
+
+    public OpeningBookGenerator setBoard(int rows, int cols, int winLength) {
+        mRows = rows;
+        mCols = cols;
+        mWinLength = winLength;
+        return this;
+    }
+
+    public OpeningBookGenerator setGames(int games) {
+        mGames = games;
+        return this;
+    }
+
+    public OpeningBookGenerator setPlies(int plies) {
+        mPlies = plies;
+        return this;
+    }
+
+    public OpeningBookGenerator setBudget(SearchBudget budget) {
+        mBudget = budget;
+        return this;
+    }
+
+    public OpeningBookGenerator setExplore(double explore) {
+        mExplore = explore;
+        return this;
+    }
+
+    public OpeningBookGenerator setSeed(long seed) {
+        mSeed = seed;
+        return this;
+    }
+
+    /**
+     * Play the games and collect the book.
+     *
+     * @return the number of positions in the book
+     */
+    public int generate() {
+        TicTacToeGame game = new TicTacToeGame(mRows, mCols, mWinLength);
+        SearchEngine engine = game.getSearchEngine();
+        int[][] symmetries = BoardSymmetry.transforms(mRows, mCols);
+        int[][] inverses = BoardSymmetry.inverses(symmetries);
+        long[] hashes = new long[symmetries.length];
+        Random random = new Random(mSeed);
+
+        for (int g = 0; g < mGames; g++) {
+            game.clearBoard();
+            // The computer may be either side, so cover both first players
+            char player = random.nextBoolean() ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER;
+            for (int ply = 0; ply < mPlies && game.checkForWinner() == 0; ply++) {
+                int symmetry = OpeningBook.canonicalSymmetry(game, symmetries, hashes);
+                long key = OpeningBook.key(hashes[symmetry], player);
+                int[] entry = mEntries.get(key);
+                if (entry == null) {
+                    int move = engine.findBestMove(player, 0, mBudget);
+                    entry = new int[]{symmetries[symmetry][move], 0};
+                    mEntries.put(key, entry);
+                }
+                entry[1]++;
+                int move = random.nextDouble() < mExplore ? randomNearbyMove(game, random) : inverses[symmetry][entry[0]];
+                game.setMove(player, move);
+                player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            }
+        }
+        return mEntries.size();
+    }
+
+    private int randomNearbyMove(TicTacToeGame game, Random random) {
+        int[] candidates = new int[game.getBoardSize()];
+        int count = 0;
+        for (int cell = 0; cell < game.getBoardSize(); cell++) {
+            if (isOpen(game, cell) && hasNeighbor(game, cell))
+                candidates[count++] = cell;
+        }
+        if (count == 0)
+            return (mRows / 2) * mCols + mCols / 2;
+        return candidates[random.nextInt(count)];
+    }
+
+    private boolean hasNeighbor(TicTacToeGame game, int cell) {
+        int row = cell / mCols;
+        int col = cell % mCols;
+        for (int r = Math.max(0, row - NEIGHBOR_RADIUS); r <= Math.min(mRows - 1, row + NEIGHBOR_RADIUS); r++) {
+            for (int c = Math.max(0, col - NEIGHBOR_RADIUS); c <= Math.min(mCols - 1, col + NEIGHBOR_RADIUS); c++) {
+                if (!isOpen(game, r * mCols + c))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOpen(TicTacToeGame game, int cell) {
+        char occupant = game.getBoardOccupant(cell);
+        return occupant != TicTacToeGame.HUMAN_PLAYER && occupant != TicTacToeGame.COMPUTER_PLAYER;
+    }
+
+    /**
+     * Write the collected book in the OpeningBook format.
+     */
+    public void write(File file) throws IOException {
+        long[] keys = new long[mEntries.size()];
+        int i = 0;
+        for (Long key : mEntries.keySet())
+            keys[i++] = key;
+        Arrays.sort(keys);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeShort(OpeningBook.VERSION);
+            out.writeByte(mRows);
+            out.writeByte(mCols);
+            out.writeByte(mWinLength);
+            out.writeByte(OpeningBook.RULE_K_OR_MORE);
+            out.writeShort(0);
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                int[] entry = mEntries.get(key);
+                out.writeLong(key);
+                out.writeShort(entry[0]);
+                out.writeShort(Math.min(entry[1], 0xFFFF));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * ./gradlew :engine:buildBook --args="--board 15x15x5 --games 200 --plies 6 --out book.book"
+     */
+    public static void main(String[] args) throws IOException {
+        OpeningBookGenerator generator = new OpeningBookGenerator();
+        File out = new File("opening.book");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--board":
+                    String[] parts = value.split("x");
+                    generator.setBoard(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    break;
+                case "--games":
+                    generator.setGames(Integer.parseInt(value));
+                    break;
+                case "--plies":
+                    generator.setPlies(Integer.parseInt(value));
+                    break;
+                case "--nodes":
+                    generator.setBudget(SearchBudget.nodes(Long.parseLong(value)));
+                    break;
+                case "--budget-ms":
+                    generator.setBudget(SearchBudget.millis(Long.parseLong(value)));
+                    break;
+                case "--explore":
+                    generator.setExplore(Double.parseDouble(value));
+                    break;
+                case "--seed":
+                    generator.setSeed(Long.parseLong(value));
+                    break;
+                case "--out":
+                    out = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        int positions = generator.generate();
+        generator.write(out);
+        System.out.printf("%d positions written to %s in %.1f s%n", positions, out, (System.nanoTime() - start) / 1e9);
+    }
+}
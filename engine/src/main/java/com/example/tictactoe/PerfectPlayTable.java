@@ -0,0 +1,98 @@
+package com.example.tictactoe;
+
+import java.util.Arrays;
+
+/* PerfectPlayTable.java
+ *
+ * Minimax value and best move for every 3x3 position, indexed by the
+ * base-3 encoding of the board from the point of view of the player to
+ * move (digit 1 = own stone, digit 2 = opponent stone).  The table is
+ * solved once, on first use, and every lookup afterwards is O(1).
+ */
+
+final class PerfectPlayTable {
+
+    public static final int NO_MOVE = TicTacToeGame.BOARD_SIZE;
+    private static final int POSITIONS = 19683; // 3^9
+    private static final byte UNSOLVED = -1;
+
+    // TERNARY[mask] = sum of 3^i over the set bits i of mask
+    private static final int[] TERNARY = new int[TicTacToeGame.FULL_BOARD + 1];
+
+    static {
+        for (int mask = 1; mask <= TicTacToeGame.FULL_BOARD; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            int pow = 1;
+            for (int i = 0; i < low; i++)
+                pow *= 3;
+            TERNARY[mask] = TERNARY[mask & (mask - 1)] + pow;
+        }
+    }
+
+    // Score for the player to move: positive = win (larger is sooner),
+    // 0 = draw, negative = loss (smaller is sooner).
+    private final byte[] mScores = new byte[POSITIONS];
+    private final byte[] mMoves = new byte[POSITIONS];
+
+    private PerfectPlayTable() {
+        Arrays.fill(mMoves, UNSOLVED);
+        solve(0, 0);
+    }
+
+    //--- Lazily built, thread-safe singleton
+    private static class Holder {
+        static final PerfectPlayTable INSTANCE = new PerfectPlayTable();
+    }
+
+    public static PerfectPlayTable get() {
+        return Holder.INSTANCE;
+    }
+
+    public static int indexOf(int moverBits, int opponentBits) {
+        return TERNARY[moverBits] + 2 * TERNARY[opponentBits];
+    }
+
+    /**
+     * @return the best cell for the player owning moverBits, or NO_MOVE if
+     * the game is already over.
+     */
+    public int bestMove(int moverBits, int opponentBits) {
+        return mMoves[indexOf(moverBits, opponentBits)];
+    }
+
+    /**
+     * @return the game-theoretic score for the player owning moverBits.
+     */
+    public int score(int moverBits, int opponentBits) {
+        return mScores[indexOf(moverBits, opponentBits)];
+    }
+
+    private int solve(int mover, int opponent) {
+        int index = indexOf(mover, opponent);
+        if (mMoves[index] != UNSOLVED)
+            return mScores[index];
+
+        int empty = ~(mover | opponent) & TicTacToeGame.FULL_BOARD;
+        int best;
+        int bestMove = NO_MOVE;
+        if (TicTacToeGame.hasWon(opponent)) {
+            // The previous move won; losing with more open spots is worse
+            best = -(1 + Integer.bitCount(empty));
+        } else if (empty == 0) {
+            best = 0;
+        } else {
+            best = Integer.MIN_VALUE;
+            for (int open = empty; open != 0; open &= open - 1) {
+                int move = Integer.numberOfTrailingZeros(open);
+                int score = -solve(opponent, mover | (1 << move));
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                }
+            }
+        }
+        mScores[index] = (byte) best;
+        mMoves[index] = (byte) bestMove;
+        return best;
+    }
+}
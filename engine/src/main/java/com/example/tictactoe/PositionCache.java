@@ -0,0 +1,218 @@
+package com.example.tictactoe;
+
+/* PositionCache.java
+ *
+ * Bounded cache of search results keyed by the canonical hash of a
+ * position, i.e. the same key for all of its rotations and reflections
+ * (see BoardSymmetry).  Moves are stored in the canonical orientation;
+ * the caller maps them back.
+ *
+ * The number of entries follows from a memory cap.  When the cache is
+ * full, the CLOCK algorithm evicts an entry that has not been used since
+ * the hand last passed it, which approximates LRU without a linked list.
+ * Everything lives in primitive arrays allocated up front.  Not
+ * thread-safe.
+ */
+
+public class PositionCache {
+
+    public static final long DEFAULT_BYTES = 1 << 20;
+
+    // Bytes per entry: the slot arrays plus about three index ints
+    public static final int BYTES_PER_ENTRY = 8 + 4 + 2 + 1 + 1 + 1 + 3 * 4;
+
+    public static final byte EXACT = 0;
+    public static final byte LOWER = 1;
+    public static final byte UPPER = 2;
+
+    private final int mCapacity;
+    private final long[] mKeys;
+    private final int[] mScores;
+    private final short[] mMoves;
+    private final byte[] mDepths;
+    private final byte[] mFlags;
+    private final boolean[] mReferenced;
+    private int mSize;
+    private int mHand;
+
+    // Open-addressing index from key to slot + 1 (0 = empty)
+    private final int[] mIndex;
+    private final int mIndexMask;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    // Result of the last successful get()
+    private int mScore;
+    private int mMove;
+    private int mDepth;
+    private byte mFlag;
+
+    public PositionCache(long maxBytes) {
+        mCapacity = (int) Math.max(16, Math.min(1 << 28, maxBytes / BYTES_PER_ENTRY));
+        mKeys = new long[mCapacity];
+        mScores = new int[mCapacity];
+        mMoves = new short[mCapacity];
+        mDepths = new byte[mCapacity];
+        mFlags = new byte[mCapacity];
+        mReferenced = new boolean[mCapacity];
+        // Index at most half full so probe runs stay short
+        int indexSize = Integer.highestOneBit(mCapacity - 1) << 2;
+        mIndex = new int[indexSize];
+        mIndexMask = indexSize - 1;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getHits() {
+        return mHits;
+    }
+
+    public long getMisses() {
+        return mMisses;
+    }
+
+    public long getEvictions() {
+        return mEvictions;
+    }
+
+    public double getHitRate() {
+        long lookups = mHits + mMisses;
+        return lookups == 0 ? 0 : (double) mHits / lookups;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mIndex.length; i++)
+            mIndex[i] = 0;
+        for (int i = 0; i < mCapacity; i++)
+            mReferenced[i] = false;
+        mSize = 0;
+        mHand = 0;
+        mHits = 0;
+        mMisses = 0;
+        mEvictions = 0;
+    }
+
+    /**
+     * Look up a canonical key.  On a hit the entry is available from
+     * getScore(), getMove(), getDepth() and getFlag() until the next call.
+     */
+    public boolean get(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            mMisses++;
+            return false;
+        }
+        mHits++;
+        mReferenced[slot] = true;
+        mScore = mScores[slot];
+        mMove = mMoves[slot];
+        mDepth = mDepths[slot];
+        mFlag = mFlags[slot];
+        return true;
+    }
+
+    public int getScore() {
+        return mScore;
+    }
+
+    public int getMove() {
+        return mMove;
+    }
+
+    public int getDepth() {
+        return mDepth;
+    }
+
+    public byte getFlag() {
+        return mFlag;
+    }
+
+    /**
+     * Store a result; an existing entry for the key is only replaced by a
+     * search that was at least as deep.
+     */
+    public void put(long key, int depth, int score, byte flag, int move) {
+        int slot = find(key);
+        if (slot >= 0) {
+            if (depth < mDepths[slot])
+                return;
+        } else {
+            slot = mSize < mCapacity ? mSize++ : evict();
+            mKeys[slot] = key;
+            insertIndex(key, slot);
+        }
+        mScores[slot] = score;
+        mMoves[slot] = (short) move;
+        mDepths[slot] = (byte) Math.min(depth, Byte.MAX_VALUE);
+        mFlags[slot] = flag;
+        mReferenced[slot] = true;
+    }
+
+    //--- CLOCK: clear reference bits until an unreferenced slot comes up
+    private int evict() {
+        while (mReferenced[mHand]) {
+            mReferenced[mHand] = false;
+            mHand = (mHand + 1) % mCapacity;
+        }
+        int victim = mHand;
+        mHand = (mHand + 1) % mCapacity;
+        removeIndex(mKeys[victim]);
+        mEvictions++;
+        return victim;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int find(long key) {
+        int i = mix(key) & mIndexMask;
+        while (mIndex[i] != 0) {
+            int slot = mIndex[i] - 1;
+            if (mKeys[slot] == key)
+                return slot;
+            i = (i + 1) & mIndexMask;
+        }
+        return -1;
+    }
+
+    private void insertIndex(long key, int slot) {
+        int i = mix(key) & mIndexMask;
+        while (mIndex[i] != 0)
+            i = (i + 1) & mIndexMask;
+        mIndex[i] = slot + 1;
+    }
+
+    //--- Linear probing delete: shift later entries of the run back into the hole
+    private void removeIndex(long key) {
+        int hole = mix(key) & mIndexMask;
+        while (mKeys[mIndex[hole] - 1] != key)
+            hole = (hole + 1) & mIndexMask;
+        mIndex[hole] = 0;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mIndexMask;
+            if (mIndex[i] == 0)
+                return;
+            int home = mix(mKeys[mIndex[i] - 1]) & mIndexMask;
+            // Move the entry unless its home lies cyclically in (hole, i]
+            boolean stays = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+            if (!stays) {
+                mIndex[hole] = mIndex[i];
+                mIndex[i] = 0;
+                hole = i;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.tictactoe;
+
+/* SearchBudget.java
+ *
+ * Limits for a single engine search: a wall-clock time in milliseconds,
+ * a number of visited nodes, or both.  Zero means "no limit".
+ */
+
+public final class SearchBudget {
+
+    public static final SearchBudget UNLIMITED = new SearchBudget(0, 0);
+    // Used when a difficulty needs a search but the caller gave no budget
+    public static final SearchBudget DEFAULT = millis(500);
+
+    private final long mMillis;
+    private final long mNodes;
+
+    private SearchBudget(long millis, long nodes) {
+        if (millis < 0 || nodes < 0)
+            throw new IllegalArgumentException("Negative search budget");
+        mMillis = millis;
+        mNodes = nodes;
+    }
+
+    public static SearchBudget millis(long millis) {
+        return new SearchBudget(millis, 0);
+    }
+
+    public static SearchBudget nodes(long nodes) {
+        return new SearchBudget(0, nodes);
+    }
+
+    public static SearchBudget of(long millis, long nodes) {
+        return new SearchBudget(millis, nodes);
+    }
+
+    public long getMillis() {
+        return mMillis;
+    }
+
+    public long getNodes() {
+        return mNodes;
+    }
+}
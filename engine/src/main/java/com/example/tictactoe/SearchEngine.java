@@ -0,0 +1,845 @@
+package com.example.tictactoe;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* SearchEngine.java
+ *
+ * Negamax search with alpha-beta pruning and iterative deepening for a
+ * TicTacToeGame of any size.  Positions and the side to move are hashed
+ * with Zobrist keys into a fixed-size transposition table, so transposed
+ * positions are searched once and the table stays warm from one move to
+ * the next.
+ *
+ * An optional PositionCache adds a second, larger table keyed by the
+ * canonical hash over all board symmetries and the side to move, so a
+ * position found under any rotation or reflection of an earlier one is not
+ * searched again.
+ *
+ * With setThreads(n), findBestMove() searches with Lazy SMP: n - 1 helper
+ * engines, each on its own copy of the game, run the same iterative
+ * deepening from the same root, every other one a ply deeper, and share
+ * nothing but the lock-free TranspositionTable.  Their results make the
+ * main search's later iterations cheaper, and if a helper finishes a
+ * deeper iteration first its move is played.  The cache and
+ * evaluateAllMoves() stay on the calling thread.
+ *
+ * The engine plays moves on the game it was created for and takes them
+ * back before returning; the board is unchanged afterwards.
+ */
+
+public class SearchEngine {
+
+    public static final int WIN_SCORE = 1000000;
+    private static final int INFINITY = WIN_SCORE + 1;
+    // Scores beyond this are wins or losses at a known distance
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000;
+
+    public static final int DEFAULT_TABLE_BITS = 16;
+    // Boards up to this size consider every open spot; larger boards only
+    // consider spots within NEIGHBOR_RADIUS of a stone
+    private static final int SMALL_BOARD = 16;
+    private static final int NEIGHBOR_RADIUS = 2;
+    private static final int CHECK_INTERVAL = 1023;
+    // History scores are halved at each search and whenever one passes
+    // this, so they cannot overflow over a long session
+    private static final int HISTORY_LIMIT = 1 << 30;
+    // Shallower nodes are cheaper to search than to look up in the cache
+    private static final int CACHE_MIN_DEPTH = 2;
+
+    // Transposition table entry bounds
+    private static final byte EXACT = 0;
+    private static final byte LOWER = 1;
+    private static final byte UPPER = 2;
+
+    private final TicTacToeGame mGame;
+    private final int mRows;
+    private final int mCols;
+    private final int mCells;
+
+    // Zobrist keys per cell: [cell * 2] for X, [cell * 2 + 1] for O
+    private final long[] mZobrist;
+    // In every hash while O is to move: either player can be to move with
+    // the same stones, depending on who started, and the table and cache
+    // outlive a game
+    private final long mSideKey;
+    private long mHash;
+
+    // Shared with the helpers
+    private final TranspositionTable mTable;
+
+    // Symmetry-canonical cache: one hash per symmetry of the board, kept
+    // up to date alongside mHash; the smallest is the canonical key
+    private PositionCache mCache;
+    private final int[][] mSymmetries;
+    private final int[][] mInverseSymmetries;
+    private final long[] mSymmetryHashes;
+
+    // Every line of k cells on the board, for the static evaluation
+    private final int[][] mWindows;
+    private static final int[] LINE_WEIGHTS = {0, 1, 8, 64, 512, 4096, 32768, 262144};
+    // Learned evaluation used instead of the line weights; null if none
+    private NTupleEvaluator mEvaluator;
+
+    // Number of stones within NEIGHBOR_RADIUS of each cell
+    private final int[] mNeighbors;
+
+    // Move ordering state and per-ply move lists, allocated once
+    private final int[] mHistory;
+    private final int[][] mMoves;
+    private final int[][] mMoveScores;
+
+    private long mNodes;
+    // Nodes of all threads, counted at every limit check, with helpers
+    private AtomicLong mSharedNodes;
+    private long mNodeLimit;
+    private long mDeadline;
+    private boolean mAborted;
+    // Set from another thread to abandon the current search
+    private volatile boolean mStopped;
+    private int mCompletedDepth;
+    private int mLastScore;
+    private boolean mFinished;
+
+    // The deepest completed root search so far, returned again without
+    // searching when the same position is asked for to the same depth, or
+    // was proven sooner, e.g. after pondering; forgotten by clear()
+    private long mRootHash;
+    private char mRootPlayer;
+    private int mRootMove = -1;
+    private int mRootDepth;
+    private int mRootScore;
+
+    // Lazy SMP helpers and the threads they run on; none by default.  Only
+    // the first mThreads - 1 search, the rest are kept for a later rise
+    private SearchEngine[] mHelpers = new SearchEngine[0];
+    private int mThreads = 1;
+    private NTupleNetwork mNetwork;
+    private ExecutorService mPool;
+    // Deepest iteration a helper completed in the current search, and its
+    // move and score; done once a helper reached the limit or a proof
+    private volatile int mHelperDepth;
+    private int mHelperMove;
+    private int mHelperScore;
+    private volatile boolean mHelperDone;
+
+    public SearchEngine(TicTacToeGame game) {
+        this(game, DEFAULT_TABLE_BITS);
+    }
+
+    public SearchEngine(TicTacToeGame game, int tableBits) {
+        this(game, new TranspositionTable(tableBits));
+    }
+
+    private SearchEngine(TicTacToeGame game, TranspositionTable table) {
+        mGame = game;
+        mRows = game.getRows();
+        mCols = game.getColumns();
+        mCells = game.getBoardSize();
+
+        Random random = new Random(0x5EED);
+        mZobrist = new long[mCells * 2];
+        for (int i = 0; i < mZobrist.length; i++)
+            mZobrist[i] = random.nextLong();
+        mSideKey = random.nextLong();
+
+        mTable = table;
+
+        mSymmetries = BoardSymmetry.transforms(mRows, mCols);
+        mInverseSymmetries = BoardSymmetry.inverses(mSymmetries);
+        mSymmetryHashes = new long[mSymmetries.length];
+
+        mWindows = buildWindows(mRows, mCols, game.getWinLength());
+        mNeighbors = new int[mCells];
+        mHistory = new int[mCells];
+        mMoves = new int[mCells + 1][mCells];
+        mMoveScores = new int[mCells + 1][mCells];
+    }
+
+    private static int[][] buildWindows(int rows, int cols, int k) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        int count = 0;
+        int[][] windows = new int[4 * rows * cols][];
+        for (int[] dir : directions) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int endRow = r + dir[0] * (k - 1);
+                    int endCol = c + dir[1] * (k - 1);
+                    if (endRow < 0 || endRow >= rows || endCol < 0 || endCol >= cols)
+                        continue;
+                    int[] window = new int[k];
+                    for (int i = 0; i < k; i++)
+                        window[i] = (r + dir[0] * i) * cols + c + dir[1] * i;
+                    windows[count++] = window;
+                }
+            }
+        }
+        int[][] result = new int[count][];
+        System.arraycopy(windows, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Share results through a symmetry-canonical cache, or stop with null.
+     * The cache must have been filled for a board of the same shape.
+     */
+    public void setPositionCache(PositionCache cache) {
+        mCache = cache;
+    }
+
+    /**
+     * Evaluate the leaves with a learned network, or with the line weights
+     * with null.  Clears the tables, whose scores came from the old
+     * evaluation.
+     */
+    public void setNetwork(NTupleNetwork network) {
+        mNetwork = network;
+        mEvaluator = network != null ? new NTupleEvaluator(network, mRows, mCols) : null;
+        for (SearchEngine helper : mHelpers)
+            helper.mEvaluator = network != null ? new NTupleEvaluator(network, mRows, mCols) : null;
+        clear();
+    }
+
+    /**
+     * Search findBestMove() on this many threads, the caller's included.
+     * With more than one the result depends on thread timing.  Lowering
+     * the count keeps the helpers, so raising it again is cheap.
+     */
+    public void setThreads(int threads) {
+        mThreads = Math.max(1, threads);
+        if (mThreads - 1 <= mHelpers.length)
+            return;
+        shutdown();
+        SearchEngine[] helpers = Arrays.copyOf(mHelpers, mThreads - 1);
+        for (int i = mHelpers.length; i < helpers.length; i++) {
+            helpers[i] = new SearchEngine(new TicTacToeGame(mRows, mCols, mGame.getWinLength()), mTable);
+            if (mNetwork != null)
+                helpers[i].mEvaluator = new NTupleEvaluator(mNetwork, mRows, mCols);
+        }
+        mHelpers = helpers;
+    }
+
+    public int getThreadCount() {
+        return mThreads;
+    }
+
+    /**
+     * Release the helper threads.  The engine starts new ones if it is
+     * used again.
+     */
+    public synchronized void shutdown() {
+        if (mPool != null) {
+            mPool.shutdownNow();
+            mPool = null;
+        }
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (mPool == null) {
+            mPool = Executors.newFixedThreadPool(mHelpers.length, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "search-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mPool;
+    }
+
+    public PositionCache getPositionCache() {
+        return mCache;
+    }
+
+    public long getNodeCount() {
+        return mNodes;
+    }
+
+    public int getCompletedDepth() {
+        return mCompletedDepth;
+    }
+
+    /**
+     * @return the score of the last completed iteration, from the point of
+     * view of the player that was searched for.
+     */
+    public int getLastScore() {
+        return mLastScore;
+    }
+
+    /**
+     * @return true if the last findBestMove() reached its depth limit or
+     * proved the result, false if it ran out of budget or was stopped
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Ask a running search to return its best move so far.  The engine
+     * stays stopped, and returns at once from later searches, until
+     * resume() is called.
+     */
+    public void stop() {
+        mStopped = true;
+        for (SearchEngine helper : mHelpers)
+            helper.mStopped = true;
+    }
+
+    public void resume() {
+        mStopped = false;
+    }
+
+    /**
+     * Forget all transposition table entries and move ordering history.
+     */
+    public void clear() {
+        mTable.clear();
+        for (int i = 0; i < mCells; i++)
+            mHistory[i] = 0;
+        for (SearchEngine helper : mHelpers) {
+            for (int i = 0; i < mCells; i++)
+                helper.mHistory[i] = 0;
+        }
+        if (mCache != null)
+            mCache.clear();
+        mRootMove = -1;
+    }
+
+    /**
+     * Find the best move for player with iterative deepening.
+     *
+     * @param maxDepth deepest iteration in plies, or 0 to search until the
+     *                 result is proven or the budget runs out
+     * @return the best move of the deepest completed iteration, or the best
+     * move found so far in an interrupted one
+     */
+    public int findBestMove(char player, int maxDepth, SearchBudget budget) {
+        beginSearch(player, budget);
+        long cacheHits = mCache != null ? mCache.getHits() : 0;
+        long cacheMisses = mCache != null ? mCache.getMisses() : 0;
+
+        int empty = mCells - countStones();
+        int limit = maxDepth > 0 ? Math.min(maxDepth, empty) : empty;
+        boolean sameRoot = mRootMove >= 0 && mRootHash == mHash && mRootPlayer == player;
+        if (sameRoot && (mRootDepth == limit || mRootDepth < limit && Math.abs(mRootScore) >= WIN_THRESHOLD)) {
+            mCompletedDepth = mRootDepth;
+            mLastScore = mRootScore;
+            mFinished = true;
+            return mRootMove;
+        }
+        Future<?>[] helpers = startHelpers(player, limit);
+        int bestMove = -1;
+        int completedMove = -1;
+        for (int depth = 1; depth <= limit; depth++) {
+            int move = searchRoot(player, depth, bestMove);
+            if (mAborted) {
+                // The previous best is searched first, so any move found
+                // before the interruption is at least as good
+                if (move >= 0)
+                    bestMove = move;
+                break;
+            }
+            bestMove = move;
+            completedMove = move;
+            mCompletedDepth = depth;
+            if (Math.abs(mLastScore) >= WIN_THRESHOLD)
+                break;
+        }
+        if (helpers != null) {
+            stopHelpers(helpers);
+            if (mHelperDepth > mCompletedDepth) {
+                bestMove = completedMove = mHelperMove;
+                mCompletedDepth = mHelperDepth;
+                mLastScore = mHelperScore;
+            }
+        }
+        mFinished = mCompletedDepth >= limit || Math.abs(mLastScore) >= WIN_THRESHOLD;
+        if (completedMove >= 0 && (!sameRoot || mCompletedDepth > mRootDepth)) {
+            mRootHash = mHash;
+            mRootPlayer = player;
+            mRootMove = completedMove;
+            mRootDepth = mCompletedDepth;
+            mRootScore = mLastScore;
+        }
+        if (bestMove < 0)
+            bestMove = firstCandidate();
+        if (mCache != null)
+            Metrics.get().recordSearch(mNodes, mCache.getHits() - cacheHits, mCache.getMisses() - cacheMisses);
+        else
+            Metrics.get().recordSearch(mNodes, 0, 0);
+        return bestMove;
+    }
+
+    /**
+     * Score every candidate move for player in one iterative-deepening
+     * search.  Each iteration searches all root moves with a full window,
+     * so every score is exact rather than a bound; the siblings share the
+     * transposition table and cache, and each iteration searches the moves
+     * in the order of the previous one's scores.  On large boards only
+     * cells near the stones are candidates.
+     *
+     * @return the values of the deepest completed iteration
+     */
+    public BoardAnalysis evaluateAllMoves(char player, SearchBudget budget) {
+        beginSearch(player, budget);
+        char opponent = opponent(player);
+        BoardAnalysis analysis = new BoardAnalysis(player, mCells);
+        int count = generateMoves(0, -1);
+        int[] moves = new int[count];
+        int[] scores = new int[count];
+        System.arraycopy(mMoves[0], 0, moves, 0, count);
+
+        int empty = mCells - countStones();
+        for (int depth = 1; depth <= empty; depth++) {
+            boolean proven = true;
+            for (int i = 0; i < count && !mAborted; i++) {
+                int move = moves[i];
+                if (mGame.completesLine(player, move)) {
+                    scores[i] = WIN_SCORE - 1;
+                    continue;
+                }
+                makeMove(player, move);
+                scores[i] = -negamax(opponent, depth - 1, -INFINITY, INFINITY, 1);
+                unmakeMove(move);
+                if (Math.abs(scores[i]) < WIN_THRESHOLD)
+                    proven = false;
+            }
+            if (mAborted)
+                break;
+            mCompletedDepth = depth;
+            for (int i = 0; i < count; i++) {
+                int score = scores[i];
+                if (score >= WIN_THRESHOLD)
+                    analysis.set(moves[i], BoardAnalysis.WIN, WIN_SCORE - score);
+                else if (score <= -WIN_THRESHOLD)
+                    analysis.set(moves[i], BoardAnalysis.LOSS, WIN_SCORE + score);
+                else if (depth == empty && count == empty)
+                    analysis.set(moves[i], BoardAnalysis.DRAW, empty);
+                else
+                    analysis.set(moves[i], BoardAnalysis.UNKNOWN, score);
+            }
+            analysis.setDepth(depth);
+            if (proven)
+                break;
+            // Insertion sort, best first, for the next iteration
+            for (int i = 1; i < count; i++) {
+                int move = moves[i];
+                int score = scores[i];
+                int j = i;
+                for (; j > 0 && scores[j - 1] < score; j--) {
+                    moves[j] = moves[j - 1];
+                    scores[j] = scores[j - 1];
+                }
+                moves[j] = move;
+                scores[j] = score;
+            }
+        }
+        Metrics.get().recordSearch(mNodes, 0, 0);
+        return analysis;
+    }
+
+    private void beginSearch(char player, SearchBudget budget) {
+        mNodes = 0;
+        mAborted = mStopped;
+        mCompletedDepth = 0;
+        mLastScore = 0;
+        mNodeLimit = budget.getNodes() > 0 ? budget.getNodes() : Long.MAX_VALUE;
+        mDeadline = budget.getMillis() > 0 ? System.nanoTime() + budget.getMillis() * 1000000L : Long.MAX_VALUE;
+        mTable.newSearch();
+        ageHistory();
+        prepareRoot(player);
+    }
+
+    //--- Lazy SMP
+
+    private Future<?>[] startHelpers(final char player, final int limit) {
+        if (mThreads == 1 || mAborted)
+            return null;
+        mHelperDepth = 0;
+        mHelperDone = false;
+        mSharedNodes = new AtomicLong();
+        final char[] board = mGame.saveBoard();
+        ExecutorService pool = getPool();
+        Future<?>[] futures = new Future<?>[mThreads - 1];
+        for (int i = 0; i < futures.length; i++) {
+            final SearchEngine helper = mHelpers[i];
+            // Odd helpers start a ply deeper than the main search
+            final int offset = i % 2 == 0 ? 1 : 0;
+            helper.mStopped = false;
+            futures[i] = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    helper.searchAsHelper(SearchEngine.this, board, player, limit, offset);
+                }
+            });
+        }
+        return futures;
+    }
+
+    private void stopHelpers(Future<?>[] futures) {
+        for (int i = 0; i < futures.length; i++)
+            mHelpers[i].mStopped = true;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("Search helper failed", e);
+            }
+        }
+        for (int i = 0; i < futures.length; i++)
+            mNodes += mHelpers[i].mNodes;
+        mSharedNodes = null;
+        mHelperDone = false;
+    }
+
+    private void searchAsHelper(SearchEngine main, char[] board, char player, int limit, int offset) {
+        mGame.restoreBoard(board);
+        mNodes = 0;
+        mAborted = mStopped;
+        mNodeLimit = main.mNodeLimit;
+        mDeadline = main.mDeadline;
+        mSharedNodes = main.mSharedNodes;
+        ageHistory();
+        prepareRoot(player);
+        int bestMove = -1;
+        for (int depth = 1 + offset; depth <= limit; depth++) {
+            int move = searchRoot(player, depth, bestMove);
+            if (mAborted)
+                break;
+            bestMove = move;
+            main.helperCompleted(depth, move, mLastScore, limit);
+            if (Math.abs(mLastScore) >= WIN_THRESHOLD)
+                break;
+        }
+    }
+
+    private synchronized void helperCompleted(int depth, int move, int score, int limit) {
+        if (depth <= mHelperDepth)
+            return;
+        mHelperMove = move;
+        mHelperScore = score;
+        mHelperDepth = depth;
+        // Nothing left for the main search to find
+        if (depth >= limit || Math.abs(score) >= WIN_THRESHOLD)
+            mHelperDone = true;
+    }
+
+    private void prepareRoot(char player) {
+        mHash = player == TicTacToeGame.COMPUTER_PLAYER ? mSideKey : 0;
+        for (int s = 0; s < mSymmetryHashes.length; s++)
+            mSymmetryHashes[s] = mHash;
+        for (int i = 0; i < mCells; i++)
+            mNeighbors[i] = 0;
+        if (mEvaluator != null)
+            mEvaluator.reset(mGame);
+        for (int i = 0; i < mCells; i++) {
+            char occupant = mGame.getBoardOccupant(i);
+            if (occupant == TicTacToeGame.HUMAN_PLAYER || occupant == TicTacToeGame.COMPUTER_PLAYER) {
+                mHash ^= key(occupant, i);
+                updateSymmetryHashes(occupant, i, 0);
+                updateNeighbors(i, 1);
+            }
+        }
+    }
+
+    private int countStones() {
+        int count = 0;
+        for (int i = 0; i < mCells; i++) {
+            if (!isOpen(i))
+                count++;
+        }
+        return count;
+    }
+
+    private int firstCandidate() {
+        int count = generateMoves(0, -1);
+        return count > 0 ? mMoves[0][0] : -1;
+    }
+
+    private int searchRoot(char player, int depth, int previousBest) {
+        char opponent = opponent(player);
+        int count = generateMoves(0, previousBest);
+        int alpha = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(0, i, count);
+            if (mGame.completesLine(player, move)) {
+                mLastScore = WIN_SCORE - 1;
+                return move;
+            }
+            makeMove(player, move);
+            int score = -negamax(opponent, depth - 1, -INFINITY, -alpha, 1);
+            unmakeMove(move);
+            if (mAborted)
+                return bestMove;
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        mLastScore = alpha;
+        store(depth, alpha, EXACT, bestMove, 0);
+        return bestMove;
+    }
+
+    private int negamax(char player, int depth, int alpha, int beta, int ply) {
+        if ((++mNodes & CHECK_INTERVAL) == 0)
+            checkLimits();
+        if (mAborted)
+            return 0;
+        if (mGame.checkForWinner() == 1)
+            return 0;
+        if (depth == 0)
+            return evaluate(player);
+
+        // Probe the transposition table
+        long entry = mTable.probe(mHash);
+        int tableMove = -1;
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == EXACT
+                        || (flag == LOWER && score >= beta)
+                        || (flag == UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        // Then the cache, which also knows every symmetric equivalent
+        int symmetry = 0;
+        if (mCache != null && depth >= CACHE_MIN_DEPTH) {
+            symmetry = canonicalSymmetry();
+            if (mCache.get(mSymmetryHashes[symmetry])) {
+                int cachedMove = mCache.getMove();
+                if (tableMove < 0 && cachedMove >= 0)
+                    tableMove = mInverseSymmetries[symmetry][cachedMove];
+                if (mCache.getDepth() >= depth) {
+                    int score = fromTable(mCache.getScore(), ply);
+                    byte flag = mCache.getFlag();
+                    if (flag == EXACT
+                            || (flag == LOWER && score >= beta)
+                            || (flag == UPPER && score <= alpha))
+                        return score;
+                }
+            }
+        }
+
+        char opponent = opponent(player);
+        int count = generateMoves(ply, tableMove);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, i, count);
+            if (mGame.completesLine(player, move)) {
+                best = WIN_SCORE - ply - 1;
+                bestMove = move;
+                break;
+            }
+            makeMove(player, move);
+            int score = -negamax(opponent, depth - 1, -beta, -alpha, ply + 1);
+            unmakeMove(move);
+            if (mAborted)
+                return 0;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta) {
+                if ((mHistory[move] += depth * depth) > HISTORY_LIMIT)
+                    ageHistory();
+                break;
+            }
+        }
+
+        byte flag = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+        store(depth, best, flag, bestMove, ply);
+        if (mCache != null && depth >= CACHE_MIN_DEPTH)
+            mCache.put(mSymmetryHashes[symmetry], depth, toTable(best, ply), flag,
+                    bestMove < 0 ? -1 : mSymmetries[symmetry][bestMove]);
+        return best;
+    }
+
+    private void checkLimits() {
+        long nodes = mSharedNodes != null ? mSharedNodes.addAndGet(CHECK_INTERVAL + 1) : mNodes;
+        if (mStopped || mHelperDone || nodes >= mNodeLimit || System.nanoTime() >= mDeadline)
+            mAborted = true;
+    }
+
+    private void store(int depth, int score, byte flag, int move, int ply) {
+        mTable.store(mHash, depth, toTable(score, ply), flag, move);
+    }
+
+    // Win scores are stored relative to the node, not the root
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD)
+            return score + ply;
+        if (score <= -WIN_THRESHOLD)
+            return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD)
+            return score - ply;
+        if (score <= -WIN_THRESHOLD)
+            return score + ply;
+        return score;
+    }
+
+    private void ageHistory() {
+        for (int i = 0; i < mCells; i++)
+            mHistory[i] >>= 1;
+    }
+
+    private int canonicalSymmetry() {
+        int best = 0;
+        for (int s = 1; s < mSymmetryHashes.length; s++) {
+            if (mSymmetryHashes[s] < mSymmetryHashes[best])
+                best = s;
+        }
+        return best;
+    }
+
+    /**
+     * Fill the move list for ply with candidate spots, scored for ordering:
+     * the table move first, then immediate wins, blocks and history.
+     */
+    private int generateMoves(int ply, int tableMove) {
+        int[] moves = mMoves[ply];
+        int[] scores = mMoveScores[ply];
+        boolean all = mCells <= SMALL_BOARD;
+        int count = 0;
+        for (int i = 0; i < mCells; i++) {
+            if (!isOpen(i) || (!all && mNeighbors[i] == 0))
+                continue;
+            int score = mHistory[i];
+            if (i == tableMove)
+                score = Integer.MAX_VALUE;
+            else if (mGame.completesLine(TicTacToeGame.HUMAN_PLAYER, i)
+                    || mGame.completesLine(TicTacToeGame.COMPUTER_PLAYER, i))
+                score = Integer.MAX_VALUE - 1;
+            moves[count] = i;
+            scores[count] = score;
+            count++;
+        }
+        if (count == 0 && mGame.checkForWinner() == 0) {
+            // Empty large board: start in the centre
+            moves[0] = (mRows / 2) * mCols + mCols / 2;
+            scores[0] = 0;
+            count = 1;
+        }
+        return count;
+    }
+
+    // Selection sort step: bring the best remaining move to position i
+    private int nextMove(int ply, int i, int count) {
+        int[] moves = mMoves[ply];
+        int[] scores = mMoveScores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (scores[j] > scores[best])
+                best = j;
+        }
+        int move = moves[best];
+        int score = scores[best];
+        moves[best] = moves[i];
+        scores[best] = scores[i];
+        moves[i] = move;
+        scores[i] = score;
+        return move;
+    }
+
+    /**
+     * Static evaluation for the player to move: every line that only one
+     * side occupies counts for that side, weighted by its stone count.
+     * With a network, the negated value of the position for the player
+     * who just moved.
+     */
+    private int evaluate(char player) {
+        if (mEvaluator != null) {
+            int value = -mEvaluator.value(opponent(player));
+            return Math.max(-WIN_THRESHOLD + 1, Math.min(WIN_THRESHOLD - 1, value));
+        }
+        int score = 0;
+        for (int[] window : mWindows) {
+            int human = 0;
+            int computer = 0;
+            for (int cell : window) {
+                char occupant = mGame.getBoardOccupant(cell);
+                if (occupant == TicTacToeGame.HUMAN_PLAYER)
+                    human++;
+                else if (occupant == TicTacToeGame.COMPUTER_PLAYER)
+                    computer++;
+            }
+            if (computer == 0)
+                score += LINE_WEIGHTS[Math.min(human, LINE_WEIGHTS.length - 1)];
+            else if (human == 0)
+                score -= LINE_WEIGHTS[Math.min(computer, LINE_WEIGHTS.length - 1)];
+        }
+        return player == TicTacToeGame.HUMAN_PLAYER ? score : -score;
+    }
+
+    private void makeMove(char player, int move) {
+        mGame.makeMove(player, move);
+        mHash ^= key(player, move) ^ mSideKey;
+        if (mEvaluator != null)
+            mEvaluator.add(player, move);
+        if (mCache != null)
+            updateSymmetryHashes(player, move, mSideKey);
+        updateNeighbors(move, 1);
+    }
+
+    private void unmakeMove(int move) {
+        char player = mGame.getBoardOccupant(move);
+        mGame.unmakeMove();
+        mHash ^= key(player, move) ^ mSideKey;
+        if (mEvaluator != null)
+            mEvaluator.remove(player, move);
+        if (mCache != null)
+            updateSymmetryHashes(player, move, mSideKey);
+        updateNeighbors(move, -1);
+    }
+
+    // The side key is the same under every symmetry
+    private void updateSymmetryHashes(char player, int cell, long side) {
+        for (int s = 0; s < mSymmetryHashes.length; s++)
+            mSymmetryHashes[s] ^= key(player, mSymmetries[s][cell]) ^ side;
+    }
+
+    private void updateNeighbors(int cell, int delta) {
+        int row = cell / mCols;
+        int col = cell % mCols;
+        for (int r = Math.max(0, row - NEIGHBOR_RADIUS); r <= Math.min(mRows - 1, row + NEIGHBOR_RADIUS); r++) {
+            for (int c = Math.max(0, col - NEIGHBOR_RADIUS); c <= Math.min(mCols - 1, col + NEIGHBOR_RADIUS); c++)
+                mNeighbors[r * mCols + c] += delta;
+        }
+    }
+
+    private long key(char player, int cell) {
+        return mZobrist[cell * 2 + (player == TicTacToeGame.HUMAN_PLAYER ? 0 : 1)];
+    }
+
+    private boolean isOpen(int cell) {
+        char occupant = mGame.getBoardOccupant(cell);
+        return occupant != TicTacToeGame.HUMAN_PLAYER && occupant != TicTacToeGame.COMPUTER_PLAYER;
+    }
+
+    private static char opponent(char player) {
+        return player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+    }
+}
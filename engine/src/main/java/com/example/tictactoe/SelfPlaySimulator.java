@@ -0,0 +1,289 @@
+package com.example.tictactoe;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/* SelfPlaySimulator.java
+ *
+ * Headless engine-vs-engine simulator.  Plays a number of games between
+ * two difficulty levels on a fork-join pool; every leaf task owns its game
+ * instance and a SplitRandom split off the parent's, so a run is
+ * reproducible from its seed regardless of thread count.
+ *
+ * Run it on a plain JVM with ./gradlew :engine:selfPlay --args="..." or from
+ * the compiled classes, e.g.
+ *
+ *   java -cp <classes> com.example.tictactoe.SelfPlaySimulator \
+ *       --games 10000000 --x easy --o hard --first X --seed 1
+ *
+ * --network <file> gives LEARNED a network; add --leaves to evaluate the
+ * searches' leaves with it too.
+ */
+
+public class SelfPlaySimulator {
+
+    // Games played by one leaf task
+    private static final int CHUNK = 4096;
+    // z for a two-sided 95% confidence interval
+    private static final double Z_95 = 1.959964;
+
+    private long mGames = 100000;
+    private int mXDifficulty = TicTacToeGame.HARD;
+    private int mODifficulty = TicTacToeGame.HARD;
+    private char mFirstPlayer = TicTacToeGame.HUMAN_PLAYER;
+    private int mBoardPreset = TicTacToeGame.DEFAULT_PRESET;
+    private long mSeed = 1;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private SearchBudget mBudget = SearchBudget.millis(50);
+    private NTupleNetwork mNetwork;
+    private boolean mNetworkLeaves;
+
+    public SelfPlaySimulator setGames(long games) {
+        mGames = games;
+        return this;
+    }
+
+    public SelfPlaySimulator setDifficulties(int xDifficulty, int oDifficulty) {
+        mXDifficulty = xDifficulty;
+        mODifficulty = oDifficulty;
+        return this;
+    }
+
+    public SelfPlaySimulator setFirstPlayer(char player) {
+        mFirstPlayer = player;
+        return this;
+    }
+
+    public SelfPlaySimulator setBoardPreset(int preset) {
+        mBoardPreset = preset;
+        return this;
+    }
+
+    public SelfPlaySimulator setSeed(long seed) {
+        mSeed = seed;
+        return this;
+    }
+
+    public SelfPlaySimulator setThreads(int threads) {
+        mThreads = threads;
+        return this;
+    }
+
+    public SelfPlaySimulator setBudget(SearchBudget budget) {
+        mBudget = budget;
+        return this;
+    }
+
+    /**
+     * Play LEARNED with a network, and with leaves also evaluate the
+     * searches' leaves with it.
+     */
+    public SelfPlaySimulator setNetwork(NTupleNetwork network, boolean leaves) {
+        mNetwork = network;
+        mNetworkLeaves = leaves;
+        return this;
+    }
+
+    /**
+     * Outcome counts and per-move engine latency of a run.
+     */
+    public static class Result {
+        public long xWins;
+        public long oWins;
+        public long draws;
+        public long elapsedNanos;
+        public final LatencyHistogram moveNanos = new LatencyHistogram();
+
+        public long getGames() {
+            return xWins + oWins + draws;
+        }
+
+        void add(Result other) {
+            xWins += other.xWins;
+            oWins += other.oWins;
+            draws += other.draws;
+            moveNanos.add(other.moveNanos);
+        }
+
+        public double getGamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getGames() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return {low, high} of the 95% Wilson score interval for a rate.
+         */
+        public static double[] wilsonInterval(long successes, long trials) {
+            if (trials == 0)
+                return new double[]{0, 0};
+            double p = (double) successes / trials;
+            double z2 = Z_95 * Z_95;
+            double denominator = 1 + z2 / trials;
+            double centre = (p + z2 / (2 * trials)) / denominator;
+            double margin = Z_95 * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+            return new double[]{Math.max(0, centre - margin), Math.min(1, centre + margin)};
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            long games = getGames();
+            text.append(String.format(Locale.US, "games          %d%n", games));
+            appendRate(text, "X wins", xWins, games);
+            appendRate(text, "O wins", oWins, games);
+            appendRate(text, "draws", draws, games);
+            text.append(String.format(Locale.US, "games/sec      %.0f%n", getGamesPerSecond()));
+            text.append(String.format(Locale.US, "moves          %d%n", moveNanos.getCount()));
+            text.append(String.format(Locale.US, "move latency   mean %.0f ns, p50 %d ns, p90 %d ns, p99 %d ns, p99.9 %d ns, max %d ns%n",
+                    moveNanos.getMean(), moveNanos.getPercentile(50), moveNanos.getPercentile(90),
+                    moveNanos.getPercentile(99), moveNanos.getPercentile(99.9), moveNanos.getMax()));
+            return text.toString();
+        }
+
+        private static void appendRate(StringBuilder text, String label, long count, long games) {
+            double[] interval = wilsonInterval(count, games);
+            text.append(String.format(Locale.US, "%-14s %.4f%%  [%.4f%%, %.4f%%]%n", label,
+                    games == 0 ? 0 : 100.0 * count / games, 100 * interval[0], 100 * interval[1]));
+        }
+    }
+
+    public Result run() {
+        ForkJoinPool pool = new ForkJoinPool(mThreads);
+        try {
+            long start = System.nanoTime();
+            Result result = pool.invoke(new GamesTask(0, mGames, new SplitRandom(mSeed)));
+            result.elapsedNanos = System.nanoTime() - start;
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //--- Splits the game range in halves; the right half gets a split generator
+    private class GamesTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final long mFrom;
+        private final long mTo;
+        private final SplitRandom mRandom;
+
+        GamesTask(long from, long to, SplitRandom random) {
+            mFrom = from;
+            mTo = to;
+            mRandom = random;
+        }
+
+        @Override
+        protected Result compute() {
+            if (mTo - mFrom <= CHUNK)
+                return playGames(mTo - mFrom, mRandom);
+            long middle = (mFrom + mTo) >>> 1;
+            GamesTask right = new GamesTask(middle, mTo, mRandom.split());
+            GamesTask left = new GamesTask(mFrom, middle, mRandom);
+            right.fork();
+            Result result = left.compute();
+            result.add(right.join());
+            return result;
+        }
+    }
+
+    private Result playGames(long games, SplitRandom random) {
+        int[] config = TicTacToeGame.BOARD_PRESETS[mBoardPreset];
+        TicTacToeGame game = new TicTacToeGame(config[0], config[1], config[2], random);
+        game.setNetwork(mNetwork);
+        if (mNetworkLeaves)
+            game.getSearchEngine().setNetwork(mNetwork);
+        Result result = new Result();
+        for (long g = 0; g < games; g++) {
+            game.clearBoard();
+            char player = mFirstPlayer;
+            int winner = 0;
+            while (winner == 0) {
+                int difficulty = player == TicTacToeGame.HUMAN_PLAYER ? mXDifficulty : mODifficulty;
+                long start = System.nanoTime();
+                game.getMove(player, difficulty, mBudget);
+                result.moveNanos.record(System.nanoTime() - start);
+                winner = game.checkForWinner();
+                player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            }
+            if (winner == 2)
+                result.xWins++;
+            else if (winner == 3)
+                result.oWins++;
+            else
+                result.draws++;
+        }
+        return result;
+    }
+
+    static int parseDifficulty(String name) {
+        String level = name.toLowerCase(Locale.US);
+        if (level.equals("easy"))
+            return TicTacToeGame.EASY;
+        if (level.equals("medium"))
+            return TicTacToeGame.MEDIUM;
+        if (level.equals("hard"))
+            return TicTacToeGame.HARD;
+        if (level.equals("perfect"))
+            return TicTacToeGame.PERFECT;
+        if (level.equals("learned"))
+            return TicTacToeGame.LEARNED;
+        throw new IllegalArgumentException("Unknown difficulty: " + name);
+    }
+
+    public static void main(String[] args) throws IOException {
+        SelfPlaySimulator simulator = new SelfPlaySimulator();
+        int xDifficulty = TicTacToeGame.HARD;
+        int oDifficulty = TicTacToeGame.HARD;
+        NTupleNetwork network = null;
+        boolean leaves = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--leaves")) {
+                leaves = true;
+                continue;
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--games":
+                    simulator.setGames(Long.parseLong(value));
+                    break;
+                case "--x":
+                    xDifficulty = parseDifficulty(value);
+                    break;
+                case "--o":
+                    oDifficulty = parseDifficulty(value);
+                    break;
+                case "--first":
+                    simulator.setFirstPlayer(Character.toUpperCase(value.charAt(0)));
+                    break;
+                case "--board":
+                    simulator.setBoardPreset(Integer.parseInt(value));
+                    break;
+                case "--seed":
+                    simulator.setSeed(Long.parseLong(value));
+                    break;
+                case "--threads":
+                    simulator.setThreads(Integer.parseInt(value));
+                    break;
+                case "--budget-ms":
+                    simulator.setBudget(SearchBudget.millis(Long.parseLong(value)));
+                    break;
+                case "--network":
+                    FileInputStream in = new FileInputStream(value);
+                    try {
+                        network = NTupleNetwork.read(in);
+                    } finally {
+                        in.close();
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        simulator.setDifficulties(xDifficulty, oDifficulty);
+        simulator.setNetwork(network, leaves);
+        System.out.print(simulator.run());
+    }
+}
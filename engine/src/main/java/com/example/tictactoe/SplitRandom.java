@@ -0,0 +1,56 @@
+package com.example.tictactoe;
+
+import java.util.Random;
+
+/* SplitRandom.java
+ *
+ * SplitMix64 random generator.  split() derives an independent generator,
+ * so parallel workers each get their own stream from one seed without
+ * sharing (and contending on) a single java.util.Random.  Not thread-safe;
+ * give every thread its own instance.
+ */
+
+public class SplitRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long mState;
+
+    public SplitRandom(long seed) {
+        mState = seed;
+    }
+
+    /**
+     * @return a new generator seeded from this one's stream.
+     */
+    public SplitRandom split() {
+        return new SplitRandom(mix(nextState()) ^ GOLDEN_GAMMA);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        // Called once by the Random constructor, before mState exists
+        mState = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix(nextState());
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (mix(nextState()) >>> (64 - bits));
+    }
+
+    private long nextState() {
+        return mState += GOLDEN_GAMMA;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
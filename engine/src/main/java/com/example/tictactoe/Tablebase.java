@@ -0,0 +1,250 @@
+package com.example.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/* Tablebase.java
+ *
+ * The solved value of every position of one small m,n,k game, read from a
+ * memory-mapped file.  A position is indexed by the base-3 encoding of the
+ * board from the point of view of the player to move, as in
+ * PerfectPlayTable: digit 1 = own stone, digit 2 = opponent stone, cell 0
+ * least significant.
+ *
+ * File layout (big-endian):
+ *   header     int magic, short version, byte rows, byte columns,
+ *              byte win length, byte rule, byte flags, byte reserved,
+ *              int position count (3^cells)
+ *   outcomes   2 bits per position, four to a byte, lowest bits first:
+ *              BoardAnalysis.WIN, DRAW or LOSS for the player to move, or
+ *              NOT_EVALUATED for positions no game reaches
+ *   distances  with HAS_DISTANCES, one byte per position: plies until the
+ *              game ends with best play
+ *
+ * Lookups read single bytes out of the mapping; nothing is copied onto the
+ * heap, and the absolute reads make every method safe to call from any
+ * thread.  Build tablebases with TablebaseGenerator.
+ */
+
+public class Tablebase {
+
+    public static final int MAGIC = 0x54545442;     // "TTTB"
+    public static final int VERSION = 1;
+    public static final int RULE_K_OR_MORE = OpeningBook.RULE_K_OR_MORE;
+    public static final int HAS_DISTANCES = 1;
+    // 3^cells must fit in an int index
+    public static final int MAX_CELLS = 16;
+
+    static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer mBuffer;
+    private final int mRows;
+    private final int mCols;
+    private final int mWinLength;
+    private final int mCount;
+    private final int mDistanceOffset;
+    // mPowers[cell] = 3^cell
+    private final int[] mPowers;
+
+    /**
+     * Map a tablebase file read-only.
+     *
+     * @throws IOException if the file is missing or not a tablebase
+     */
+    public static Tablebase open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new Tablebase(buffer);
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    public Tablebase(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a tablebase");
+        if (buffer.getShort(4) != VERSION)
+            throw new IOException("Unsupported tablebase version " + buffer.getShort(4));
+        if (buffer.get(9) != RULE_K_OR_MORE)
+            throw new IOException("Unsupported win rule " + buffer.get(9));
+        mBuffer = buffer;
+        mRows = buffer.get(6);
+        mCols = buffer.get(7);
+        mWinLength = buffer.get(8);
+        mCount = buffer.getInt(12);
+        if (mRows * mCols > MAX_CELLS)
+            throw new IOException("Tablebase board too large: " + mRows + "x" + mCols);
+        mPowers = new int[mRows * mCols];
+        int power = 1;
+        for (int cell = 0; cell < mPowers.length; cell++) {
+            mPowers[cell] = power;
+            power *= 3;
+        }
+        if (mCount != power)
+            throw new IOException("Tablebase position count " + mCount + " does not match the board");
+        long size = HEADER_BYTES + outcomeBytes(mCount);
+        mDistanceOffset = (buffer.get(10) & HAS_DISTANCES) != 0 ? (int) size : -1;
+        if (mDistanceOffset >= 0)
+            size += mCount;
+        if (buffer.capacity() < size)
+            throw new IOException("Truncated tablebase");
+    }
+
+    static int outcomeBytes(int count) {
+        return (count + 3) / 4;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getColumns() {
+        return mCols;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public boolean hasDistances() {
+        return mDistanceOffset >= 0;
+    }
+
+    /**
+     * @return true if the tablebase was built for this game's board and rule
+     */
+    public boolean matches(TicTacToeGame game) {
+        return game.getRows() == mRows && game.getColumns() == mCols && game.getWinLength() == mWinLength;
+    }
+
+    /**
+     * @return BoardAnalysis.WIN, DRAW or LOSS for player to move in the
+     * game's position, or NOT_EVALUATED if the position is not reachable
+     * or the tablebase is for another board
+     */
+    public int getOutcome(TicTacToeGame game, char player) {
+        if (!matches(game))
+            return BoardAnalysis.NOT_EVALUATED;
+        return outcomeAt(index(game, player));
+    }
+
+    /**
+     * @return plies until the game ends with best play from the game's
+     * position, or -1 without distances or for another board
+     */
+    public int getDistance(TicTacToeGame game, char player) {
+        if (!matches(game) || !hasDistances())
+            return -1;
+        return distanceAt(index(game, player));
+    }
+
+    /**
+     * Value every open cell as player's next move.  Values are plies until
+     * the game ends counting the move itself, or 0 without distances.
+     */
+    public BoardAnalysis evaluateAllMoves(TicTacToeGame game, char player) {
+        BoardAnalysis analysis = new BoardAnalysis(player, game.getBoardSize());
+        analysis.setDepth(Integer.MAX_VALUE);
+        if (!matches(game) || game.checkForWinner() != 0)
+            return analysis;
+        int base = index(game, opponentOf(player));
+        for (int cell = 0; cell < mPowers.length; cell++) {
+            if (!isOpen(game, cell))
+                continue;
+            int child = base + 2 * mPowers[cell];
+            int outcome = flip(outcomeAt(child));
+            analysis.set(cell, outcome, hasDistances() ? distanceAt(child) + 1 : 0);
+        }
+        return analysis;
+    }
+
+    /**
+     * Pick a best move for player: a win if there is one, fastest first
+     * when the tablebase has distances, else a draw, else the slowest loss.
+     *
+     * @param random breaks ties between equal moves, or null for the first
+     * @return the move, or -1 if the game is over or the tablebase is for
+     * another board
+     */
+    public int bestMove(TicTacToeGame game, char player, Random random) {
+        if (!matches(game) || game.checkForWinner() != 0)
+            return -1;
+        int base = index(game, opponentOf(player));
+        int best = -1;
+        int bestRank = Integer.MIN_VALUE;
+        int ties = 0;
+        for (int cell = 0; cell < mPowers.length; cell++) {
+            if (!isOpen(game, cell))
+                continue;
+            int child = base + 2 * mPowers[cell];
+            int rank = rank(flip(outcomeAt(child)), hasDistances() ? distanceAt(child) : 0);
+            if (rank > bestRank) {
+                best = cell;
+                bestRank = rank;
+                ties = 1;
+            } else if (rank == bestRank && random != null && random.nextInt(++ties) == 0) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    // Higher is better for the mover: wins above draws above losses, then
+    // sooner wins and later losses
+    private static int rank(int outcome, int distance) {
+        if (outcome == BoardAnalysis.WIN)
+            return 2000 - distance;
+        if (outcome == BoardAnalysis.DRAW)
+            return 1000;
+        if (outcome == BoardAnalysis.LOSS)
+            return distance;
+        return -1;
+    }
+
+    private static int flip(int outcome) {
+        if (outcome == BoardAnalysis.WIN)
+            return BoardAnalysis.LOSS;
+        if (outcome == BoardAnalysis.LOSS)
+            return BoardAnalysis.WIN;
+        return outcome;
+    }
+
+    private static char opponentOf(char player) {
+        return player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+    }
+
+    private static boolean isOpen(TicTacToeGame game, int cell) {
+        char occupant = game.getBoardOccupant(cell);
+        return occupant != TicTacToeGame.HUMAN_PLAYER && occupant != TicTacToeGame.COMPUTER_PLAYER;
+    }
+
+    private int index(TicTacToeGame game, char player) {
+        int index = 0;
+        for (int cell = 0; cell < mPowers.length; cell++) {
+            char occupant = game.getBoardOccupant(cell);
+            if (occupant == player)
+                index += mPowers[cell];
+            else if (!isOpen(game, cell))
+                index += 2 * mPowers[cell];
+        }
+        return index;
+    }
+
+    int outcomeAt(int index) {
+        return mBuffer.get(HEADER_BYTES + (index >>> 2)) >> ((index & 3) * 2) & 3;
+    }
+
+    int distanceAt(int index) {
+        return mBuffer.get(mDistanceOffset + index) & 0xFF;
+    }
+}
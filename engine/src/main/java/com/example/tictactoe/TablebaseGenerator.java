@@ -0,0 +1,299 @@
+package com.example.tictactoe;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* TablebaseGenerator.java
+ *
+ * Solves every position of a small m,n,k game by retrograde analysis and
+ * writes a Tablebase.  Stones are never removed, so all positions with n
+ * stones lead only to positions with n + 1: the solver starts from the
+ * full board and works back one stone count at a time, valuing each
+ * position from the already solved layer above it.  Within a layer the
+ * positions are independent and are split between the threads by the
+ * mover's stones.
+ *
+ * Only positions a game can reach are solved: the player to move has as
+ * many stones as the opponent or one fewer, and no line of their own.
+ */
+
+public class TablebaseGenerator {
+
+    // A solved value is the outcome in the top bits and the plies until
+    // the game ends in the low ones; 0 marks an unreachable position
+    private static final int OUTCOME_SHIFT = 5;
+    private static final int DISTANCE_MASK = (1 << OUTCOME_SHIFT) - 1;
+
+    private int mRows = 4;
+    private int mCols = 4;
+    private int mWinLength = 4;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private boolean mDistances;
+
+    private byte[] mValues;
+    private long mStates;
+
+    public TablebaseGenerator setBoard(int rows, int cols, int winLength) {
+        if (rows * cols > Tablebase.MAX_CELLS)
+            throw new IllegalArgumentException("At most " + Tablebase.MAX_CELLS + " cells");
+        mRows = rows;
+        mCols = cols;
+        mWinLength = winLength;
+        return this;
+    }
+
+    public TablebaseGenerator setThreads(int threads) {
+        mThreads = threads;
+        return this;
+    }
+
+    /**
+     * Also write the plies until the game ends, one byte per position.
+     */
+    public TablebaseGenerator setDistances(boolean distances) {
+        mDistances = distances;
+        return this;
+    }
+
+    /**
+     * Solve every reachable position.
+     *
+     * @return the number of positions solved
+     */
+    public long solve() throws InterruptedException {
+        final int cells = mRows * mCols;
+        final int[] ternary = new int[1 << cells];
+        for (int mask = 1; mask < ternary.length; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            int pow = 1;
+            for (int i = 0; i < low; i++)
+                pow *= 3;
+            ternary[mask] = ternary[mask & (mask - 1)] + pow;
+        }
+        final int[] lines = winLines();
+        // 3^cells: every cell holding a 2
+        mValues = new byte[2 * ternary[ternary.length - 1] + 1];
+        final AtomicLong states = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(mThreads);
+        try {
+            for (int stones = cells; stones >= 0; stones--) {
+                // The mover has half the stones, rounded down
+                final int moverStones = stones / 2;
+                final int opponentStones = stones - moverStones;
+                final int[] movers = masksWithBits(cells, moverStones);
+                final AtomicInteger next = new AtomicInteger();
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int t = 0; t < mThreads; t++) {
+                    tasks.add(pool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            long solved = 0;
+                            for (int i = next.getAndIncrement(); i < movers.length; i = next.getAndIncrement())
+                                solved += solveMover(movers[i], opponentStones, cells, ternary, lines);
+                            states.addAndGet(solved);
+                        }
+                    }));
+                }
+                // Every layer must be complete before the one below reads it
+                for (Future<?> task : tasks) {
+                    try {
+                        task.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        mStates = states.get();
+        return mStates;
+    }
+
+    // Solve every position where the mover holds mover and the opponent
+    // holds opponentStones of the other cells
+    private int solveMover(int mover, int opponentStones, int cells, int[] ternary, int[] lines) {
+        if (hasLine(mover, lines))
+            return 0;
+        int full = (1 << cells) - 1;
+        int free = full & ~mover;
+        int solved = 0;
+        for (int opponent = free; ; opponent = (opponent - 1) & free) {
+            if (Integer.bitCount(opponent) == opponentStones) {
+                mValues[ternary[mover] + 2 * ternary[opponent]] = (byte) value(mover, opponent, full, ternary, lines);
+                solved++;
+            }
+            if (opponent == 0)
+                break;
+        }
+        return solved;
+    }
+
+    private int value(int mover, int opponent, int full, int[] ternary, int[] lines) {
+        if (hasLine(opponent, lines))
+            return BoardAnalysis.LOSS << OUTCOME_SHIFT;
+        int empty = full & ~(mover | opponent);
+        if (empty == 0)
+            return BoardAnalysis.DRAW << OUTCOME_SHIFT;
+        int win = Integer.MAX_VALUE;
+        int draw = -1;
+        int loss = -1;
+        for (int open = empty; open != 0; open &= open - 1) {
+            // After the move the opponent is to move
+            int child = mValues[ternary[opponent] + 2 * ternary[mover | (open & -open)]];
+            int outcome = child >> OUTCOME_SHIFT;
+            int distance = (child & DISTANCE_MASK) + 1;
+            if (outcome == BoardAnalysis.LOSS)
+                win = Math.min(win, distance);
+            else if (outcome == BoardAnalysis.DRAW)
+                draw = Math.max(draw, distance);
+            else
+                loss = Math.max(loss, distance);
+        }
+        if (win != Integer.MAX_VALUE)
+            return BoardAnalysis.WIN << OUTCOME_SHIFT | win;
+        if (draw >= 0)
+            return BoardAnalysis.DRAW << OUTCOME_SHIFT | draw;
+        return BoardAnalysis.LOSS << OUTCOME_SHIFT | loss;
+    }
+
+    private static boolean hasLine(int bits, int[] lines) {
+        for (int line : lines) {
+            if ((bits & line) == line)
+                return true;
+        }
+        return false;
+    }
+
+    // Every winLength-cell line of the board as a cell mask
+    private int[] winLines() {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        List<Integer> lines = new ArrayList<>();
+        for (int row = 0; row < mRows; row++) {
+            for (int col = 0; col < mCols; col++) {
+                for (int[] d : directions) {
+                    int endRow = row + d[0] * (mWinLength - 1);
+                    int endCol = col + d[1] * (mWinLength - 1);
+                    if (endRow < 0 || endRow >= mRows || endCol < 0 || endCol >= mCols)
+                        continue;
+                    int line = 0;
+                    for (int i = 0; i < mWinLength; i++)
+                        line |= 1 << ((row + d[0] * i) * mCols + col + d[1] * i);
+                    lines.add(line);
+                }
+            }
+        }
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = lines.get(i);
+        return result;
+    }
+
+    private static int[] masksWithBits(int cells, int bits) {
+        int count = 0;
+        for (int mask = 0; mask < 1 << cells; mask++) {
+            if (Integer.bitCount(mask) == bits)
+                count++;
+        }
+        int[] masks = new int[count];
+        count = 0;
+        for (int mask = 0; mask < 1 << cells; mask++) {
+            if (Integer.bitCount(mask) == bits)
+                masks[count++] = mask;
+        }
+        return masks;
+    }
+
+    /**
+     * Write the solved positions in the Tablebase format.
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeShort(Tablebase.VERSION);
+            out.writeByte(mRows);
+            out.writeByte(mCols);
+            out.writeByte(mWinLength);
+            out.writeByte(Tablebase.RULE_K_OR_MORE);
+            out.writeByte(mDistances ? Tablebase.HAS_DISTANCES : 0);
+            out.writeByte(0);
+            out.writeInt(mValues.length);
+            for (int i = 0; i < mValues.length; i += 4) {
+                int packed = 0;
+                for (int j = 0; j < 4 && i + j < mValues.length; j++)
+                    packed |= (mValues[i + j] >> OUTCOME_SHIFT) << (j * 2);
+                out.writeByte(packed);
+            }
+            if (mDistances) {
+                for (byte value : mValues)
+                    out.writeByte(value & DISTANCE_MASK);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the sum of the heap pools' peak usage since the JVM started
+     */
+    static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * ./gradlew :engine:buildTablebase --args="--board 4x4x4 --threads 8 --out 4x4x4.tb"
+     */
+    public static void main(String[] args) throws Exception {
+        TablebaseGenerator generator = new TablebaseGenerator();
+        File out = new File("4x4x4.tb");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--distances")) {
+                generator.setDistances(true);
+                continue;
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--board":
+                    String[] parts = value.split("x");
+                    generator.setBoard(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    break;
+                case "--threads":
+                    generator.setThreads(Integer.parseInt(value));
+                    break;
+                case "--out":
+                    out = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        long start = System.nanoTime();
+        long states = generator.solve();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        generator.write(out);
+        System.out.printf("%d states solved in %.2f s (%.0f states/s) on %d threads, peak heap %.1f MB%n",
+                states, seconds, states / seconds, generator.mThreads, peakHeapBytes() / 1048576.0);
+        System.out.printf("%s: %d bytes%n", out, out.length());
+    }
+}
@@ -0,0 +1,778 @@
+package com.example.tictactoe;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* TicTacToeConsole.java
+ * By Frank McCown (Harding University)
+ *
+ * This is a tic-tac-toe game that runs in the console window.  The human
+ * is X and the computer is O.
+ *
+ * The board is m x n with k-in-a-row to win (3 x 3 with 3 by default).
+ */
+
+public class TicTacToeGame {
+
+    public static final char HUMAN_PLAYER = 'X';
+    public static final char COMPUTER_PLAYER = 'O';
+    public static final char OPEN_SPOT = ' ';
+    public static final int BOARD_SIZE = 9;
+
+    // Selectable board configurations: {rows, columns, k-in-a-row}
+    public static final int[][] BOARD_PRESETS = {
+            {3, 3, 3},
+            {4, 4, 4},
+            {7, 7, 5},
+            {15, 15, 5}
+    };
+    public static final int DEFAULT_PRESET = 0;
+
+    private final int mRows;
+    private final int mCols;
+    private final int mWinLength;
+    private final char mBoard[];
+    private Random mRand;
+
+    // Number of stones on the board and the cached result of the last move
+    private int mMoveCount;
+    private int mWinner;
+
+    // Bitboard representation of the 3 x 3 position: bit i is set when the
+    // corresponding player occupies cell i (0..8, row-major).
+    private final boolean mStandard;
+    private int mHumanBits;
+    private int mComputerBits;
+
+    public static final int FULL_BOARD = 0x1FF;
+
+    // The eight winning lines as cell masks
+    static final int[] WIN_LINES = {
+            0x007, 0x038, 0x1C0,    // rows
+            0x049, 0x092, 0x124,    // columns
+            0x111, 0x054            // diagonals
+    };
+
+    // Line directions as {row step, column step}
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    // For each cell, the ids of the winLength-cell lines through it; shared
+    // by all games of one board shape
+    private static final ConcurrentHashMap<Integer, int[][]> sCellLines = new ConcurrentHashMap<>();
+    private final int[][] mCellLines;
+    // Stones of each player in each line; a line at winLength is a win
+    private final byte[] mHumanLineCounts;
+    private final byte[] mComputerLineCounts;
+
+    // Stones in the order they were played, with the result before each,
+    // so unmakeMove() restores the previous position exactly
+    private final int[] mHistory;
+    private final byte[] mHistoryWinners;
+    // Moves taken back by undo(), latest last: cell, plus the board size
+    // for O.  Only valid while the history is as undo() or redo() left it.
+    private final int[] mRedo;
+    private int mRedoCount;
+    private int mRedoBase;
+
+    public static final int EASY = 0;
+    public static final int MEDIUM = 1;
+    public static final int HARD = 2;
+    public static final int PERFECT = 3;
+    // One-ply choice by the learned network; HARD without a network
+    public static final int LEARNED = 4;
+    public static final int DIFFICULTY_COUNT = 5;
+
+    // Deepest iteration of the HARD search, in plies
+    public static final int HARD_SEARCH_DEPTH = 4;
+
+    // Search algorithms for PERFECT on boards other than 3 x 3
+    public static final int ALPHA_BETA = 0;
+    public static final int MONTE_CARLO = 1;
+    private int mSearchAlgorithm = ALPHA_BETA;
+
+    // Alpha-beta engine, created on first use and kept for its
+    // transposition table
+    private SearchEngine mSearchEngine;
+    private MctsEngine mMctsEngine;
+    // Consulted before searching on HARD and PERFECT; null if none
+    private OpeningBook mOpeningBook;
+    // Solved values for the whole game, used by PERFECT; null if none
+    private Tablebase mTablebase;
+    // Learned evaluation for LEARNED; null if none
+    private NTupleNetwork mNetwork;
+    private NTupleEvaluator mEvaluator;
+
+    /**
+     * The constructor of the TicTacToeGame have to be remove some code as follows
+     */
+    public TicTacToeGame() {
+        this(3, 3, 3);
+    }
+
+    /**
+     * Create a rows x cols game won by winLength stones in a row.
+     */
+    public TicTacToeGame(int rows, int cols, int winLength) {
+        this(rows, cols, winLength, new Random());
+    }
+
+    /**
+     * Create a game whose random moves come from the given generator, e.g.
+     * a SplitRandom owned by one simulation worker.
+     */
+    public TicTacToeGame(int rows, int cols, int winLength, Random random) {
+        if (rows < 1 || cols < 1 || winLength < 1 || winLength > Math.max(rows, cols))
+            throw new IllegalArgumentException("Invalid board " + rows + "x" + cols + "/" + winLength);
+        mRows = rows;
+        mCols = cols;
+        mWinLength = winLength;
+        mBoard = new char[rows * cols];
+        mStandard = rows == 3 && cols == 3 && winLength == 3;
+        mRand = random;
+        mCellLines = cellLines(rows, cols, winLength);
+        int lines = 0;
+        for (int[] cellLines : mCellLines) {
+            for (int line : cellLines)
+                lines = Math.max(lines, line + 1);
+        }
+        mHumanLineCounts = new byte[lines];
+        mComputerLineCounts = new byte[lines];
+        mHistory = new int[mBoard.length];
+        mHistoryWinners = new byte[mBoard.length];
+        mRedo = new int[mBoard.length];
+        clearBoard();
+    }
+
+    private static int[][] cellLines(int rows, int cols, int k) {
+        Integer shape = (rows << 16) | (cols << 8) | k;
+        int[][] cellLines = sCellLines.get(shape);
+        if (cellLines != null)
+            return cellLines;
+        int[] counts = new int[rows * cols];
+        int[][] lines = new int[4 * rows * cols][];
+        int lineCount = 0;
+        for (int[] dir : DIRECTIONS) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int endRow = r + dir[0] * (k - 1);
+                    int endCol = c + dir[1] * (k - 1);
+                    if (endRow < 0 || endRow >= rows || endCol < 0 || endCol >= cols)
+                        continue;
+                    int[] line = new int[k];
+                    for (int i = 0; i < k; i++) {
+                        line[i] = (r + dir[0] * i) * cols + c + dir[1] * i;
+                        counts[line[i]]++;
+                    }
+                    lines[lineCount++] = line;
+                }
+            }
+        }
+        cellLines = new int[rows * cols][];
+        for (int cell = 0; cell < cellLines.length; cell++)
+            cellLines[cell] = new int[counts[cell]];
+        Arrays.fill(counts, 0);
+        for (int id = 0; id < lineCount; id++) {
+            for (int cell : lines[id])
+                cellLines[cell][counts[cell]++] = id;
+        }
+        sCellLines.putIfAbsent(shape, cellLines);
+        return cellLines;
+    }
+
+    /**
+     * Create a game for one of the BOARD_PRESETS.
+     */
+    public static TicTacToeGame fromPreset(int preset) {
+        int[] config = BOARD_PRESETS[preset];
+        return new TicTacToeGame(config[0], config[1], config[2]);
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getColumns() {
+        return mCols;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    public int getBoardSize() {
+        return mBoard.length;
+    }
+
+    public char getBoardOccupant(int location) {
+        return mBoard[location];
+    }
+
+    /**
+     * @return a copy of the board, one char per cell.
+     */
+    public char[] saveBoard() {
+        return mBoard.clone();
+    }
+
+    /**
+     * Replace the position with a board returned by saveBoard().
+     */
+    public void restoreBoard(char[] board) {
+        clearBoard();
+        for (int i = 0; i < mBoard.length; i++) {
+            if (board[i] == HUMAN_PLAYER || board[i] == COMPUTER_PLAYER)
+                setMove(board[i], i);
+        }
+    }
+
+    /**
+     * @return the position as bit sets, 32 cells per int: first the words
+     * for X, then those for O.  A 3 x 3 board packs into two ints.
+     */
+    public int[] packBoard() {
+        int words = (mBoard.length + 31) / 32;
+        int[] packed = new int[words * 2];
+        for (int i = 0; i < mBoard.length; i++) {
+            if (mBoard[i] == HUMAN_PLAYER)
+                packed[i >>> 5] |= 1 << (i & 31);
+            else if (mBoard[i] == COMPUTER_PLAYER)
+                packed[words + (i >>> 5)] |= 1 << (i & 31);
+        }
+        return packed;
+    }
+
+    /**
+     * Replace the position with a board returned by packBoard().
+     */
+    public void unpackBoard(int[] packed) {
+        clearBoard();
+        int words = packed.length / 2;
+        for (int i = 0; i < mBoard.length; i++) {
+            if ((packed[i >>> 5] & 1 << (i & 31)) != 0)
+                setMove(HUMAN_PLAYER, i);
+            else if ((packed[words + (i >>> 5)] & 1 << (i & 31)) != 0)
+                setMove(COMPUTER_PLAYER, i);
+        }
+    }
+
+    /**
+     * Clear the board of all X's and O's.
+     */
+    public void clearBoard() {
+        for (int i = 0; i < mBoard.length; i++) {
+            mBoard[i] = OPEN_SPOT;
+        }
+        Arrays.fill(mHumanLineCounts, (byte) 0);
+        Arrays.fill(mComputerLineCounts, (byte) 0);
+        mHumanBits = 0;
+        mComputerBits = 0;
+        mMoveCount = 0;
+        mWinner = 0;
+        mRedoCount = 0;
+        mRedoBase = 0;
+    }
+
+    /**
+     * Set the given player at the given location on the game board.  A
+     * stone is played with makeMove(); OPEN_SPOT takes the stone there
+     * back, with unmakeMove() if it was the last one played.
+     */
+    public void setMove(char player, int location) {
+        char previous = mBoard[location];
+        if (previous == HUMAN_PLAYER || previous == COMPUTER_PLAYER) {
+            if (mHistory[mMoveCount - 1] == location)
+                unmakeMove();
+            else
+                removeStone(location);
+        }
+        if (player == HUMAN_PLAYER || player == COMPUTER_PLAYER)
+            makeMove(player, location);
+    }
+
+    /**
+     * Play player's stone on the open cell location.  Only the lines
+     * through the cell are touched; the result is known at once.
+     *
+     * @return the new checkForWinner() value
+     */
+    public int makeMove(char player, int location) {
+        mHistory[mMoveCount] = location;
+        mHistoryWinners[mMoveCount] = (byte) mWinner;
+        mMoveCount++;
+        mBoard[location] = player;
+        if (mStandard) {
+            if (player == HUMAN_PLAYER)
+                mHumanBits |= 1 << location;
+            else
+                mComputerBits |= 1 << location;
+        }
+        boolean won = false;
+        if (player == HUMAN_PLAYER) {
+            for (int line : mCellLines[location]) {
+                if (++mHumanLineCounts[line] == mWinLength)
+                    won = true;
+            }
+        } else {
+            for (int line : mCellLines[location]) {
+                if (++mComputerLineCounts[line] == mWinLength)
+                    won = true;
+            }
+        }
+        if (won)
+            mWinner = player == HUMAN_PLAYER ? 2 : 3;
+        else if (mWinner == 0 && mMoveCount == mBoard.length)
+            mWinner = 1;
+        return mWinner;
+    }
+
+    /**
+     * Take back the last stone played, restoring the position before it
+     * exactly.
+     *
+     * @return the cell of the stone
+     */
+    public int unmakeMove() {
+        int location = popMove();
+        // Moves taken back below the undo point make the redo list stale
+        if (mMoveCount < mRedoBase)
+            mRedoCount = 0;
+        return location;
+    }
+
+    private int popMove() {
+        int location = mHistory[--mMoveCount];
+        if (mBoard[location] == HUMAN_PLAYER) {
+            for (int line : mCellLines[location])
+                mHumanLineCounts[line]--;
+        } else {
+            for (int line : mCellLines[location])
+                mComputerLineCounts[line]--;
+        }
+        if (mStandard) {
+            mHumanBits &= ~(1 << location);
+            mComputerBits &= ~(1 << location);
+        }
+        mBoard[location] = OPEN_SPOT;
+        mWinner = mHistoryWinners[mMoveCount];
+        return location;
+    }
+
+    // Take back a stone from the middle of the history; rare, so the result
+    // is recomputed from all lines
+    private void removeStone(int location) {
+        int ply = 0;
+        while (mHistory[ply] != location)
+            ply++;
+        mMoveCount--;
+        System.arraycopy(mHistory, ply + 1, mHistory, ply, mMoveCount - ply);
+        byte[] counts = mBoard[location] == HUMAN_PLAYER ? mHumanLineCounts : mComputerLineCounts;
+        for (int line : mCellLines[location])
+            counts[line]--;
+        if (mStandard) {
+            mHumanBits &= ~(1 << location);
+            mComputerBits &= ~(1 << location);
+        }
+        mBoard[location] = OPEN_SPOT;
+        mWinner = 0;
+        for (int line = 0; line < mHumanLineCounts.length && mWinner == 0; line++) {
+            if (mHumanLineCounts[line] == mWinLength)
+                mWinner = 2;
+            else if (mComputerLineCounts[line] == mWinLength)
+                mWinner = 3;
+        }
+        if (mWinner == 0 && mMoveCount == mBoard.length)
+            mWinner = 1;
+        // Later stones were played into a position that no longer existed
+        for (int i = ply; i < mMoveCount; i++)
+            mHistoryWinners[i] = 0;
+        mRedoCount = 0;
+    }
+
+    //--- Undo and redo for the UI, on top of makeMove() and unmakeMove()
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    /**
+     * @return the cell of the stone played at the given ply, from 0
+     */
+    public int getHistoryMove(int ply) {
+        return mHistory[ply];
+    }
+
+    public boolean canUndo() {
+        return mMoveCount > 0;
+    }
+
+    public boolean canRedo() {
+        return mRedoCount > 0 && mMoveCount == mRedoBase;
+    }
+
+    /**
+     * Take back the last stone and remember it for redo().
+     *
+     * @return the cell of the stone, or -1 if there is none
+     */
+    public int undo() {
+        if (mMoveCount == 0)
+            return -1;
+        // A move played since the last undo or redo starts a new line
+        if (mMoveCount != mRedoBase)
+            mRedoCount = 0;
+        char player = mBoard[mHistory[mMoveCount - 1]];
+        int location = popMove();
+        mRedo[mRedoCount++] = player == COMPUTER_PLAYER ? location + mBoard.length : location;
+        mRedoBase = mMoveCount;
+        return location;
+    }
+
+    /**
+     * Replay the stone taken back by the last undo().
+     *
+     * @return the cell of the stone, or -1 if there is none
+     */
+    public int redo() {
+        if (!canRedo())
+            return -1;
+        int entry = mRedo[--mRedoCount];
+        int location = entry % mBoard.length;
+        makeMove(entry >= mBoard.length ? COMPUTER_PLAYER : HUMAN_PLAYER, location);
+        mRedoBase = mMoveCount;
+        return location;
+    }
+
+    /**
+     * @return the player who played the stone that undo() would take back,
+     * or OPEN_SPOT if there is none
+     */
+    public char getLastPlayer() {
+        return mMoveCount == 0 ? OPEN_SPOT : mBoard[mHistory[mMoveCount - 1]];
+    }
+
+    /**
+     * @return the player whose stone redo() would replay, or OPEN_SPOT
+     */
+    public char getRedoPlayer() {
+        if (!canRedo())
+            return OPEN_SPOT;
+        return mRedo[mRedoCount - 1] >= mBoard.length ? COMPUTER_PLAYER : HUMAN_PLAYER;
+    }
+
+    /**
+     * @return the occupancy mask of the given player (bit i set for cell i).
+     * Only maintained on the standard 3 x 3 board.
+     */
+    public int getPlayerBits(char player) {
+        if (player == HUMAN_PLAYER)
+            return mHumanBits;
+        if (player == COMPUTER_PLAYER)
+            return mComputerBits;
+        return 0;
+    }
+
+    /**
+     * Check whether the given 3 x 3 occupancy mask contains a complete line.
+     */
+    public static boolean hasWon(int bits) {
+        for (int line : WIN_LINES) {
+            if ((bits & line) == line)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check for a winner on the given 3 x 3 occupancy masks.
+     *
+     * @return Return 0 if no winner or tie yet, 1 if it's a tie, 2 if X won,
+     * or 3 if O won.
+     */
+    public static int checkForWinner(int humanBits, int computerBits) {
+        if (hasWon(humanBits))
+            return 2;
+        if (hasWon(computerBits))
+            return 3;
+        // All places are taken, so it's a tie
+        if ((humanBits | computerBits) == FULL_BOARD)
+            return 1;
+        return 0;
+    }
+
+    /**
+     * Check for a winner and return a status value indicating who has won.
+     * The status is maintained by setMove, so this is a constant-time call.
+     *
+     * @return Return 0 if no winner or tie yet, 1 if it's a tie, 2 if X won,
+     * or 3 if O won.
+     */
+    public int checkForWinner() {
+        return mWinner;
+    }
+
+    /**
+     * Check whether a stone of the given player at the open cell location
+     * would complete a line: one of the lines through the cell must hold
+     * winLength - 1 of the player's stones and none of the opponent's.
+     */
+    public boolean completesLine(char player, int location) {
+        if (mStandard)
+            return hasWon(getPlayerBits(player) | (1 << location));
+        byte[] own = player == HUMAN_PLAYER ? mHumanLineCounts : mComputerLineCounts;
+        byte[] other = player == HUMAN_PLAYER ? mComputerLineCounts : mHumanLineCounts;
+        for (int line : mCellLines[location]) {
+            if (own[line] == mWinLength - 1 && other[line] == 0)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isOpen(int location) {
+        return mBoard[location] != HUMAN_PLAYER && mBoard[location] != COMPUTER_PLAYER;
+    }
+
+    public SearchEngine getSearchEngine() {
+        if (mSearchEngine == null) {
+            mSearchEngine = new SearchEngine(this);
+            mSearchEngine.setPositionCache(new PositionCache(PositionCache.DEFAULT_BYTES));
+        }
+        return mSearchEngine;
+    }
+
+    public MctsEngine getMctsEngine() {
+        if (mMctsEngine == null)
+            mMctsEngine = new MctsEngine(this);
+        return mMctsEngine;
+    }
+
+    /**
+     * Use an opening book for HARD and PERFECT moves, or none with null.
+     * A book built for another board is ignored.
+     */
+    public void setOpeningBook(OpeningBook book) {
+        mOpeningBook = book;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return mOpeningBook;
+    }
+
+    /**
+     * Play PERFECT moves and value hints from a tablebase, or search with
+     * null.  A tablebase built for another board is ignored.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        mTablebase = tablebase;
+    }
+
+    public Tablebase getTablebase() {
+        return mTablebase;
+    }
+
+    /**
+     * Play LEARNED moves with a network, or as HARD with null.  A network
+     * trained for another win length is ignored.  The alpha-beta search
+     * keeps its line weights unless getSearchEngine().setNetwork() is
+     * given a network too.
+     */
+    public void setNetwork(NTupleNetwork network) {
+        if (network != null && !network.matches(this))
+            network = null;
+        mNetwork = network;
+        mEvaluator = null;
+    }
+
+    public NTupleNetwork getNetwork() {
+        return mNetwork;
+    }
+
+    /**
+     * Choose ALPHA_BETA or MONTE_CARLO for PERFECT moves on larger boards.
+     */
+    public void setSearchAlgorithm(int algorithm) {
+        mSearchAlgorithm = algorithm;
+    }
+
+    /**
+     * Pick and play a computer move, searching within the given budget.
+     * On larger boards HARD searches up to HARD_SEARCH_DEPTH plies and
+     * PERFECT searches as deep as the budget allows (Monte Carlo search
+     * uses SearchBudget.DEFAULT if the budget has no limit); both play from
+     * the opening book first, if one is set, and PERFECT plays from a
+     * matching tablebase before either.  The 3 x 3 board and the other
+     * levels ignore the budget.
+     */
+    public int getComputerMove(int difficulty, SearchBudget budget) {
+        return getMove(COMPUTER_PLAYER, difficulty, budget);
+    }
+
+    public int getComputerMove(int difficulty) {
+        return getMove(COMPUTER_PLAYER, difficulty);
+    }
+
+    /**
+     * Like getComputerMove(difficulty, budget), but the engine plays for
+     * the given player, e.g. to let two engines play each other.
+     */
+    public int getMove(char player, int difficulty, SearchBudget budget) {
+        if (difficulty == EASY || difficulty == MEDIUM || difficulty == LEARNED || mStandard)
+            return getMove(player, difficulty);
+        int move = -1;
+        if (difficulty == PERFECT && mTablebase != null)
+            move = mTablebase.bestMove(this, player, mRand);
+        if (move < 0 && mOpeningBook != null)
+            move = mOpeningBook.lookup(this, player);
+        if (move < 0) {
+            if (difficulty == PERFECT && mSearchAlgorithm == MONTE_CARLO) {
+                if (budget.getMillis() == 0 && budget.getNodes() == 0)
+                    budget = SearchBudget.DEFAULT;
+                move = getMctsEngine().findBestMove(player, budget);
+            } else {
+                int maxDepth = difficulty == HARD ? HARD_SEARCH_DEPTH : 0;
+                move = getSearchEngine().findBestMove(player, maxDepth, budget);
+            }
+        }
+        setMove(player, move);
+        return move;
+    }
+
+    /**
+     * Search ahead for player's move in this position as getMove(player,
+     * difficulty, budget) would, without playing it.  The engine keeps what
+     * it found, so a later getMove() here continues from it, or answers at
+     * once if this search finished.
+     *
+     * @return true if there is nothing left to search: the level does not
+     * search on this board, the move comes from a tablebase or book, or the
+     * search reached its depth or proved the result
+     */
+    public boolean ponder(char player, int difficulty, SearchBudget budget) {
+        if (mStandard || (difficulty != HARD && difficulty != PERFECT) || checkForWinner() != 0)
+            return true;
+        if (difficulty == PERFECT && (mSearchAlgorithm == MONTE_CARLO || mTablebase != null && mTablebase.matches(this)))
+            return true;
+        if (mOpeningBook != null && mOpeningBook.lookup(this, player) >= 0)
+            return true;
+        SearchEngine engine = getSearchEngine();
+        engine.findBestMove(player, difficulty == HARD ? HARD_SEARCH_DEPTH : 0, budget);
+        return engine.isFinished();
+    }
+
+    /**
+     * Value every open cell as player's next move.  The 3 x 3 board is
+     * solved exactly from the perfect play table, and boards with a
+     * matching tablebase from that; larger boards share one search within
+     * the budget, see SearchEngine.evaluateAllMoves().
+     */
+    public BoardAnalysis evaluateAllMoves(char player, SearchBudget budget) {
+        if (!mStandard && mTablebase != null && mTablebase.matches(this))
+            return mTablebase.evaluateAllMoves(this, player);
+        if (!mStandard)
+            return getSearchEngine().evaluateAllMoves(player, budget);
+        char opponent = player == HUMAN_PLAYER ? COMPUTER_PLAYER : HUMAN_PLAYER;
+        int mover = getPlayerBits(player);
+        int other = getPlayerBits(opponent);
+        int empty = BOARD_SIZE - mMoveCount;
+        BoardAnalysis analysis = new BoardAnalysis(player, BOARD_SIZE);
+        analysis.setDepth(Integer.MAX_VALUE);
+        if (mWinner != 0)
+            return analysis;
+        PerfectPlayTable table = PerfectPlayTable.get();
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            if (!isOpen(i))
+                continue;
+            // The table scores 1 + the open spots left by the winning move
+            int score = -table.score(other, mover | 1 << i);
+            if (score > 0)
+                analysis.set(i, BoardAnalysis.WIN, empty - score + 1);
+            else if (score < 0)
+                analysis.set(i, BoardAnalysis.LOSS, empty + score + 1);
+            else
+                analysis.set(i, BoardAnalysis.DRAW, empty);
+        }
+        return analysis;
+    }
+
+    public int getMove(char player, int difficulty) {
+        char opponent = player == HUMAN_PLAYER ? COMPUTER_PLAYER : HUMAN_PLAYER;
+        // Perfect play is a single lookup in the precomputed minimax table;
+        // other board sizes search with the default budget
+        if (difficulty == PERFECT) {
+            if (mStandard) {
+                int move = PerfectPlayTable.get().bestMove(getPlayerBits(player), getPlayerBits(opponent));
+                setMove(player, move);
+                return move;
+            }
+            return getMove(player, PERFECT, SearchBudget.DEFAULT);
+        }
+        if (difficulty == LEARNED) {
+            if (mNetwork == null)
+                return getMove(player, HARD, SearchBudget.DEFAULT);
+            int move = learnedMove(player, opponent);
+            setMove(player, move);
+            return move;
+        }
+        // First see if there's a move the player can make to win
+        if (difficulty == MEDIUM || difficulty == HARD) {
+            for (int i = 0; i < mBoard.length; i++) {
+                if (isOpen(i) && completesLine(player, i)) {
+                    setMove(player, i);
+                    return i;
+                }
+            }
+        }
+        // See if there's a move the player can make to block the opponent from winning
+        if (difficulty == HARD) {
+            for (int i = 0; i < mBoard.length; i++) {
+                if (isOpen(i) && completesLine(opponent, i)) {
+                    setMove(player, i);
+                    return i;
+                }
+            }
+        }
+        // Generate random move: pick the n-th open spot
+        int n = mRand.nextInt(mBoard.length - mMoveCount);
+        int move = 0;
+        while (!isOpen(move) || n-- > 0) {
+            move++;
+        }
+        setMove(player, move);
+        return move;
+    }
+
+    // Win or block at once if possible, else the move the network values
+    // most, ties broken at random
+    private int learnedMove(char player, char opponent) {
+        int block = -1;
+        for (int i = 0; i < mBoard.length; i++) {
+            if (!isOpen(i))
+                continue;
+            if (completesLine(player, i))
+                return i;
+            if (block < 0 && completesLine(opponent, i))
+                block = i;
+        }
+        if (block >= 0)
+            return block;
+        if (mEvaluator == null)
+            mEvaluator = new NTupleEvaluator(mNetwork, mRows, mCols);
+        mEvaluator.reset(this);
+        int best = -1;
+        int bestValue = Integer.MIN_VALUE;
+        int ties = 0;
+        for (int i = 0; i < mBoard.length; i++) {
+            if (!isOpen(i))
+                continue;
+            int value = mEvaluator.valueAfter(player, i);
+            if (value > bestValue) {
+                best = i;
+                bestValue = value;
+                ties = 1;
+            } else if (value == bestValue && mRand.nextInt(++ties) == 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
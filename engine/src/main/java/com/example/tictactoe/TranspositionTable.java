@@ -0,0 +1,100 @@
+package com.example.tictactoe;
+
+/* TranspositionTable.java
+ *
+ * Fixed-size table of alpha-beta results, shared by all threads of one
+ * search without locks.  An entry is two longs side by side in a single
+ * array: the position's key XOR the data, then the data.  A probe only
+ * accepts an entry whose two words XOR back to the key it looks for, so
+ * an entry torn by two threads writing at once reads as a miss instead of
+ * another position's result.  Nothing is allocated after construction.
+ *
+ * Data word, low bits first:
+ *   age (6 bits) | flag (2) | depth (8) | move + 1 (16) | score (32)
+ *
+ * A stored depth is at least 1, so a data word is never 0 and probe()
+ * returns 0 for a miss.
+ */
+
+public class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    private static final int AGE_MASK = 63;
+
+    private final long[] mEntries;
+    private final int mMask;
+    // Set by the main search thread before the helpers start
+    private int mAge;
+
+    /**
+     * A table of 2^bits entries, 16 bytes each.
+     */
+    public TranspositionTable(int bits) {
+        mEntries = new long[2 << bits];
+        mMask = (1 << bits) - 1;
+    }
+
+    public int size() {
+        return mMask + 1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mEntries.length; i++)
+            mEntries[i] = 0;
+    }
+
+    /**
+     * Start a new search: entries from older searches are replaced first.
+     */
+    public void newSearch() {
+        mAge = (mAge + 1) & AGE_MASK;
+    }
+
+    /**
+     * @return the data word stored for key, or 0 if there is none
+     */
+    public long probe(long key) {
+        int index = ((int) key & mMask) << 1;
+        long data = mEntries[index + 1];
+        return (mEntries[index] ^ data) == key ? data : 0;
+    }
+
+    /**
+     * Store a result.  Depth-preferred: a deeper entry of another position
+     * from the current search is kept.
+     */
+    public void store(long key, int depth, int score, int flag, int move) {
+        int index = ((int) key & mMask) << 1;
+        long old = mEntries[index + 1];
+        if ((mEntries[index] ^ old) != key && old != 0 && (int) (old & AGE_MASK) == mAge && depth(old) > depth)
+            return;
+        long data = (long) score << 32
+                | (long) ((move + 1) & 0xFFFF) << 16
+                | (long) Math.min(Math.max(depth, 1), 255) << 8
+                | flag << 6
+                | mAge;
+        mEntries[index] = key ^ data;
+        mEntries[index + 1] = data;
+    }
+
+    //--- Fields of a data word returned by probe()
+
+    public static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int move(long data) {
+        return (int) (data >>> 16 & 0xFFFF) - 1;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 8 & 0xFF);
+    }
+
+    public static int flag(long data) {
+        return (int) (data >>> 6 & 3);
+    }
+}
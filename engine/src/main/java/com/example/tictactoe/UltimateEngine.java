@@ -0,0 +1,258 @@
+package com.example.tictactoe;
+
+/* UltimateEngine.java
+ *
+ * Negamax search with alpha-beta pruning and iterative deepening for an
+ * UltimateGame.  Moves are tried board-winning first, then by a history
+ * score of the cutoffs they caused, with the previous iteration's best
+ * move first at the root.
+ *
+ * Leaves are scored from table lookups alone.  LINE_VALUES holds, for one
+ * side of every packed 3 x 3 board, the value of its lines the other side
+ * has not blocked: each open board adds its value, and the meta-board adds
+ * it, weighted, with drawn boards blocking both sides.
+ *
+ * The engine plays moves on the game it was created for and takes them
+ * back before returning; the game is unchanged afterwards.  Nothing is
+ * allocated after construction.
+ */
+
+public class UltimateEngine {
+
+    public static final int WIN_SCORE = 1000000;
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000;
+    // Depth of a HARD search
+    public static final int HARD_DEPTH = 6;
+    private static final int CHECK_INTERVAL = 1023;
+    private static final int META_WEIGHT = 16;
+    private static final int WIN_ORDER = 1 << 24;
+
+    // Per packed board: sum over the lines holding none of the blocking
+    // stones (bits 9-17) of 1 for one own stone (bits 0-8) and 4 for two
+    private static final byte[] LINE_VALUES = new byte[1 << 18];
+
+    static {
+        // Only boards where no cell is both own and blocked, as in
+        // UltimateGame.STATUS
+        int[] stones = {0, 1, 4, 0};
+        for (int own = 0; own <= TicTacToeGame.FULL_BOARD; own++) {
+            int free = ~own & TicTacToeGame.FULL_BOARD;
+            for (int blocked = free; ; blocked = (blocked - 1) & free) {
+                int value = 0;
+                for (int line : TicTacToeGame.WIN_LINES) {
+                    if ((blocked & line) == 0)
+                        value += stones[Integer.bitCount(own & line)];
+                }
+                LINE_VALUES[own | blocked << 9] = (byte) value;
+                if (blocked == 0)
+                    break;
+            }
+        }
+    }
+
+    private final UltimateGame mGame;
+    private final int[][] mMoves = new int[UltimateGame.CELLS + 1][UltimateGame.CELLS];
+    private final int[][] mMoveScores = new int[UltimateGame.CELLS + 1][UltimateGame.CELLS];
+    private final int[] mHistory = new int[UltimateGame.CELLS];
+
+    private long mNodes;
+    private long mNodeLimit;
+    private long mDeadline;
+    private boolean mAborted;
+    // Set from another thread to abandon the current search
+    private volatile boolean mStopped;
+    private int mCompletedDepth;
+    private int mLastScore;
+
+    public UltimateEngine(UltimateGame game) {
+        mGame = game;
+    }
+
+    public long getNodeCount() {
+        return mNodes;
+    }
+
+    public int getCompletedDepth() {
+        return mCompletedDepth;
+    }
+
+    /**
+     * @return the score of the last completed iteration, for the player
+     * searched
+     */
+    public int getLastScore() {
+        return mLastScore;
+    }
+
+    public void stop() {
+        mStopped = true;
+    }
+
+    public void resume() {
+        mStopped = false;
+    }
+
+    /**
+     * Find the best move for player with iterative deepening.
+     *
+     * @param maxDepth deepest iteration in plies, or 0 to search until the
+     *                 result is proven or the budget runs out
+     * @return the best move of the deepest completed iteration, or the best
+     * move found so far in an interrupted one; -1 if the game is over
+     */
+    public int findBestMove(char player, int maxDepth, SearchBudget budget) {
+        mNodes = 0;
+        mAborted = mStopped;
+        mCompletedDepth = 0;
+        mLastScore = 0;
+        mNodeLimit = budget.getNodes() > 0 ? budget.getNodes() : Long.MAX_VALUE;
+        mDeadline = budget.getMillis() > 0 ? System.nanoTime() + budget.getMillis() * 1000000L : Long.MAX_VALUE;
+        for (int i = 0; i < mHistory.length; i++)
+            mHistory[i] = 0;
+
+        int empty = UltimateGame.CELLS - mGame.getMoveCount();
+        int limit = maxDepth > 0 ? Math.min(maxDepth, empty) : empty;
+        int bestMove = -1;
+        for (int depth = 1; depth <= limit; depth++) {
+            int move = searchRoot(player, depth, bestMove);
+            if (mAborted) {
+                // The previous best is searched first, so any move found
+                // before the interruption is at least as good
+                if (move >= 0)
+                    bestMove = move;
+                break;
+            }
+            bestMove = move;
+            mCompletedDepth = depth;
+            if (Math.abs(mLastScore) >= WIN_THRESHOLD)
+                break;
+        }
+        if (bestMove < 0 && mGame.getLegalMoves(mMoves[0]) > 0)
+            bestMove = mMoves[0][0];
+        Metrics.get().recordSearch(mNodes, 0, 0);
+        return bestMove;
+    }
+
+    private int searchRoot(char player, int depth, int previousBest) {
+        char opponent = opponent(player);
+        int count = generateMoves(player, 0, previousBest);
+        int alpha = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(0, i, count);
+            mGame.makeMove(player, move);
+            int score = -negamax(opponent, depth - 1, -INFINITY, -alpha, 1);
+            mGame.unmakeMove();
+            if (mAborted)
+                return bestMove;
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        mLastScore = alpha;
+        return bestMove;
+    }
+
+    private int negamax(char player, int depth, int alpha, int beta, int ply) {
+        if ((++mNodes & CHECK_INTERVAL) == 0)
+            checkLimits();
+        if (mAborted)
+            return 0;
+        int winner = mGame.checkForWinner();
+        if (winner == 1)
+            return 0;
+        // Any other result is a win for the player who just moved
+        if (winner != 0)
+            return -(WIN_SCORE - ply);
+        if (depth == 0)
+            return evaluate(player);
+
+        char opponent = opponent(player);
+        int count = generateMoves(player, ply, -1);
+        int best = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, i, count);
+            mGame.makeMove(player, move);
+            int score = -negamax(opponent, depth - 1, -beta, -alpha, ply + 1);
+            mGame.unmakeMove();
+            if (mAborted)
+                return 0;
+            if (score > best)
+                best = score;
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta) {
+                mHistory[move] += depth * depth;
+                break;
+            }
+        }
+        return best;
+    }
+
+    private void checkLimits() {
+        if (mStopped || mNodes >= mNodeLimit || System.nanoTime() >= mDeadline)
+            mAborted = true;
+    }
+
+    private int generateMoves(char player, int ply, int firstMove) {
+        int[] moves = mMoves[ply];
+        int[] scores = mMoveScores[ply];
+        int count = mGame.getLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            scores[i] = move == firstMove ? Integer.MAX_VALUE
+                    : mGame.winsBoard(player, move) ? WIN_ORDER + mHistory[move] : mHistory[move];
+        }
+        return count;
+    }
+
+    // Selection sort, one step per move tried, since most nodes cut off
+    // after a few
+    private int nextMove(int ply, int index, int count) {
+        int[] moves = mMoves[ply];
+        int[] scores = mMoveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best])
+                best = i;
+        }
+        int move = moves[best];
+        int score = scores[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        scores[index] = score;
+        return move;
+    }
+
+    /**
+     * @return the static value of the position for player, who is to move
+     */
+    int evaluate(char player) {
+        int closed = mGame.getClosedBoards();
+        int score = 0;
+        int open = ~closed & TicTacToeGame.FULL_BOARD;
+        while (open != 0) {
+            int packed = mGame.getBoardBits(Integer.numberOfTrailingZeros(open));
+            score += LINE_VALUES[packed] - LINE_VALUES[swap(packed)];
+            open &= open - 1;
+        }
+        int meta = mGame.getMetaBits();
+        int human = meta & TicTacToeGame.FULL_BOARD;
+        int computer = meta >>> 9;
+        int drawn = closed & ~(human | computer);
+        score += META_WEIGHT * (LINE_VALUES[human | (computer | drawn) << 9]
+                - LINE_VALUES[computer | (human | drawn) << 9]);
+        return player == TicTacToeGame.HUMAN_PLAYER ? score : -score;
+    }
+
+    private static int swap(int packed) {
+        return packed >>> 9 | (packed & TicTacToeGame.FULL_BOARD) << 9;
+    }
+
+    private static char opponent(char player) {
+        return player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+    }
+}
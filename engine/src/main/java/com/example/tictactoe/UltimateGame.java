@@ -0,0 +1,305 @@
+package com.example.tictactoe;
+
+import java.util.Random;
+
+/* UltimateGame.java
+ *
+ * Ultimate tic-tac-toe: nine 3 x 3 boards laid out as a 3 x 3 meta-board.
+ * The cell a player takes inside a board sends the opponent to the board
+ * in the same position; if that board is already won or full, the
+ * opponent may play in any board still open.  Winning a board claims its
+ * meta cell, and three claimed boards in a line win the game.  Every board
+ * and the meta-board follow TicTacToeGame's 3 x 3 rules.
+ *
+ * The position is nine packed bitboards, X's cells in bits 0-8 and O's in
+ * bits 9-17, plus one for the meta-board in the same layout.  STATUS holds
+ * TicTacToeGame.checkForWinner() for every packed board, so legal moves,
+ * making and unmaking a move and the result are a few table lookups and
+ * bit operations, and nothing is allocated after construction.
+ *
+ * Cells are numbered row-major on the 9 x 9 grid, as the board is drawn.
+ */
+
+public class UltimateGame {
+
+    public static final int ROWS = 9;
+    public static final int CELLS = 81;
+    // Board preset number of the Ultimate mode, after the m,n,k presets
+    public static final int PRESET = TicTacToeGame.BOARD_PRESETS.length;
+
+    // TicTacToeGame.checkForWinner() of every packed 3 x 3 board
+    static final byte[] STATUS = new byte[1 << 18];
+    // Grid cell to board and cell within the board, and back
+    private static final byte[] BOARD_OF = new byte[CELLS];
+    private static final byte[] CELL_OF = new byte[CELLS];
+    private static final byte[] GRID = new byte[CELLS];
+
+    static {
+        // TicTacToeGame.checkForWinner() with hasWon() looked up per side,
+        // filled only for the 3^9 boards where no cell is taken twice; the
+        // table is built on first use, so this keeps it cheap at startup
+        boolean[] won = new boolean[TicTacToeGame.FULL_BOARD + 1];
+        for (int bits = 0; bits < won.length; bits++)
+            won[bits] = TicTacToeGame.hasWon(bits);
+        for (int human = 0; human <= TicTacToeGame.FULL_BOARD; human++) {
+            int free = ~human & TicTacToeGame.FULL_BOARD;
+            // Every subset of the free cells, down to the empty one
+            for (int computer = free; ; computer = (computer - 1) & free) {
+                STATUS[human | computer << 9] = (byte) (won[human] ? 2 : won[computer] ? 3
+                        : (human | computer) == TicTacToeGame.FULL_BOARD ? 1 : 0);
+                if (computer == 0)
+                    break;
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            int row = cell / ROWS;
+            int col = cell % ROWS;
+            BOARD_OF[cell] = (byte) (row / 3 * 3 + col / 3);
+            CELL_OF[cell] = (byte) (row % 3 * 3 + col % 3);
+            GRID[BOARD_OF[cell] * 9 + CELL_OF[cell]] = (byte) cell;
+        }
+    }
+
+    private final int[] mBoards = new int[9];
+    // Claimed boards, packed like a board
+    private int mMeta;
+    // Boards that are won or full
+    private int mClosed;
+    // The board the next move must be in, or -1 for any open board
+    private int mNext = -1;
+    private int mWinner;
+
+    // Moves in order, with mNext before each, so unmakeMove() is exact
+    private final int[] mHistory = new int[CELLS];
+    private final byte[] mHistoryNext = new byte[CELLS];
+    private int mMoveCount;
+
+    private final Random mRand;
+    private final int[] mMoves = new int[CELLS];
+    // Created on first use and kept, like TicTacToeGame's engine
+    private UltimateEngine mEngine;
+
+    public UltimateGame() {
+        this(new Random());
+    }
+
+    public UltimateGame(Random random) {
+        mRand = random;
+    }
+
+    public void clearBoard() {
+        for (int b = 0; b < 9; b++)
+            mBoards[b] = 0;
+        mMeta = 0;
+        mClosed = 0;
+        mNext = -1;
+        mWinner = 0;
+        mMoveCount = 0;
+    }
+
+    /**
+     * Play a legal move.
+     */
+    public void makeMove(char player, int cell) {
+        int board = BOARD_OF[cell];
+        int bit = 1 << CELL_OF[cell];
+        if (player == TicTacToeGame.COMPUTER_PLAYER)
+            bit <<= 9;
+        mHistory[mMoveCount] = cell;
+        mHistoryNext[mMoveCount] = (byte) mNext;
+        mMoveCount++;
+        int status = STATUS[mBoards[board] |= bit];
+        if (status != 0) {
+            mClosed |= 1 << board;
+            if (status == 2)
+                mMeta |= 1 << board;
+            else if (status == 3)
+                mMeta |= 1 << 9 << board;
+            int meta = STATUS[mMeta];
+            mWinner = meta >= 2 ? meta : mClosed == TicTacToeGame.FULL_BOARD ? 1 : 0;
+        }
+        int target = CELL_OF[cell];
+        mNext = (mClosed >> target & 1) != 0 ? -1 : target;
+    }
+
+    /**
+     * Take back the last move.
+     */
+    public void unmakeMove() {
+        int cell = mHistory[--mMoveCount];
+        int board = BOARD_OF[cell];
+        mBoards[board] &= ~((1 | 1 << 9) << CELL_OF[cell]);
+        // The board and the game were open before the move
+        mClosed &= ~(1 << board);
+        mMeta &= ~((1 | 1 << 9) << board);
+        mWinner = 0;
+        mNext = mHistoryNext[mMoveCount];
+    }
+
+    /**
+     * Fill moves with the legal moves of the player to move.
+     *
+     * @return the number of moves, 0 once the game is over
+     */
+    public int getLegalMoves(int[] moves) {
+        if (mWinner != 0)
+            return 0;
+        if (mNext >= 0)
+            return addMoves(mNext, moves, 0);
+        int count = 0;
+        for (int b = 0; b < 9; b++) {
+            if ((mClosed >> b & 1) == 0)
+                count = addMoves(b, moves, count);
+        }
+        return count;
+    }
+
+    private int addMoves(int board, int[] moves, int count) {
+        int packed = mBoards[board];
+        int open = ~(packed | packed >>> 9) & TicTacToeGame.FULL_BOARD;
+        while (open != 0) {
+            moves[count++] = GRID[board * 9 + Integer.numberOfTrailingZeros(open)];
+            open &= open - 1;
+        }
+        return count;
+    }
+
+    public boolean isLegalMove(int cell) {
+        int board = BOARD_OF[cell];
+        if (mWinner != 0 || (mClosed >> board & 1) != 0 || (mNext >= 0 && board != mNext))
+            return false;
+        return ((mBoards[board] | mBoards[board] >>> 9) >> CELL_OF[cell] & 1) == 0;
+    }
+
+    /**
+     * @return true if playing cell wins its board for player; the cell
+     * must be legal
+     */
+    public boolean winsBoard(char player, int cell) {
+        int bit = 1 << CELL_OF[cell];
+        if (player == TicTacToeGame.COMPUTER_PLAYER)
+            bit <<= 9;
+        return STATUS[mBoards[BOARD_OF[cell]] | bit] >= 2;
+    }
+
+    public char getBoardOccupant(int cell) {
+        int packed = mBoards[BOARD_OF[cell]] >> CELL_OF[cell];
+        if ((packed & 1) != 0)
+            return TicTacToeGame.HUMAN_PLAYER;
+        if ((packed >> 9 & 1) != 0)
+            return TicTacToeGame.COMPUTER_PLAYER;
+        return TicTacToeGame.OPEN_SPOT;
+    }
+
+    /**
+     * @return the result of one board, as checkForWinner()
+     */
+    public int getBoardWinner(int board) {
+        return STATUS[mBoards[board]];
+    }
+
+    /**
+     * @return the packed cells of one board: X in bits 0-8, O in 9-17
+     */
+    public int getBoardBits(int board) {
+        return mBoards[board];
+    }
+
+    /**
+     * @return the claimed boards, packed like a board
+     */
+    public int getMetaBits() {
+        return mMeta;
+    }
+
+    /**
+     * @return the boards that are won or full, one bit each
+     */
+    public int getClosedBoards() {
+        return mClosed;
+    }
+
+    /**
+     * @return the board the next move must be in, or -1 for any open board
+     */
+    public int getNextBoard() {
+        return mNext;
+    }
+
+    /**
+     * @return 0 while playing, 1 for a tie, 2 if X won or 3 if O won, as
+     * TicTacToeGame.checkForWinner()
+     */
+    public int checkForWinner() {
+        return mWinner;
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    public int getHistoryMove(int ply) {
+        return mHistory[ply];
+    }
+
+    public UltimateEngine getEngine() {
+        if (mEngine == null)
+            mEngine = new UltimateEngine(this);
+        return mEngine;
+    }
+
+    /**
+     * Pick and play a move for player.  EASY plays at random, MEDIUM wins
+     * a board when it can, HARD searches UltimateEngine.HARD_DEPTH plies,
+     * and PERFECT searches as deep as the budget allows
+     * (SearchBudget.DEFAULT if it has no limit).  LEARNED plays as HARD.
+     *
+     * @return the move, or -1 if the game is over
+     */
+    public int getMove(char player, int difficulty, SearchBudget budget) {
+        int count = getLegalMoves(mMoves);
+        if (count == 0)
+            return -1;
+        int move = -1;
+        if (difficulty == TicTacToeGame.EASY) {
+            move = mMoves[mRand.nextInt(count)];
+        } else if (difficulty == TicTacToeGame.MEDIUM) {
+            for (int i = 0; i < count && move < 0; i++) {
+                if (winsBoard(player, mMoves[i]))
+                    move = mMoves[i];
+            }
+            if (move < 0)
+                move = mMoves[mRand.nextInt(count)];
+        } else if (difficulty == TicTacToeGame.PERFECT) {
+            if (budget.getMillis() == 0 && budget.getNodes() == 0)
+                budget = SearchBudget.DEFAULT;
+            move = getEngine().findBestMove(player, 0, budget);
+        } else {
+            move = getEngine().findBestMove(player, UltimateEngine.HARD_DEPTH, budget);
+        }
+        makeMove(player, move);
+        return move;
+    }
+
+    /**
+     * @return the moves so far, in order
+     */
+    public int[] saveMoves() {
+        int[] moves = new int[mMoveCount];
+        System.arraycopy(mHistory, 0, moves, 0, mMoveCount);
+        return moves;
+    }
+
+    /**
+     * Replace the position with the given moves, played alternately from
+     * firstPlayer.
+     */
+    public void restoreMoves(int[] moves, char firstPlayer) {
+        clearBoard();
+        char player = firstPlayer;
+        for (int move : moves) {
+            makeMove(player, move);
+            player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.tictactoe;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ComputerMoveSchedulerTest {
+
+    // Runs queued tasks only when asked, like a thread that has not been scheduled yet
+    private static class QueueExecutor implements Executor {
+        final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty())
+                mTasks.poll().run();
+        }
+    }
+
+    private QueueExecutor mBackground;
+    private QueueExecutor mForeground;
+    private ComputerMoveScheduler mScheduler;
+    private TicTacToeGame mGame;
+    private final List<Integer> mMoves = new ArrayList<>();
+    private final ComputerMoveScheduler.Callback mCallback = new ComputerMoveScheduler.Callback() {
+        @Override
+        public void onComputerMove(int move) {
+            mMoves.add(move);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mBackground = new QueueExecutor();
+        mForeground = new QueueExecutor();
+        mScheduler = new ComputerMoveScheduler(3, 3, 3, mBackground, mForeground);
+        // Let the scheduler build its engine, so the tests see only their own tasks
+        mBackground.runAll();
+        mGame = new TicTacToeGame();
+    }
+
+    @Test
+    public void construction_leavesEngineToBackground() {
+        QueueExecutor background = new QueueExecutor();
+        ComputerMoveScheduler scheduler = new ComputerMoveScheduler(3, 3, 3, background, mForeground);
+        assertEquals(1, background.mTasks.size());
+        // A cancel before the engine exists has nothing to stop
+        scheduler.cancel();
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 1);
+        scheduler.requestMove(mGame, TicTacToeGame.HARD, SearchBudget.UNLIMITED, mCallback);
+        background.runAll();
+        mForeground.runAll();
+        assertEquals(1, mMoves.size());
+        assertEquals(2, (int) mMoves.get(0));
+    }
+
+    @Test
+    public void move_isDeliveredOnForegroundExecutor() {
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 1);
+        mScheduler.requestMove(mGame, TicTacToeGame.HARD, SearchBudget.UNLIMITED, mCallback);
+        assertTrue(mScheduler.isThinking());
+
+        mBackground.runAll();
+        assertTrue(mMoves.isEmpty());
+        mForeground.runAll();
+
+        assertEquals(1, mMoves.size());
+        assertEquals(2, (int) mMoves.get(0));
+        assertFalse(mScheduler.isThinking());
+        // The caller's game is only changed by the callback
+        assertEquals(TicTacToeGame.OPEN_SPOT, mGame.getBoardOccupant(2));
+    }
+
+    @Test
+    public void ultimateMove_isSearchedOnACopy() {
+        UltimateGame game = new UltimateGame();
+        // X takes the corner of the centre board and sends O to board 0
+        game.makeMove(TicTacToeGame.HUMAN_PLAYER, 30);
+        mScheduler.requestUltimateMove(game, TicTacToeGame.HARD, SearchBudget.UNLIMITED, mCallback);
+        mBackground.runAll();
+        mForeground.runAll();
+
+        assertEquals(1, mMoves.size());
+        int move = mMoves.get(0);
+        assertTrue(game.isLegalMove(move));
+        assertTrue(move % 9 < 3 && move / 9 < 3);
+        assertEquals(1, game.getMoveCount());
+    }
+
+    @Test
+    public void cancel_beforeSearch_dropsRequest() {
+        mScheduler.requestMove(mGame, TicTacToeGame.PERFECT, SearchBudget.UNLIMITED, mCallback);
+        mScheduler.cancel();
+        assertFalse(mScheduler.isThinking());
+        mBackground.runAll();
+        mForeground.runAll();
+        assertTrue(mMoves.isEmpty());
+    }
+
+    @Test
+    public void cancel_afterSearch_dropsResult() {
+        mScheduler.requestMove(mGame, TicTacToeGame.PERFECT, SearchBudget.UNLIMITED, mCallback);
+        mBackground.runAll();
+        mScheduler.cancel();
+        mForeground.runAll();
+        assertTrue(mMoves.isEmpty());
+    }
+
+    @Test
+    public void newRequest_supersedesOlderOne() {
+        mScheduler.requestMove(mGame, TicTacToeGame.EASY, SearchBudget.UNLIMITED, mCallback);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 3);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 4);
+        mScheduler.requestMove(mGame, TicTacToeGame.HARD, SearchBudget.UNLIMITED, mCallback);
+        mBackground.runAll();
+        mForeground.runAll();
+        assertEquals(1, mMoves.size());
+        assertEquals(5, (int) mMoves.get(0));
+    }
+
+    @Test
+    public void analysis_isRefinedInSlicesUntilMoveRequest() {
+        final List<BoardAnalysis> analyses = new ArrayList<>();
+        ComputerMoveScheduler.AnalysisCallback callback = new ComputerMoveScheduler.AnalysisCallback() {
+            @Override
+            public void onAnalysis(BoardAnalysis analysis) {
+                analyses.add(analysis);
+            }
+        };
+        ComputerMoveScheduler scheduler = new ComputerMoveScheduler(15, 15, 5, mBackground, mForeground);
+        mBackground.runAll();
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 112);
+        scheduler.requestAnalysis(game, TicTacToeGame.HUMAN_PLAYER, callback);
+
+        // One slice at a time: each delivers and queues the next
+        mBackground.mTasks.poll().run();
+        mForeground.runAll();
+        assertEquals(1, analyses.size());
+        assertEquals(1, mBackground.mTasks.size());
+        assertEquals(BoardAnalysis.NOT_EVALUATED, analyses.get(0).getOutcome(112));
+
+        scheduler.requestMove(game, TicTacToeGame.HARD, SearchBudget.nodes(2000), mCallback);
+        mBackground.runAll();
+        mForeground.runAll();
+        assertEquals(1, analyses.size());
+        assertEquals(1, mMoves.size());
+    }
+
+    @Test
+    public void stoppedSearch_stillReturnsLegalMove() {
+        ComputerMoveScheduler scheduler = new ComputerMoveScheduler(15, 15, 5, mBackground, mForeground);
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 112);
+        scheduler.requestMove(game, TicTacToeGame.PERFECT, SearchBudget.nodes(2000), mCallback);
+        mBackground.runAll();
+        mForeground.runAll();
+        assertEquals(1, mMoves.size());
+        assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(mMoves.get(0)));
+    }
+
+    @Test
+    public void ponderedReply_isAnsweredWithoutSearching() {
+        Metrics metrics = Metrics.get();
+        metrics.reset();
+        metrics.setEnabled(true);
+        try {
+            ComputerMoveScheduler scheduler = new ComputerMoveScheduler(15, 15, 5, mBackground, mForeground);
+            scheduler.setPonderDutyCycle(1);
+            TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+            game.setMove(TicTacToeGame.COMPUTER_PLAYER, 112);
+            scheduler.startPondering(game, TicTacToeGame.HARD);
+            assertTrue(scheduler.isPondering());
+            mBackground.runAll();
+            mForeground.runAll();
+            assertFalse(scheduler.isPondering());
+
+            // A fresh engine predicts the same reply
+            TicTacToeGame replica = new TicTacToeGame(15, 15, 5);
+            replica.setMove(TicTacToeGame.COMPUTER_PLAYER, 112);
+            game.setMove(TicTacToeGame.HUMAN_PLAYER, replica.getMove(TicTacToeGame.HUMAN_PLAYER,
+                    TicTacToeGame.HARD, SearchBudget.UNLIMITED));
+            long nodes = metrics.getNodeCount();
+            scheduler.requestMove(game, TicTacToeGame.HARD, SearchBudget.UNLIMITED, mCallback);
+            mBackground.runAll();
+            mForeground.runAll();
+            assertEquals(1, mMoves.size());
+            assertEquals(1, metrics.getPonderHitRate(), 0);
+            assertEquals(nodes, metrics.getNodeCount());
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+    }
+
+    @Test
+    public void pondering_startsNoHelperThreads() {
+        ComputerMoveScheduler scheduler = new ComputerMoveScheduler(15, 15, 5, mBackground, mForeground);
+        scheduler.setThreads(4);
+        scheduler.setPonderDutyCycle(1);
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 112);
+        Set<Thread> before = searchThreads();
+        scheduler.startPondering(game, TicTacToeGame.HARD);
+        mBackground.runAll();
+        mForeground.runAll();
+        assertTrue(startedSince(before).isEmpty());
+
+        // A move request searches with them
+        scheduler.requestMove(game, TicTacToeGame.HARD, SearchBudget.nodes(20000), mCallback);
+        mBackground.runAll();
+        mForeground.runAll();
+        assertEquals(1, mMoves.size());
+        assertFalse(startedSince(before).isEmpty());
+    }
+
+    // Live Lazy SMP helper threads, as SearchEngine names them
+    private static Set<Thread> searchThreads() {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("search-"))
+                threads.add(thread);
+        }
+        return threads;
+    }
+
+    private static Set<Thread> startedSince(Set<Thread> before) {
+        Set<Thread> threads = searchThreads();
+        threads.removeAll(before);
+        return threads;
+    }
+
+    @Test
+    public void cancel_stopsPondering() {
+        ComputerMoveScheduler scheduler = new ComputerMoveScheduler(15, 15, 5, mBackground, mForeground);
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 112);
+        scheduler.startPondering(game, TicTacToeGame.PERFECT);
+        // The first slice predicts the reply and queues the next
+        mBackground.mTasks.poll().run();
+        assertEquals(1, mBackground.mTasks.size());
+
+        scheduler.cancel();
+        assertFalse(scheduler.isPondering());
+        mBackground.runAll();
+        mForeground.runAll();
+        assertTrue(mBackground.mTasks.isEmpty());
+    }
+}
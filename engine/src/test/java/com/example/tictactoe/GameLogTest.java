@@ -0,0 +1,108 @@
+package com.example.tictactoe;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class GameLogTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void replay_restoresEveryPosition() throws Exception {
+        GameLog log = new GameLog(mFolder.getRoot());
+        int[] moves = {4, 0, 8, 2, 1, 7, 6, 3, 5};
+        int game = log.append(0, TicTacToeGame.HARD, TicTacToeGame.HUMAN_PLAYER, 1, 1234567L, moves, moves.length);
+        assertEquals(0, game);
+        assertEquals(TicTacToeGame.HARD, log.getDifficulty(game));
+        assertEquals(TicTacToeGame.HUMAN_PLAYER, log.getFirstPlayer(game));
+        assertEquals(1, log.getResult(game));
+        assertEquals(1234567L, log.getTimestamp(game));
+        assertEquals(9, log.getMoveCount(game));
+        for (int ply = 0; ply < moves.length; ply++)
+            assertEquals(moves[ply], log.getMove(game, ply));
+
+        TicTacToeGame board = log.replay(game, 3);
+        assertEquals(TicTacToeGame.HUMAN_PLAYER, board.getBoardOccupant(4));
+        assertEquals(TicTacToeGame.COMPUTER_PLAYER, board.getBoardOccupant(0));
+        assertEquals(TicTacToeGame.HUMAN_PLAYER, board.getBoardOccupant(8));
+        assertEquals(TicTacToeGame.OPEN_SPOT, board.getBoardOccupant(2));
+        log.close();
+    }
+
+    @Test
+    public void largeBoardGames_roundTripAfterReopen() throws Exception {
+        GameLog log = new GameLog(mFolder.getRoot());
+        int[] moves = new int[40];
+        for (int i = 0; i < moves.length; i++)
+            moves[i] = (i * 37) % 225;
+        log.append(3, TicTacToeGame.PERFECT, TicTacToeGame.COMPUTER_PLAYER, 3, 99L, moves, moves.length);
+        log.append(0, TicTacToeGame.EASY, TicTacToeGame.HUMAN_PLAYER, 2, 100L, new int[]{4}, 1);
+        log.close();
+
+        log = new GameLog(mFolder.getRoot());
+        assertEquals(2, log.getGameCount());
+        assertEquals(3, log.getBoardPreset(0));
+        for (int i = 0; i < moves.length; i++)
+            assertEquals(moves[i], log.getMove(0, i));
+        assertEquals(4, log.getMove(1, 0));
+        log.close();
+    }
+
+    @Test
+    public void truncatedGame_isDroppedOnOpen() throws Exception {
+        GameLog log = new GameLog(mFolder.getRoot());
+        log.append(0, TicTacToeGame.EASY, TicTacToeGame.HUMAN_PLAYER, 2, 1L, new int[]{0, 3, 1, 4, 2}, 5);
+        log.append(0, TicTacToeGame.EASY, TicTacToeGame.HUMAN_PLAYER, 2, 2L, new int[]{0, 3, 1, 4, 2}, 5);
+        log.close();
+        RandomAccessFile data = new RandomAccessFile(new File(mFolder.getRoot(), GameLog.DATA_FILE), "rw");
+        data.setLength(data.length() - 4);
+        data.close();
+
+        log = new GameLog(mFolder.getRoot());
+        assertEquals(1, log.getGameCount());
+        assertEquals(1L, log.getTimestamp(0));
+        assertEquals(1, log.append(0, TicTacToeGame.EASY, TicTacToeGame.HUMAN_PLAYER, 1, 3L, new int[]{4}, 1));
+        assertEquals(4, log.getMove(1, 0));
+        log.close();
+    }
+
+    @Test
+    public void stats_countResultsByOpeningAndDifficulty() throws Exception {
+        GameLog log = new GameLog(mFolder.getRoot());
+        for (int i = 0; i < 1000; i++) {
+            int opening = i % 9;
+            int result = opening == 4 ? 3 : 2;
+            log.append(0, i % 4, TicTacToeGame.HUMAN_PLAYER, result, i, new int[]{opening, (opening + 1) % 9}, 2);
+        }
+        log.append(1, TicTacToeGame.EASY, TicTacToeGame.HUMAN_PLAYER, 3, 0L, new int[]{4}, 1);
+
+        GameLog.Stats stats = log.getStats(0);
+        assertEquals(1.0, stats.getOpeningLossRate(4), 0);
+        assertEquals(0.0, stats.getOpeningLossRate(0), 0);
+        assertEquals(111, stats.getOpeningCount(4, 3));
+        assertEquals(250, stats.getDifficultyCount(TicTacToeGame.EASY, 2) + stats.getDifficultyCount(TicTacToeGame.EASY, 3));
+        assertEquals(1, log.getStats(1).getOpeningCount(4, 3));
+        log.close();
+    }
+
+    @Test
+    public void stats_skipUnknownDifficulty() throws Exception {
+        GameLog log = new GameLog(mFolder.getRoot());
+        log.append(0, TicTacToeGame.HARD, TicTacToeGame.HUMAN_PLAYER, 2, 0L, new int[]{0}, 1);
+        // The header's three bits hold levels past the last one
+        log.append(0, 7, TicTacToeGame.HUMAN_PLAYER, 2, 1L, new int[]{4}, 1);
+
+        GameLog.Stats stats = log.getStats(0);
+        assertEquals(1, stats.getDifficultyCount(TicTacToeGame.HARD, 2));
+        assertEquals(1, stats.getOpeningCount(0, 2));
+        assertEquals(0, stats.getOpeningCount(4, 2));
+        log.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MctsEngineTest {
+
+    private static TicTacToeGame blockPosition() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        // X has four on row 3, blocked on the left; O must take the other end
+        for (int col = 1; col <= 4; col++)
+            game.setMove(TicTacToeGame.HUMAN_PLAYER, 3 * 7 + col);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 3 * 7);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 0);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 48);
+        return game;
+    }
+
+    @Test
+    public void treeParallel_blocksImmediateLoss() {
+        TicTacToeGame game = blockPosition();
+        MctsEngine engine = new MctsEngine(game, 4, 16);
+        engine.setSeed(1);
+        int move = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, SearchBudget.nodes(20000));
+        assertEquals(3 * 7 + 5, move);
+        assertEquals(20000, engine.getPlayoutCount());
+    }
+
+    @Test
+    public void rootParallel_isReproducibleWithSeed() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 24);
+        MctsEngine engine = new MctsEngine(game, 3, 14);
+        engine.setMode(MctsEngine.ROOT_PARALLEL);
+        engine.setSeed(42);
+        int first = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, SearchBudget.nodes(3001));
+        assertEquals(3001, engine.getPlayoutCount());
+        int second = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, SearchBudget.nodes(3001));
+        assertEquals(first, second);
+        assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(first));
+    }
+
+    @Test
+    public void heuristicPlayouts_findWinOnStandardBoard() {
+        TicTacToeGame game = new TicTacToeGame();
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 0);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 4);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 1);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 2);
+        MctsEngine engine = new MctsEngine(game, 1, 12);
+        engine.setPlayoutPolicy(MctsEngine.HEURISTIC_PLAYOUT);
+        engine.setSeed(7);
+        assertEquals(8, engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, SearchBudget.nodes(2000)));
+    }
+
+    @Test
+    public void smallTree_keepsPlayingWhenFull() {
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 112);
+        MctsEngine engine = new MctsEngine(game, 2, 10);
+        int move = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, SearchBudget.nodes(5000));
+        assertEquals(5000, engine.getPlayoutCount());
+        assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(move));
+        engine.shutdown();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.tictactoe;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @After
+    public void tearDown() {
+        Metrics.get().setEnabled(false);
+        Metrics.get().reset();
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        Metrics metrics = Metrics.get();
+        metrics.reset();
+        metrics.recordMove(TicTacToeGame.HARD, 1000);
+        metrics.recordSearch(50, 1, 1);
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        game.getComputerMove(TicTacToeGame.PERFECT, SearchBudget.nodes(2000));
+        assertEquals(0, metrics.getMoveCount(TicTacToeGame.HARD));
+        assertEquals(0, metrics.getNodeCount());
+    }
+
+    @Test
+    public void search_recordsNodesAndCacheLookups() throws Exception {
+        Metrics metrics = Metrics.get();
+        metrics.reset();
+        metrics.setEnabled(true);
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 5);
+        game.getComputerMove(TicTacToeGame.PERFECT, SearchBudget.nodes(20000));
+        assertTrue(metrics.getNodeCount() > 0);
+        // Iterative deepening finds the last iteration's positions in the cache
+        assertTrue(metrics.getCacheHitRate() > 0);
+
+        for (int i = 1; i <= 100; i++)
+            metrics.recordMove(TicTacToeGame.HARD, i * 1000000L);
+        long p99 = metrics.getMovePercentile(TicTacToeGame.HARD, 99);
+        assertTrue(p99 >= 96000000L && p99 <= 99000000L);
+
+        StringBuilder report = new StringBuilder();
+        metrics.writeReport(report);
+        assertTrue(report.toString().contains("move[2] n=100"));
+    }
+}
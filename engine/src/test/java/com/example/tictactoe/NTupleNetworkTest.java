@@ -0,0 +1,88 @@
+package com.example.tictactoe;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NTupleNetworkTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static NTupleNetwork randomNetwork(int winLength, long seed) {
+        NTupleNetwork network = new NTupleNetwork(winLength);
+        Random random = new Random(seed);
+        for (int i = 0; i < network.getWeightCount(); i++)
+            network.mWeights[i] = (float) random.nextGaussian() * 0.1f;
+        return network;
+    }
+
+    @Test
+    public void incrementalValues_matchAFreshEvaluation() {
+        NTupleNetwork network = randomNetwork(5, 1);
+        TicTacToeGame game = new TicTacToeGame(9, 9, 5);
+        NTupleEvaluator evaluator = new NTupleEvaluator(network, 9, 9);
+        NTupleEvaluator fresh = new NTupleEvaluator(network, 9, 9);
+        int empty = evaluator.value(TicTacToeGame.HUMAN_PLAYER);
+        Random random = new Random(2);
+        char player = TicTacToeGame.HUMAN_PLAYER;
+        while (game.getMoveCount() < 40 && game.checkForWinner() == 0) {
+            int cell = random.nextInt(81);
+            if (game.getBoardOccupant(cell) != TicTacToeGame.OPEN_SPOT)
+                continue;
+            int predicted = evaluator.valueAfter(player, cell);
+            game.makeMove(player, cell);
+            evaluator.add(player, cell);
+            fresh.reset(game);
+            assertEquals(predicted, evaluator.value(player));
+            assertEquals(fresh.value(TicTacToeGame.HUMAN_PLAYER), evaluator.value(TicTacToeGame.HUMAN_PLAYER));
+            assertEquals(fresh.value(TicTacToeGame.COMPUTER_PLAYER), evaluator.value(TicTacToeGame.COMPUTER_PLAYER));
+            player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+        }
+        while (game.getMoveCount() > 0) {
+            int cell = game.getHistoryMove(game.getMoveCount() - 1);
+            char occupant = game.getBoardOccupant(cell);
+            game.unmakeMove();
+            evaluator.remove(occupant, cell);
+        }
+        assertEquals(empty, evaluator.value(TicTacToeGame.HUMAN_PLAYER));
+        assertEquals(empty, evaluator.value(TicTacToeGame.COMPUTER_PLAYER));
+    }
+
+    @Test
+    public void writeAndRead_keepEveryWeight() throws Exception {
+        NTupleNetwork network = randomNetwork(4, 3);
+        File file = mFolder.newFile();
+        network.write(file);
+        FileInputStream in = new FileInputStream(file);
+        NTupleNetwork read;
+        try {
+            read = NTupleNetwork.read(in);
+        } finally {
+            in.close();
+        }
+        assertEquals(4, read.getWinLength());
+        assertEquals(network.getWeightCount(), read.getWeightCount());
+        for (int i = 0; i < network.getWeightCount(); i++)
+            assertEquals(network.getWeight(i), read.getWeight(i), 0);
+        assertTrue(read.matches(new TicTacToeGame(4, 4, 4)));
+        assertFalse(read.matches(new TicTacToeGame(7, 7, 5)));
+    }
+
+    @Test
+    public void training_beatsRandomPlay() throws Exception {
+        NTupleTrainer trainer = new NTupleTrainer()
+                .setBoard(7, 7, 5)
+                .setGames(5000)
+                .setThreads(2);
+        trainer.train();
+        int[] results = trainer.playAgainst(TicTacToeGame.EASY, 50);
+        assertTrue(results[0] >= 45);
+    }
+}
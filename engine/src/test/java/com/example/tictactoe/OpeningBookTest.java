@@ -0,0 +1,122 @@
+package com.example.tictactoe;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class OpeningBookTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private OpeningBook buildBook(int rows, int cols, int winLength) throws IOException {
+        File file = mFolder.newFile("test.book");
+        OpeningBookGenerator generator = new OpeningBookGenerator()
+                .setBoard(rows, cols, winLength)
+                .setGames(20)
+                .setPlies(3)
+                .setBudget(SearchBudget.nodes(5000))
+                .setSeed(7);
+        generator.generate();
+        generator.write(file);
+        return OpeningBook.open(file);
+    }
+
+    private static long canonicalHash(TicTacToeGame game) {
+        int[][] symmetries = BoardSymmetry.transforms(game.getRows(), game.getColumns());
+        long[] hashes = new long[symmetries.length];
+        return hashes[OpeningBook.canonicalSymmetry(game, symmetries, hashes)];
+    }
+
+    @Test
+    public void lookup_findsSymmetricPositions() throws Exception {
+        OpeningBook book = buildBook(5, 5, 4);
+        assertTrue(book.size() > 0);
+
+        // Every one-stone position in the book, seen under all symmetries,
+        // gets an equivalent reply
+        int[][] symmetries = BoardSymmetry.transforms(5, 5);
+        TicTacToeGame game = new TicTacToeGame(5, 5, 4);
+        int found = 0;
+        for (int first = 0; first < 25; first++) {
+            game.clearBoard();
+            game.setMove(TicTacToeGame.HUMAN_PLAYER, first);
+            int move = book.lookup(game, TicTacToeGame.COMPUTER_PLAYER);
+            if (move < 0)
+                continue;
+            found++;
+            game.setMove(TicTacToeGame.COMPUTER_PLAYER, move);
+            long expected = canonicalHash(game);
+            for (int[] symmetry : symmetries) {
+                TicTacToeGame rotated = new TicTacToeGame(5, 5, 4);
+                rotated.setMove(TicTacToeGame.HUMAN_PLAYER, symmetry[first]);
+                int rotatedMove = book.lookup(rotated, TicTacToeGame.COMPUTER_PLAYER);
+                assertEquals(TicTacToeGame.OPEN_SPOT, rotated.getBoardOccupant(rotatedMove));
+                rotated.setMove(TicTacToeGame.COMPUTER_PLAYER, rotatedMove);
+                assertEquals(expected, canonicalHash(rotated));
+            }
+        }
+        assertTrue(found > 0);
+    }
+
+    @Test
+    public void lookup_missesOtherBoardsAndUnknownPositions() throws Exception {
+        OpeningBook book = buildBook(5, 5, 4);
+        assertEquals(5, book.getRows());
+        assertEquals(4, book.getWinLength());
+
+        TicTacToeGame other = new TicTacToeGame(7, 7, 5);
+        assertFalse(book.matches(other));
+        assertEquals(-1, book.lookup(other, TicTacToeGame.COMPUTER_PLAYER));
+
+        // Far deeper than the book's three plies
+        TicTacToeGame game = new TicTacToeGame(5, 5, 4);
+        int[] moves = {0, 24, 4, 20, 2, 22};
+        for (int i = 0; i < moves.length; i++)
+            game.setMove(i % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER, moves[i]);
+        assertEquals(-1, book.lookup(game, TicTacToeGame.HUMAN_PLAYER));
+    }
+
+    @Test
+    public void weight_countsGamesThroughPosition() throws Exception {
+        OpeningBook book = buildBook(5, 5, 4);
+        // Every one of the 20 games starts from the empty board, with either
+        // player first
+        TicTacToeGame game = new TicTacToeGame(5, 5, 4);
+        assertEquals(20, book.getVisits(game, TicTacToeGame.HUMAN_PLAYER)
+                + book.getVisits(game, TicTacToeGame.COMPUTER_PLAYER));
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 24);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 4);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 20);
+        assertEquals(0, book.getVisits(game, TicTacToeGame.HUMAN_PLAYER));
+    }
+
+    @Test
+    public void game_playsBookMoveFirst() throws Exception {
+        OpeningBook book = buildBook(5, 5, 4);
+        TicTacToeGame game = new TicTacToeGame(5, 5, 4);
+        int expected = book.lookup(game, TicTacToeGame.COMPUTER_PLAYER);
+        assertTrue(expected >= 0);
+
+        game.setOpeningBook(book);
+        int move = game.getMove(TicTacToeGame.COMPUTER_PLAYER, TicTacToeGame.HARD, SearchBudget.nodes(1));
+        assertEquals(expected, move);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = mFolder.newFile("not.book");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeLong(0x1234567890L);
+        raf.writeLong(0);
+        raf.close();
+        OpeningBook.open(file);
+    }
+}
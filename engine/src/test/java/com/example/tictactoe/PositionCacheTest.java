@@ -0,0 +1,105 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PositionCacheTest {
+
+    @Test
+    public void staysWithinCapacityAndCountsLookups() {
+        PositionCache cache = new PositionCache(100 * PositionCache.BYTES_PER_ENTRY);
+        assertEquals(100, cache.getCapacity());
+        for (long key = 1; key <= 1000; key++)
+            cache.put(key * 0x9E3779B97F4A7C15L, 3, (int) key, PositionCache.EXACT, 4);
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictions());
+
+        // The newest entries survive, the oldest are gone
+        assertTrue(cache.get(1000 * 0x9E3779B97F4A7C15L));
+        assertEquals(1000, cache.getScore());
+        assertFalse(cache.get(0x9E3779B97F4A7C15L));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void clock_keepsRecentlyUsedEntries() {
+        PositionCache cache = new PositionCache(16 * PositionCache.BYTES_PER_ENTRY);
+        for (long key = 1; key <= 16; key++)
+            cache.put(key, 1, 0, PositionCache.EXACT, -1);
+        // One full sweep clears every reference bit and evicts key 1
+        cache.put(17, 1, 0, PositionCache.EXACT, -1);
+        assertTrue(cache.get(2));
+        // Key 2 was used since the sweep, so key 3 goes next
+        cache.put(18, 1, 0, PositionCache.EXACT, -1);
+        assertTrue(cache.get(2));
+        assertFalse(cache.get(3));
+        for (long key = 4; key <= 18; key++)
+            assertTrue(cache.get(key));
+    }
+
+    @Test
+    public void symmetricPositions_shareEntries() {
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        SearchEngine engine = new SearchEngine(game);
+        PositionCache cache = new PositionCache(PositionCache.DEFAULT_BYTES);
+        engine.setPositionCache(cache);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, 5, SearchBudget.UNLIMITED);
+        int firstScore = engine.getLastScore();
+        long firstNodes = engine.getNodeCount();
+
+        // The same position rotated a quarter turn, with a cold table
+        engine.setPositionCache(null);
+        TicTacToeGame rotated = new TicTacToeGame(4, 4, 4);
+        SearchEngine rotatedEngine = new SearchEngine(rotated);
+        rotatedEngine.setPositionCache(cache);
+        rotated.setMove(TicTacToeGame.HUMAN_PLAYER, 3);
+        long hits = cache.getHits();
+        rotatedEngine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, 5, SearchBudget.UNLIMITED);
+        assertTrue(cache.getHits() > hits);
+        assertTrue(rotatedEngine.getNodeCount() < firstNodes);
+        assertEquals(firstScore, rotatedEngine.getLastScore());
+    }
+
+    @Test
+    public void sameStones_otherSideToMove_doNotHit() {
+        // Two plies below the root, X to move in the first search and O in
+        // the second, with the same stones
+        PositionCache cache = new PositionCache(PositionCache.DEFAULT_BYTES);
+        search(cache, TicTacToeGame.HUMAN_PLAYER);
+        long hits = cache.getHits();
+        SearchEngine shared = search(cache, TicTacToeGame.COMPUTER_PLAYER);
+        long sharedHits = cache.getHits() - hits;
+
+        PositionCache cold = new PositionCache(PositionCache.DEFAULT_BYTES);
+        SearchEngine fresh = search(cold, TicTacToeGame.COMPUTER_PLAYER);
+        assertEquals(cold.getHits(), sharedHits);
+        assertEquals(fresh.getNodeCount(), shared.getNodeCount());
+        assertEquals(fresh.getLastScore(), shared.getLastScore());
+    }
+
+    private static SearchEngine search(PositionCache cache, char player) {
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 5);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 6);
+        SearchEngine engine = new SearchEngine(game);
+        engine.setPositionCache(cache);
+        engine.findBestMove(player, 4, SearchBudget.UNLIMITED);
+        return engine;
+    }
+
+    @Test
+    public void transforms_areSymmetriesOfTheBoard() {
+        int[][] transforms = BoardSymmetry.transforms(3, 3);
+        int[][] inverses = BoardSymmetry.inverses(transforms);
+        assertEquals(8, transforms.length);
+        for (int s = 0; s < transforms.length; s++) {
+            assertEquals(4, transforms[s][4]);
+            for (int cell = 0; cell < 9; cell++)
+                assertEquals(cell, inverses[s][transforms[s][cell]]);
+        }
+        assertEquals(4, BoardSymmetry.transforms(7, 5).length);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchEngineTest {
+
+    @Test
+    public void emptyStandardBoard_isProvenDraw() {
+        TicTacToeGame game = new TicTacToeGame();
+        SearchEngine engine = new SearchEngine(game);
+        engine.findBestMove(TicTacToeGame.HUMAN_PLAYER, 0, SearchBudget.UNLIMITED);
+        assertEquals(9, engine.getCompletedDepth());
+        assertEquals(0, engine.getLastScore());
+    }
+
+    @Test
+    public void agreesWithPerfectTableOnStandardBoard() {
+        TicTacToeGame game = new TicTacToeGame();
+        SearchEngine engine = new SearchEngine(game);
+        // X in a corner, O in an edge: X wins with best play
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 1);
+        engine.findBestMove(TicTacToeGame.HUMAN_PLAYER, 0, SearchBudget.UNLIMITED);
+        int table = PerfectPlayTable.get().score(
+                game.getPlayerBits(TicTacToeGame.HUMAN_PLAYER), game.getPlayerBits(TicTacToeGame.COMPUTER_PLAYER));
+        assertTrue(table > 0);
+        assertTrue(engine.getLastScore() >= SearchEngine.WIN_SCORE - 9);
+    }
+
+    @Test
+    public void evaluateAllMoves_matchesPerfectTable() {
+        int[][] openings = {{}, {4}, {0, 1}, {0, 4, 8}, {0, 1, 4, 8}};
+        for (int[] opening : openings) {
+            TicTacToeGame game = new TicTacToeGame();
+            for (int i = 0; i < opening.length; i++)
+                game.setMove(i % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER, opening[i]);
+            char player = opening.length % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER;
+            // The table's analysis against a full-window search of the same position
+            BoardAnalysis table = game.evaluateAllMoves(player, SearchBudget.UNLIMITED);
+            BoardAnalysis search = new SearchEngine(game).evaluateAllMoves(player, SearchBudget.UNLIMITED);
+            assertTrue(table.isSolved());
+            assertTrue(search.isSolved());
+            for (int cell = 0; cell < 9; cell++) {
+                assertEquals(table.getOutcome(cell), search.getOutcome(cell));
+                assertEquals(table.getValue(cell), search.getValue(cell));
+            }
+        }
+    }
+
+    @Test
+    public void evaluateAllMoves_onLargeBoard() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        int[] stones = {24, 17, 25, 18, 26, 19};
+        for (int i = 0; i < stones.length; i++)
+            game.setMove(i % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER, stones[i]);
+        BoardAnalysis analysis = new SearchEngine(game).evaluateAllMoves(TicTacToeGame.HUMAN_PLAYER,
+                SearchBudget.nodes(200000));
+        // 23 makes an open four; a move away from both threes lets O make one
+        assertEquals(BoardAnalysis.WIN, analysis.getOutcome(23));
+        assertEquals(3, analysis.getValue(23));
+        assertEquals(BoardAnalysis.LOSS, analysis.getOutcome(1));
+        assertEquals(4, analysis.getValue(1));
+        assertEquals(BoardAnalysis.NOT_EVALUATED, analysis.getOutcome(24));
+        assertEquals(BoardAnalysis.NOT_EVALUATED, analysis.getOutcome(0));
+        assertTrue(analysis.getDepth() > 0);
+        assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(23));
+    }
+
+    @Test
+    public void search_leavesBoardUnchanged() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 24);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 25);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 17);
+        new SearchEngine(game).findBestMove(TicTacToeGame.COMPUTER_PLAYER, 3, SearchBudget.UNLIMITED);
+        for (int i = 0; i < game.getBoardSize(); i++) {
+            char expected = i == 24 || i == 17 ? TicTacToeGame.HUMAN_PLAYER
+                    : i == 25 ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.OPEN_SPOT;
+            assertEquals(expected, game.getBoardOccupant(i));
+        }
+        assertEquals(0, game.checkForWinner());
+    }
+
+    @Test
+    public void sameStones_otherSideToMove_doNotShareTable() {
+        int[] stones = {4, 14, 7, 3, 0, 2, 10, 13};
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        for (int i = 0; i < stones.length; i++)
+            game.setMove(i % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER, stones[i]);
+        SearchEngine fresh = new SearchEngine(game);
+        fresh.findBestMove(TicTacToeGame.HUMAN_PLAYER, 0, SearchBudget.UNLIMITED);
+        assertEquals(SearchEngine.WIN_SCORE - 3, fresh.getLastScore());
+
+        // As if O had started: the table now holds O's bounds for these stones
+        SearchEngine engine = new SearchEngine(game);
+        engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, 0, SearchBudget.UNLIMITED);
+        engine.findBestMove(TicTacToeGame.HUMAN_PLAYER, 0, SearchBudget.UNLIMITED);
+        assertEquals(SearchEngine.WIN_SCORE - 3, engine.getLastScore());
+    }
+
+    @Test
+    public void largeBoard_blocksOpenFour() {
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        // X has four on row 7, blocked on the left; O must take the other end
+        for (int col = 5; col <= 8; col++)
+            game.setMove(TicTacToeGame.HUMAN_PLAYER, 7 * 15 + col);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 7 * 15 + 4);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 0);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 14);
+        int move = game.getComputerMove(TicTacToeGame.HARD, SearchBudget.millis(2000));
+        assertEquals(7 * 15 + 9, move);
+    }
+
+    @Test
+    public void largeBoard_findsForcedWin() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        // O to move with an open three on row 3: playing either end makes
+        // an open four that X cannot stop
+        for (int col = 2; col <= 4; col++)
+            game.setMove(TicTacToeGame.COMPUTER_PLAYER, 3 * 7 + col);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 6);
+        int move = game.getComputerMove(TicTacToeGame.PERFECT, SearchBudget.millis(5000));
+        assertTrue(move == 3 * 7 + 1 || move == 3 * 7 + 5);
+    }
+
+    @Test
+    public void nodeBudget_stopsSearch() {
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 112);
+        SearchEngine engine = new SearchEngine(game);
+        int move = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, 0, SearchBudget.nodes(5000));
+        assertTrue(engine.getNodeCount() < 5000 + 1024);
+        assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(move));
+    }
+
+    @Test
+    public void lazySmp_findsForcedWin() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        for (int col = 2; col <= 4; col++)
+            game.setMove(TicTacToeGame.COMPUTER_PLAYER, 3 * 7 + col);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 6);
+        SearchEngine engine = new SearchEngine(game);
+        engine.setThreads(4);
+        try {
+            int move = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, 0, SearchBudget.millis(5000));
+            assertTrue(move == 3 * 7 + 1 || move == 3 * 7 + 5);
+            assertTrue(engine.getLastScore() > SearchEngine.WIN_SCORE - 10);
+            assertTrue(engine.isFinished());
+            assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(move));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void lazySmp_sharesNodeBudget() {
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 112);
+        SearchEngine engine = new SearchEngine(game);
+        engine.setThreads(4);
+        try {
+            int move = engine.findBestMove(TicTacToeGame.COMPUTER_PLAYER, 0, SearchBudget.nodes(20000));
+            // Every thread may overshoot by one check interval
+            assertTrue(engine.getNodeCount() < 20000 + 4 * 1024);
+            assertEquals(TicTacToeGame.OPEN_SPOT, game.getBoardOccupant(move));
+        } finally {
+            engine.shutdown();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SelfPlaySimulatorTest {
+
+    private static SelfPlaySimulator.Result run(int threads) {
+        return new SelfPlaySimulator()
+                .setGames(20000)
+                .setDifficulties(TicTacToeGame.EASY, TicTacToeGame.MEDIUM)
+                .setSeed(99)
+                .setThreads(threads)
+                .run();
+    }
+
+    @Test
+    public void sameSeed_sameOutcome_anyThreadCount() {
+        SelfPlaySimulator.Result single = run(1);
+        SelfPlaySimulator.Result parallel = run(4);
+        assertEquals(20000, single.getGames());
+        assertEquals(single.xWins, parallel.xWins);
+        assertEquals(single.oWins, parallel.oWins);
+        assertEquals(single.draws, parallel.draws);
+        assertEquals(single.moveNanos.getCount(), parallel.moveNanos.getCount());
+    }
+
+    @Test
+    public void perfectVsPerfect_alwaysDraws() {
+        SelfPlaySimulator.Result result = new SelfPlaySimulator()
+                .setGames(1000)
+                .setDifficulties(TicTacToeGame.PERFECT, TicTacToeGame.PERFECT)
+                .setFirstPlayer(TicTacToeGame.COMPUTER_PLAYER)
+                .run();
+        assertEquals(1000, result.draws);
+        assertEquals(9000, result.moveNanos.getCount());
+    }
+
+    @Test
+    public void wilsonInterval_containsRate() {
+        double[] interval = SelfPlaySimulator.Result.wilsonInterval(300, 1000);
+        assertTrue(interval[0] < 0.3 && 0.3 < interval[1]);
+        assertEquals(0.2724, interval[0], 1e-3);
+        assertEquals(0.3291, interval[1], 1e-3);
+    }
+}
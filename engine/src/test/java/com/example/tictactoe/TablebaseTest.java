@@ -0,0 +1,89 @@
+package com.example.tictactoe;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TablebaseTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private Tablebase solve(int rows, int cols, int winLength, boolean distances) throws Exception {
+        TablebaseGenerator generator = new TablebaseGenerator()
+                .setBoard(rows, cols, winLength)
+                .setThreads(4)
+                .setDistances(distances);
+        assertTrue(generator.solve() > 0);
+        File file = mFolder.newFile();
+        generator.write(file);
+        return Tablebase.open(file);
+    }
+
+    @Test
+    public void standardBoard_agreesWithPerfectPlayTable() throws Exception {
+        Tablebase tablebase = solve(3, 3, 3, true);
+        TicTacToeGame game = new TicTacToeGame();
+        assertEquals(BoardAnalysis.DRAW, tablebase.getOutcome(game, TicTacToeGame.HUMAN_PLAYER));
+        assertEquals(9, tablebase.getDistance(game, TicTacToeGame.HUMAN_PLAYER));
+
+        // Random games from both sides: every position's outcome matches
+        // the sign of the table's score
+        PerfectPlayTable table = PerfectPlayTable.get();
+        for (int g = 0; g < 200; g++) {
+            game.clearBoard();
+            char player = g % 2 == 0 ? TicTacToeGame.HUMAN_PLAYER : TicTacToeGame.COMPUTER_PLAYER;
+            while (game.checkForWinner() == 0) {
+                char opponent = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+                int score = table.score(game.getPlayerBits(player), game.getPlayerBits(opponent));
+                int expected = score > 0 ? BoardAnalysis.WIN : score < 0 ? BoardAnalysis.LOSS : BoardAnalysis.DRAW;
+                assertEquals(expected, tablebase.getOutcome(game, player));
+                game.getMove(player, TicTacToeGame.EASY);
+                player = opponent;
+            }
+        }
+    }
+
+    @Test
+    public void threeByFour_isAFirstPlayerWin() throws Exception {
+        Tablebase tablebase = solve(3, 4, 3, false);
+        TicTacToeGame game = new TicTacToeGame(3, 4, 3);
+        assertFalse(tablebase.hasDistances());
+        assertEquals(BoardAnalysis.WIN, tablebase.getOutcome(game, TicTacToeGame.COMPUTER_PLAYER));
+
+        // The tablebase player converts the win against any defence
+        game.setTablebase(tablebase);
+        Random random = new Random(5);
+        for (int g = 0; g < 50; g++) {
+            game.clearBoard();
+            while (game.checkForWinner() == 0) {
+                game.getComputerMove(TicTacToeGame.PERFECT, SearchBudget.UNLIMITED);
+                if (game.checkForWinner() == 0)
+                    game.getMove(TicTacToeGame.HUMAN_PLAYER, random.nextBoolean() ? TicTacToeGame.EASY : TicTacToeGame.HARD);
+            }
+            assertEquals(3, game.checkForWinner());
+        }
+    }
+
+    @Test
+    public void analysis_comesFromTheTablebase() throws Exception {
+        Tablebase tablebase = solve(3, 4, 3, true);
+        TicTacToeGame game = new TicTacToeGame(3, 4, 3);
+        game.setTablebase(tablebase);
+        BoardAnalysis analysis = game.evaluateAllMoves(TicTacToeGame.HUMAN_PLAYER, SearchBudget.UNLIMITED);
+        assertTrue(analysis.isSolved());
+        int wins = 0;
+        for (int cell = 0; cell < 12; cell++) {
+            if (analysis.getOutcome(cell) == BoardAnalysis.WIN) {
+                wins++;
+                assertTrue(analysis.getValue(cell) % 2 == 1);
+            }
+        }
+        assertTrue(wins > 0);
+    }
+}
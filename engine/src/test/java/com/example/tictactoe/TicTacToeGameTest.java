@@ -0,0 +1,242 @@
+package com.example.tictactoe;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TicTacToeGameTest {
+    private TicTacToeGame mGame;
+
+    @Before
+    public void setUp() {
+        mGame = new TicTacToeGame();
+        mGame.clearBoard();
+    }
+
+    @Test
+    public void emptyBoard_noWinner() {
+        assertEquals(0, mGame.checkForWinner());
+    }
+
+    @Test
+    public void everyLine_isDetected() {
+        int[][] lines = {{0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}};
+        for (int[] line : lines) {
+            mGame.clearBoard();
+            for (int cell : line)
+                mGame.setMove(TicTacToeGame.HUMAN_PLAYER, cell);
+            assertEquals(2, mGame.checkForWinner());
+            mGame.clearBoard();
+            for (int cell : line)
+                mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, cell);
+            assertEquals(3, mGame.checkForWinner());
+        }
+    }
+
+    @Test
+    public void fullBoardWithoutLine_isTie() {
+        // X O X / X O O / O X X
+        String board = "XOXXOOOXX";
+        for (int i = 0; i < board.length(); i++)
+            mGame.setMove(board.charAt(i), i);
+        assertEquals(1, mGame.checkForWinner());
+    }
+
+    @Test
+    public void medium_takesWinningMove() {
+        mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, 0);
+        mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, 4);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 1);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 2);
+        assertEquals(8, mGame.getComputerMove(TicTacToeGame.MEDIUM));
+        assertEquals(3, mGame.checkForWinner());
+    }
+
+    @Test
+    public void hard_blocksOpponent() {
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 1);
+        mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, 4);
+        assertEquals(2, mGame.getComputerMove(TicTacToeGame.HARD));
+    }
+
+    @Test
+    public void easy_alwaysPicksOpenSpot() {
+        for (int game = 0; game < 100; game++) {
+            mGame.clearBoard();
+            for (int turn = 0; turn < TicTacToeGame.BOARD_SIZE; turn++) {
+                int occupied = mGame.getPlayerBits(TicTacToeGame.HUMAN_PLAYER)
+                        | mGame.getPlayerBits(TicTacToeGame.COMPUTER_PLAYER);
+                int move = mGame.getComputerMove(TicTacToeGame.EASY);
+                assertEquals(0, occupied & (1 << move));
+            }
+        }
+    }
+
+    @Test
+    public void largeBoard_detectsLinesThroughLastMove() {
+        TicTacToeGame game = new TicTacToeGame(15, 15, 5);
+        // Anti-diagonal from (4, 10) to (8, 6), completed in the middle
+        int[] cells = {4 * 15 + 10, 5 * 15 + 9, 7 * 15 + 7, 8 * 15 + 6};
+        for (int cell : cells) {
+            game.setMove(TicTacToeGame.HUMAN_PLAYER, cell);
+            assertEquals(0, game.checkForWinner());
+        }
+        assertTrue(game.completesLine(TicTacToeGame.HUMAN_PLAYER, 6 * 15 + 8));
+        assertFalse(game.completesLine(TicTacToeGame.COMPUTER_PLAYER, 6 * 15 + 8));
+        game.setMove(TicTacToeGame.HUMAN_PLAYER, 6 * 15 + 8);
+        assertEquals(2, game.checkForWinner());
+    }
+
+    @Test
+    public void largeBoard_lineDoesNotWrapAroundEdges() {
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        // Cells 2, 3 end row 0 and cells 4, 5 start row 1
+        for (int cell : new int[]{2, 3, 4, 5})
+            game.setMove(TicTacToeGame.COMPUTER_PLAYER, cell);
+        assertEquals(0, game.checkForWinner());
+    }
+
+    @Test
+    public void largeBoard_fullBoardIsTie() {
+        TicTacToeGame game = new TicTacToeGame(4, 4, 4);
+        // Two-row stripes of alternating pairs never line up four
+        String board = "XXOOOOXXXXOOOOXX";
+        for (int i = 0; i < board.length(); i++)
+            game.setMove(board.charAt(i), i);
+        assertEquals(1, game.checkForWinner());
+    }
+
+    @Test
+    public void largeBoard_hardBlocksOpponent() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 5);
+        for (int col = 1; col <= 4; col++)
+            game.setMove(TicTacToeGame.HUMAN_PLAYER, 3 * 7 + col);
+        game.setMove(TicTacToeGame.COMPUTER_PLAYER, 3 * 7);
+        assertEquals(3 * 7 + 5, game.getComputerMove(TicTacToeGame.HARD));
+    }
+
+    @Test
+    public void perfect_neverLoses() {
+        // Human first: try every human reply at every turn
+        assertNoLoss(0, 0);
+        // Computer first
+        int move = PerfectPlayTable.get().bestMove(0, 0);
+        assertNoLoss(0, 1 << move);
+    }
+
+    // Human to move on the given masks; the computer answers with PERFECT.
+    @Test
+    public void packBoard_roundTrips() {
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 4);
+        mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, 0);
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, 8);
+        int[] packed = mGame.packBoard();
+        assertArrayEquals(new int[]{0x110, 0x001}, packed);
+
+        TicTacToeGame large = new TicTacToeGame(15, 15, 5);
+        large.setMove(TicTacToeGame.HUMAN_PLAYER, 224);
+        large.setMove(TicTacToeGame.COMPUTER_PLAYER, 33);
+        TicTacToeGame copy = new TicTacToeGame(15, 15, 5);
+        copy.unpackBoard(large.packBoard());
+        assertArrayEquals(large.saveBoard(), copy.saveBoard());
+    }
+
+    @Test
+    public void makeAndUnmake_restorePositionExactly() {
+        TicTacToeGame game = new TicTacToeGame(7, 7, 4);
+        Random random = new Random(3);
+        for (int g = 0; g < 50; g++) {
+            game.clearBoard();
+            char player = TicTacToeGame.HUMAN_PLAYER;
+            char[][] boards = new char[49][];
+            int[] results = new int[49];
+            int plies = 0;
+            while (game.checkForWinner() == 0) {
+                boards[plies] = game.saveBoard();
+                results[plies] = game.checkForWinner();
+                int move;
+                do {
+                    move = random.nextInt(49);
+                } while (game.getBoardOccupant(move) != TicTacToeGame.OPEN_SPOT);
+                boolean wins = game.completesLine(player, move);
+                int result = game.makeMove(player, move);
+                assertEquals(wins, result == (player == TicTacToeGame.HUMAN_PLAYER ? 2 : 3));
+                // The incremental result agrees with a position built from scratch
+                TicTacToeGame copy = new TicTacToeGame(7, 7, 4);
+                copy.restoreBoard(game.saveBoard());
+                assertEquals(copy.checkForWinner() != 0, result != 0);
+                plies++;
+                player = player == TicTacToeGame.HUMAN_PLAYER ? TicTacToeGame.COMPUTER_PLAYER : TicTacToeGame.HUMAN_PLAYER;
+            }
+            while (plies > 0) {
+                plies--;
+                game.unmakeMove();
+                assertArrayEquals(boards[plies], game.saveBoard());
+                assertEquals(results[plies], game.checkForWinner());
+            }
+        }
+    }
+
+    @Test
+    public void undoAndRedo_replayTakenBackMoves() {
+        mGame.makeMove(TicTacToeGame.HUMAN_PLAYER, 0);
+        mGame.makeMove(TicTacToeGame.COMPUTER_PLAYER, 4);
+        mGame.makeMove(TicTacToeGame.HUMAN_PLAYER, 1);
+        mGame.makeMove(TicTacToeGame.COMPUTER_PLAYER, 8);
+        mGame.makeMove(TicTacToeGame.HUMAN_PLAYER, 2);
+        assertEquals(2, mGame.checkForWinner());
+
+        assertEquals(2, mGame.undo());
+        assertEquals(8, mGame.undo());
+        assertEquals(0, mGame.checkForWinner());
+        assertEquals(TicTacToeGame.COMPUTER_PLAYER, mGame.getRedoPlayer());
+
+        // A search in between leaves the redo list alone
+        mGame.getSearchEngine().findBestMove(TicTacToeGame.COMPUTER_PLAYER, 0, SearchBudget.UNLIMITED);
+        assertEquals(8, mGame.redo());
+        assertEquals(2, mGame.redo());
+        assertEquals(2, mGame.checkForWinner());
+        assertFalse(mGame.canRedo());
+
+        // A new move after undo() discards what was taken back
+        mGame.undo();
+        mGame.undo();
+        mGame.makeMove(TicTacToeGame.COMPUTER_PLAYER, 2);
+        assertFalse(mGame.canRedo());
+        assertEquals(2, mGame.undo());
+        assertEquals(2, mGame.redo());
+        assertEquals(-1, mGame.redo());
+        assertEquals(4, mGame.getMoveCount());
+    }
+
+    private void assertNoLoss(int human, int computer) {
+        int empty = ~(human | computer) & TicTacToeGame.FULL_BOARD;
+        for (int open = empty; open != 0; open &= open - 1) {
+            int h = human | Integer.lowestOneBit(open);
+            mGame.clearBoard();
+            replay(h, computer);
+            int winner = mGame.checkForWinner();
+            assertNotEquals(2, winner);
+            if (winner != 0)
+                continue;
+            int reply = mGame.getComputerMove(TicTacToeGame.PERFECT);
+            winner = mGame.checkForWinner();
+            assertNotEquals(2, winner);
+            if (winner == 0)
+                assertNoLoss(h, computer | (1 << reply));
+        }
+    }
+
+    private void replay(int human, int computer) {
+        for (int i = 0; i < TicTacToeGame.BOARD_SIZE; i++) {
+            if ((human & (1 << i)) != 0)
+                mGame.setMove(TicTacToeGame.HUMAN_PLAYER, i);
+            else if ((computer & (1 << i)) != 0)
+                mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, i);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void storedEntry_readsBack() {
+        TranspositionTable table = new TranspositionTable(4);
+        long key = 0x123456789ABCDEF0L;
+        assertEquals(0, table.probe(key));
+        table.store(key, 7, -SearchEngine.WIN_SCORE + 3, TranspositionTable.UPPER, -1);
+        long entry = table.probe(key);
+        assertEquals(-SearchEngine.WIN_SCORE + 3, TranspositionTable.score(entry));
+        assertEquals(-1, TranspositionTable.move(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.UPPER, TranspositionTable.flag(entry));
+
+        table.store(key, 2, 42, TranspositionTable.EXACT, 224);
+        entry = table.probe(key);
+        assertEquals(42, TranspositionTable.score(entry));
+        assertEquals(224, TranspositionTable.move(entry));
+    }
+
+    @Test
+    public void otherKeyInSameSlot_isAMiss() {
+        TranspositionTable table = new TranspositionTable(4);
+        long key = 5;
+        long other = 5 + (1L << 40);
+        table.store(key, 3, 1, TranspositionTable.EXACT, 0);
+        assertEquals(0, table.probe(other));
+
+        // A shallower entry of the same search does not replace a deeper
+        // one; after a new search it does
+        table.store(other, 1, 2, TranspositionTable.EXACT, 0);
+        assertEquals(0, table.probe(other));
+        table.newSearch();
+        table.store(other, 1, 2, TranspositionTable.EXACT, 0);
+        assertEquals(2, TranspositionTable.score(table.probe(other)));
+        assertEquals(0, table.probe(key));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.tictactoe;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UltimateGameTest {
+
+    private static final char X = TicTacToeGame.HUMAN_PLAYER;
+    private static final char O = TicTacToeGame.COMPUTER_PLAYER;
+
+    // Grid cell of the given cell of the given board
+    private static int cell(int board, int index) {
+        return (board / 3 * 3 + index / 3) * 9 + board % 3 * 3 + index % 3;
+    }
+
+    private static long perft(UltimateGame game, char player, int depth) {
+        int[] moves = new int[UltimateGame.CELLS];
+        int count = game.getLegalMoves(moves);
+        if (depth == 1)
+            return count;
+        long nodes = 0;
+        char opponent = player == X ? O : X;
+        for (int i = 0; i < count; i++) {
+            game.makeMove(player, moves[i]);
+            nodes += perft(game, opponent, depth - 1);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    @Test
+    public void status_matchesCheckForWinner() {
+        for (int human = 0; human <= TicTacToeGame.FULL_BOARD; human++) {
+            for (int computer = 0; computer <= TicTacToeGame.FULL_BOARD; computer++) {
+                if ((human & computer) == 0)
+                    assertEquals(TicTacToeGame.checkForWinner(human, computer), UltimateGame.STATUS[human | computer << 9]);
+            }
+        }
+    }
+
+    @Test
+    public void perft_matchesKnownCounts() {
+        UltimateGame game = new UltimateGame();
+        assertEquals(81, perft(game, X, 1));
+        assertEquals(720, perft(game, X, 2));
+        assertEquals(6336, perft(game, X, 3));
+        assertEquals(55080, perft(game, X, 4));
+    }
+
+    @Test
+    public void move_sendsOpponentToMatchingBoard() {
+        UltimateGame game = new UltimateGame();
+        game.makeMove(X, cell(4, 0));
+        assertEquals(0, game.getNextBoard());
+        assertTrue(game.isLegalMove(cell(0, 4)));
+        assertFalse(game.isLegalMove(cell(1, 4)));
+
+        game.makeMove(O, cell(0, 4));
+        game.makeMove(X, cell(4, 1));
+        game.makeMove(O, cell(1, 4));
+        game.makeMove(X, cell(4, 2));
+        assertEquals(2, game.getBoardWinner(4));
+        assertEquals(0, game.checkForWinner());
+        assertEquals(2, game.getNextBoard());
+
+        // Sent to the board X just won, O may play in any open board
+        game.makeMove(O, cell(2, 4));
+        assertEquals(-1, game.getNextBoard());
+        assertFalse(game.isLegalMove(cell(4, 4)));
+        assertEquals(8 * 3 + 9 * 5, game.getLegalMoves(new int[UltimateGame.CELLS]));
+    }
+
+    @Test
+    public void threeBoardsInALine_winTheGame() {
+        UltimateGame game = new UltimateGame();
+        for (int board = 0; board < 3; board++) {
+            for (int index = 0; index < 3; index++)
+                game.makeMove(O, cell(board, index));
+        }
+        assertEquals(3, game.checkForWinner());
+        assertEquals(0, game.getLegalMoves(new int[UltimateGame.CELLS]));
+        game.unmakeMove();
+        assertEquals(0, game.checkForWinner());
+        assertEquals(0, game.getBoardWinner(2));
+    }
+
+    @Test
+    public void unmakeMove_restoresEveryPosition() {
+        Random random = new Random(7);
+        UltimateGame game = new UltimateGame(random);
+        int[] moves = new int[UltimateGame.CELLS];
+        int[][] states = new int[UltimateGame.CELLS + 1][];
+        char player = X;
+        int ply = 0;
+        while (true) {
+            states[ply] = state(game);
+            int count = game.getLegalMoves(moves);
+            if (count == 0)
+                break;
+            game.makeMove(player, moves[random.nextInt(count)]);
+            player = player == X ? O : X;
+            ply++;
+        }
+        while (ply > 0) {
+            game.unmakeMove();
+            ply--;
+            assertArrayEquals(states[ply], state(game));
+        }
+    }
+
+    private static int[] state(UltimateGame game) {
+        int[] state = new int[13];
+        for (int board = 0; board < 9; board++)
+            state[board] = game.getBoardBits(board);
+        state[9] = game.getMetaBits();
+        state[10] = game.getClosedBoards();
+        state[11] = game.getNextBoard();
+        state[12] = game.checkForWinner();
+        return state;
+    }
+
+    @Test
+    public void hard_takesTheWinningBoard() {
+        UltimateGame game = new UltimateGame();
+        // O holds boards 0 and 1 and two cells of board 2, and is sent there
+        for (int board = 0; board < 2; board++) {
+            for (int index = 0; index < 3; index++)
+                game.makeMove(O, cell(board, index));
+        }
+        game.makeMove(O, cell(2, 0));
+        game.makeMove(O, cell(2, 1));
+        game.makeMove(X, cell(5, 2));
+        int move = game.getMove(O, TicTacToeGame.HARD, SearchBudget.UNLIMITED);
+        assertEquals(cell(2, 2), move);
+        assertEquals(3, game.checkForWinner());
+    }
+}
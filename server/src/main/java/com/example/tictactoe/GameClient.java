@@ -0,0 +1,129 @@
+package com.example.tictactoe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/* GameClient.java
+ *
+ * Blocking client for GameServer: one request at a time, as the protocol
+ * requires.  Every call returns false if the server answered with an error,
+ * see getError(); otherwise the reply's fields are in the getters.
+ */
+
+public class GameClient implements Closeable {
+
+    private final Socket mSocket;
+    private final DataInputStream mIn;
+    private final DataOutputStream mOut;
+
+    private long mSession;
+    private int mResult;
+    private int mComputerMove = -1;
+    private int[] mBoard = new int[0];
+    private int mError;
+
+    public GameClient(InetSocketAddress address) throws IOException {
+        mSocket = new Socket();
+        mSocket.setTcpNoDelay(true);
+        mSocket.connect(address);
+        mIn = new DataInputStream(new BufferedInputStream(mSocket.getInputStream()));
+        mOut = new DataOutputStream(new BufferedOutputStream(mSocket.getOutputStream()));
+    }
+
+    public boolean newGame(int preset, int difficulty, boolean computerFirst) throws IOException {
+        mOut.writeShort(4);
+        mOut.writeByte(Protocol.NEW_GAME);
+        mOut.writeByte(preset);
+        mOut.writeByte(difficulty);
+        mOut.writeByte(computerFirst ? 1 : 0);
+        return readReply();
+    }
+
+    public boolean move(long session, int cell) throws IOException {
+        mOut.writeShort(11);
+        mOut.writeByte(Protocol.MOVE);
+        mOut.writeLong(session);
+        mOut.writeShort(cell);
+        return readReply();
+    }
+
+    public boolean resign(long session) throws IOException {
+        return sessionRequest(Protocol.RESIGN, session);
+    }
+
+    public boolean state(long session) throws IOException {
+        return sessionRequest(Protocol.STATE, session);
+    }
+
+    private boolean sessionRequest(byte type, long session) throws IOException {
+        mOut.writeShort(9);
+        mOut.writeByte(type);
+        mOut.writeLong(session);
+        return readReply();
+    }
+
+    private boolean readReply() throws IOException {
+        mOut.flush();
+        int length = mIn.readUnsignedShort();
+        byte type = mIn.readByte();
+        if (type == Protocol.ERROR) {
+            mError = mIn.readByte();
+            mIn.skipBytes(length - 2);
+            return false;
+        }
+        if (type != Protocol.GAME)
+            throw new IOException("Unexpected reply type " + type);
+        mError = 0;
+        mSession = mIn.readLong();
+        mResult = mIn.readByte();
+        mComputerMove = mIn.readShort();
+        int words = mIn.readUnsignedByte() * 2;
+        if (mBoard.length != words)
+            mBoard = new int[words];
+        for (int i = 0; i < words; i++)
+            mBoard[i] = mIn.readInt();
+        return true;
+    }
+
+    public long getSession() {
+        return mSession;
+    }
+
+    /**
+     * @return TicTacToeGame.checkForWinner() of the game, or
+     * Protocol.RESIGNED
+     */
+    public int getResult() {
+        return mResult;
+    }
+
+    public int getComputerMove() {
+        return mComputerMove;
+    }
+
+    /**
+     * @return the board as TicTacToeGame.packBoard(); reused by the next
+     * reply
+     */
+    public int[] getBoard() {
+        return mBoard;
+    }
+
+    /**
+     * @return the Protocol error code of the last reply, 0 if none
+     */
+    public int getError() {
+        return mError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSocket.close();
+    }
+}
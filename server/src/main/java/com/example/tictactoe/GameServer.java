@@ -0,0 +1,414 @@
+package com.example.tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/* GameServer.java
+ *
+ * Headless game server speaking Protocol over TCP.  One event-loop thread
+ * owns every connection: it accepts, reads and parses frames, answers
+ * requests that need no search, and writes replies.  Computer moves go to
+ * a fixed-size compute pool with a bounded queue, so a slow search never
+ * holds up I/O; when the queue is full the request is refused with BUSY
+ * instead of piling up.  Each compute thread keeps one search game per
+ * board preset, with its transposition table and position cache, and
+ * sessions only hold their boards.
+ *
+ * A connection waiting for a computer move is not read, which pushes back
+ * on its client through TCP flow control.  Sessions not touched for the
+ * idle time are evicted by a periodic sweep.
+ *
+ * Run it with ./gradlew :server:run --args="--port 7777" and drive it with
+ * LoadGenerator.
+ */
+
+public class GameServer implements Closeable {
+
+    private int mComputeThreads = Runtime.getRuntime().availableProcessors();
+    private int mQueueCapacity = 1024;
+    private long mIdleMillis = TimeUnit.MINUTES.toMillis(5);
+    private SearchBudget mBudget = SearchBudget.millis(100);
+
+    private final SessionStore mSessions = new SessionStore();
+    private ServerSocketChannel mServer;
+    private Selector mSelector;
+    private ThreadPoolExecutor mComputePool;
+    private ScheduledExecutorService mSweeper;
+    private Thread mLoop;
+    private volatile boolean mRunning;
+
+    // Connections whose computer move is ready, handed back to the loop
+    private final ConcurrentLinkedQueue<Connection> mReady = new ConcurrentLinkedQueue<>();
+
+    // Search games of the current compute thread, by board preset
+    private final ThreadLocal<TicTacToeGame[]> mSearchGames = new ThreadLocal<TicTacToeGame[]>() {
+        @Override
+        protected TicTacToeGame[] initialValue() {
+            return new TicTacToeGame[TicTacToeGame.BOARD_PRESETS.length];
+        }
+    };
+
+    private static class Connection {
+        final SocketChannel mChannel;
+        SelectionKey mKey;
+        // Both buffers stay in write mode between calls
+        final ByteBuffer mIn = ByteBuffer.allocate(2 + Protocol.MAX_FRAME);
+        final ByteBuffer mOut = ByteBuffer.allocate(2 + Protocol.MAX_FRAME);
+        // True while a compute thread owns mOut
+        boolean mWaiting;
+
+        Connection(SocketChannel channel) {
+            mChannel = channel;
+        }
+    }
+
+    public GameServer setComputeThreads(int threads) {
+        mComputeThreads = threads;
+        return this;
+    }
+
+    public GameServer setQueueCapacity(int capacity) {
+        mQueueCapacity = capacity;
+        return this;
+    }
+
+    public GameServer setIdleMillis(long idleMillis) {
+        mIdleMillis = idleMillis;
+        return this;
+    }
+
+    /**
+     * Budget for HARD and PERFECT searches on the larger boards.
+     */
+    public GameServer setBudget(SearchBudget budget) {
+        mBudget = budget;
+        return this;
+    }
+
+    public SessionStore getSessions() {
+        return mSessions;
+    }
+
+    /**
+     * Bind to address, e.g. port 0 for any free port, and start serving.
+     */
+    public GameServer start(InetSocketAddress address) throws IOException {
+        mSelector = Selector.open();
+        mServer = ServerSocketChannel.open();
+        mServer.bind(address, 1024);
+        mServer.configureBlocking(false);
+        mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+        mComputePool = new ThreadPoolExecutor(mComputeThreads, mComputeThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(mQueueCapacity));
+        mSweeper = Executors.newSingleThreadScheduledExecutor();
+        long period = Math.max(1, mIdleMillis / 4);
+        mSweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                mSessions.evictIdle(System.currentTimeMillis() - mIdleMillis);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        mRunning = true;
+        mLoop = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "GameServer");
+        mLoop.start();
+        return this;
+    }
+
+    public int getPort() {
+        return mServer.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mRunning = false;
+        mSelector.wakeup();
+        try {
+            mLoop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mComputePool.shutdownNow();
+        mSweeper.shutdownNow();
+        for (SelectionKey key : mSelector.keys())
+            key.channel().close();
+        mSelector.close();
+    }
+
+    //--- Event loop
+
+    private void loop() {
+        while (mRunning) {
+            try {
+                mSelector.select();
+                Connection ready;
+                while ((ready = mReady.poll()) != null) {
+                    ready.mWaiting = false;
+                    if (ready.mChannel.isOpen())
+                        serviceOrClose(ready);
+                }
+                Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else if (key.isReadable())
+                        read((Connection) key.attachment());
+                    else if (key.isWritable())
+                        serviceOrClose((Connection) key.attachment());
+                }
+            } catch (IOException e) {
+                // Selector failure; keep serving the remaining connections
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = mServer.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.mKey = channel.register(mSelector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (connection.mChannel.read(connection.mIn) < 0) {
+                close(connection);
+                return;
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        serviceOrClose(connection);
+    }
+
+    private void serviceOrClose(Connection connection) {
+        try {
+            service(connection);
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    /**
+     * Write pending output, then handle buffered requests until one needs
+     * the compute pool or the socket is full.
+     */
+    private void service(Connection connection) throws IOException {
+        ByteBuffer out = connection.mOut;
+        // Once waiting, mOut belongs to the compute thread
+        while (!connection.mWaiting) {
+            if (out.position() > 0) {
+                out.flip();
+                connection.mChannel.write(out);
+                out.compact();
+                if (out.position() > 0) {
+                    connection.mKey.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if (!handleFrame(connection))
+                break;
+        }
+        connection.mKey.interestOps(connection.mWaiting ? 0 : SelectionKey.OP_READ);
+    }
+
+    private static void close(Connection connection) {
+        connection.mKey.cancel();
+        try {
+            connection.mChannel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    //--- Requests
+
+    /**
+     * Handle the next complete frame, if any.
+     *
+     * @return false if no complete frame is buffered
+     */
+    private boolean handleFrame(Connection connection) throws IOException {
+        ByteBuffer in = connection.mIn;
+        in.flip();
+        int length = in.remaining() < 2 ? 0 : in.getShort(0) & 0xFFFF;
+        if (in.remaining() >= 2 && (length == 0 || length > Protocol.MAX_FRAME))
+            throw new IOException("Bad frame length " + length);
+        if (in.remaining() < 2 || in.remaining() < 2 + length) {
+            in.compact();
+            return false;
+        }
+        in.getShort();
+        int end = in.position() + length;
+        try {
+            handleRequest(connection, in, length);
+        } catch (RuntimeException e) {
+            // Short or malformed body
+            writeError(connection.mOut, Protocol.BAD_REQUEST);
+        }
+        in.position(end);
+        in.compact();
+        return true;
+    }
+
+    private void handleRequest(Connection connection, ByteBuffer in, int length) {
+        long now = System.currentTimeMillis();
+        byte type = in.get();
+        if (type == Protocol.NEW_GAME) {
+            int preset = in.get();
+            int difficulty = in.get();
+            boolean computerFirst = in.get() != 0;
+            if (preset < 0 || preset >= TicTacToeGame.BOARD_PRESETS.length
+                    || difficulty < TicTacToeGame.EASY || difficulty >= TicTacToeGame.DIFFICULTY_COUNT) {
+                writeError(connection.mOut, Protocol.BAD_REQUEST);
+                return;
+            }
+            Session session = mSessions.create(preset, difficulty, now);
+            if (!computerFirst) {
+                session.writeGame(connection.mOut);
+            } else {
+                session.startThinking();
+                if (!submit(connection, session)) {
+                    mSessions.remove(session.getId());
+                    writeError(connection.mOut, Protocol.BUSY);
+                }
+            }
+            return;
+        }
+
+        if (type != Protocol.MOVE && type != Protocol.RESIGN && type != Protocol.STATE) {
+            writeError(connection.mOut, Protocol.BAD_REQUEST);
+            return;
+        }
+        Session session = mSessions.get(in.getLong());
+        if (session == null) {
+            writeError(connection.mOut, Protocol.UNKNOWN_SESSION);
+            return;
+        }
+        session.touch(now);
+        int error = 0;
+        if (type == Protocol.MOVE) {
+            int cell = in.getShort();
+            error = session.playHumanMove(cell);
+            if (error == 0 && session.isThinking()) {
+                if (submit(connection, session))
+                    return;
+                session.undoHumanMove();
+                error = Protocol.BUSY;
+            }
+        } else if (type == Protocol.RESIGN) {
+            error = session.resign();
+        }
+        if (error != 0)
+            writeError(connection.mOut, (byte) error);
+        else
+            session.writeGame(connection.mOut);
+    }
+
+    /**
+     * Search the computer move on the compute pool; its reply is written
+     * by the compute thread and flushed by the loop.
+     *
+     * @return false if the pool is full
+     */
+    private boolean submit(final Connection connection, final Session session) {
+        connection.mWaiting = true;
+        try {
+            mComputePool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    session.playComputerMove(search(session));
+                    session.touch(System.currentTimeMillis());
+                    session.writeGame(connection.mOut);
+                    mReady.add(connection);
+                    mSelector.wakeup();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            connection.mWaiting = false;
+            return false;
+        }
+    }
+
+    private int search(Session session) {
+        TicTacToeGame[] games = mSearchGames.get();
+        TicTacToeGame game = games[session.getPreset()];
+        if (game == null) {
+            game = TicTacToeGame.fromPreset(session.getPreset());
+            games[session.getPreset()] = game;
+        }
+        game.restoreBoard(session.saveBoard());
+        return game.getComputerMove(session.getDifficulty(), mBudget);
+    }
+
+    private static void writeError(ByteBuffer out, byte code) {
+        out.putShort((short) 2);
+        out.put(Protocol.ERROR);
+        out.put(code);
+    }
+
+    /**
+     * java -cp <classes> com.example.tictactoe.GameServer --port 7777 \
+     *     --threads 4 --queue 1024 --idle-seconds 300 --budget-ms 100
+     */
+    public static void main(String[] args) throws IOException {
+        GameServer server = new GameServer();
+        String host = "127.0.0.1";
+        int port = Protocol.DEFAULT_PORT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--host":
+                    host = value;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    server.setComputeThreads(Integer.parseInt(value));
+                    break;
+                case "--queue":
+                    server.setQueueCapacity(Integer.parseInt(value));
+                    break;
+                case "--idle-seconds":
+                    server.setIdleMillis(TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+                    break;
+                case "--budget-ms":
+                    server.setBudget(SearchBudget.millis(Long.parseLong(value)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        server.start(new InetSocketAddress(host, port));
+        System.out.println("Listening on " + host + ":" + server.getPort());
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.tictactoe;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* LoadGenerator.java
+ *
+ * Plays many games against a GameServer at once and reports the sustained
+ * games per second and move latency percentiles.  Each client is a thread
+ * with its own connection that plays random legal moves, starting a new
+ * game as soon as one ends.  Move latency is from sending MOVE to reading
+ * the reply, so it includes the server's search.
+ *
+ *   java -cp <classes> com.example.tictactoe.LoadGenerator --port 7777 \
+ *       --clients 64 --seconds 30 --board 0 --difficulty hard
+ *
+ * With --server the generator starts its own server on a free loopback
+ * port first.
+ */
+
+public class LoadGenerator {
+
+    private String mHost = "127.0.0.1";
+    private int mPort = Protocol.DEFAULT_PORT;
+    private int mClients = 64;
+    private long mMillis = TimeUnit.SECONDS.toMillis(10);
+    private int mBoardPreset = TicTacToeGame.DEFAULT_PRESET;
+    private int mDifficulty = TicTacToeGame.HARD;
+
+    public LoadGenerator setAddress(String host, int port) {
+        mHost = host;
+        mPort = port;
+        return this;
+    }
+
+    public LoadGenerator setClients(int clients) {
+        mClients = clients;
+        return this;
+    }
+
+    public LoadGenerator setMillis(long millis) {
+        mMillis = millis;
+        return this;
+    }
+
+    public LoadGenerator setBoardPreset(int preset) {
+        mBoardPreset = preset;
+        return this;
+    }
+
+    public LoadGenerator setDifficulty(int difficulty) {
+        mDifficulty = difficulty;
+        return this;
+    }
+
+    public static class Result {
+        public long games;
+        public long moves;
+        public long errors;
+        public long elapsedNanos;
+        public final LatencyHistogram moveNanos = new LatencyHistogram();
+
+        public double getGamesPerSecond() {
+            return games * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "games=%d (%.1f/s) moves=%d (%.1f/s) errors=%d%n"
+                            + "move latency ms p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+                    games, getGamesPerSecond(), moves, moves * 1e9 / elapsedNanos, errors,
+                    moveNanos.getPercentile(50) / 1e6, moveNanos.getPercentile(90) / 1e6,
+                    moveNanos.getPercentile(99) / 1e6, moveNanos.getPercentile(99.9) / 1e6,
+                    moveNanos.getMax() / 1e6);
+        }
+    }
+
+    private class Client extends Thread {
+        final Result mResult = new Result();
+        final Random mRandom;
+        final long mDeadline;
+        IOException mFailure;
+
+        Client(int index, long deadline) {
+            super("LoadGenerator-" + index);
+            mRandom = new Random(index);
+            mDeadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            TicTacToeGame board = TicTacToeGame.fromPreset(mBoardPreset);
+            int[] open = new int[board.getBoardSize()];
+            try {
+                GameClient client = new GameClient(new InetSocketAddress(mHost, mPort));
+                try {
+                    while (System.nanoTime() < mDeadline) {
+                        if (!client.newGame(mBoardPreset, mDifficulty, mRandom.nextBoolean())) {
+                            mResult.errors++;
+                            continue;
+                        }
+                        long session = client.getSession();
+                        while (client.getResult() == 0 && System.nanoTime() < mDeadline) {
+                            board.unpackBoard(client.getBoard());
+                            int count = 0;
+                            for (int cell = 0; cell < open.length; cell++) {
+                                if (board.getBoardOccupant(cell) == TicTacToeGame.OPEN_SPOT)
+                                    open[count++] = cell;
+                            }
+                            long start = System.nanoTime();
+                            boolean ok = client.move(session, open[mRandom.nextInt(count)]);
+                            mResult.moveNanos.record(System.nanoTime() - start);
+                            mResult.moves++;
+                            if (!ok) {
+                                // Only BUSY is expected; the board is unchanged
+                                mResult.errors++;
+                                if (!client.state(session))
+                                    break;
+                            }
+                        }
+                        if (client.getResult() != 0)
+                            mResult.games++;
+                    }
+                } finally {
+                    client.close();
+                }
+            } catch (IOException e) {
+                mFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Run the clients until the time is up.
+     */
+    public Result run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(mMillis);
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < mClients; i++) {
+            Client client = new Client(i, deadline);
+            clients.add(client);
+            client.start();
+        }
+        Result result = new Result();
+        for (Client client : clients) {
+            client.join();
+            if (client.mFailure != null)
+                throw client.mFailure;
+            result.games += client.mResult.games;
+            result.moves += client.mResult.moves;
+            result.errors += client.mResult.errors;
+            result.moveNanos.add(client.mResult.moveNanos);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        String host = "127.0.0.1";
+        int port = Protocol.DEFAULT_PORT;
+        boolean startServer = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--server")) {
+                startServer = true;
+                continue;
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--host":
+                    host = value;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--clients":
+                    generator.setClients(Integer.parseInt(value));
+                    break;
+                case "--seconds":
+                    generator.setMillis(TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+                    break;
+                case "--board":
+                    generator.setBoardPreset(Integer.parseInt(value));
+                    break;
+                case "--difficulty":
+                    generator.setDifficulty(SelfPlaySimulator.parseDifficulty(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        GameServer server = null;
+        if (startServer) {
+            server = new GameServer().start(new InetSocketAddress(host, 0));
+            port = server.getPort();
+        }
+        generator.setAddress(host, port);
+        try {
+            System.out.print(generator.run());
+        } finally {
+            if (server != null)
+                server.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.tictactoe;
+
+/* Protocol.java
+ *
+ * The game server's binary protocol.  Every frame, in both directions, is
+ * a big-endian short length followed by that many bytes, the first of
+ * which is the frame type.  A connection has at most one request in flight:
+ * the server reads the next frame only after answering the previous one,
+ * so replies arrive in request order.
+ *
+ * Requests
+ *   NEW_GAME  byte board preset, byte difficulty, byte 1 if the computer
+ *             moves first
+ *   MOVE      long session, short cell
+ *   RESIGN    long session
+ *   STATE     long session
+ *
+ * Replies
+ *   GAME      long session, byte result, short last computer move or -1,
+ *             byte words, then 2 * words ints: the board as
+ *             TicTacToeGame.packBoard()
+ *   ERROR     byte code
+ *
+ * The result is TicTacToeGame.checkForWinner(), or RESIGNED.
+ */
+
+public final class Protocol {
+
+    public static final int DEFAULT_PORT = 7777;
+    // Largest frame body; a 15 x 15 GAME reply is 77 bytes
+    public static final int MAX_FRAME = 256;
+
+    public static final byte NEW_GAME = 1;
+    public static final byte MOVE = 2;
+    public static final byte RESIGN = 3;
+    public static final byte STATE = 4;
+
+    public static final byte GAME = 16;
+    public static final byte ERROR = 17;
+
+    public static final int RESIGNED = 4;
+
+    // Error codes
+    public static final byte BAD_REQUEST = 1;
+    public static final byte UNKNOWN_SESSION = 2;
+    public static final byte ILLEGAL_MOVE = 3;
+    public static final byte GAME_OVER = 4;
+    // The computer is still thinking, or the compute pool is full; retry
+    public static final byte BUSY = 5;
+
+    private Protocol() {
+    }
+}
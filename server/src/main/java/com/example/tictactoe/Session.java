@@ -0,0 +1,129 @@
+package com.example.tictactoe;
+
+import java.nio.ByteBuffer;
+
+/* Session.java
+ *
+ * One game on the server.  A session holds only the board and its result;
+ * computer moves are searched by the compute pool's own engines, so an idle
+ * session costs a few hundred bytes.  All methods are synchronized because
+ * the event loop and a compute thread may touch a session at once.
+ */
+
+class Session {
+
+    private final long mId;
+    private final int mPreset;
+    private final int mDifficulty;
+    private final TicTacToeGame mGame;
+    private int mResult;
+    private int mComputerMove = -1;
+    // True while a computer move is queued or being searched
+    private boolean mThinking;
+    private volatile long mLastActive;
+
+    Session(long id, int preset, int difficulty, long now) {
+        mId = id;
+        mPreset = preset;
+        mDifficulty = difficulty;
+        mGame = TicTacToeGame.fromPreset(preset);
+        mLastActive = now;
+    }
+
+    long getId() {
+        return mId;
+    }
+
+    int getPreset() {
+        return mPreset;
+    }
+
+    int getDifficulty() {
+        return mDifficulty;
+    }
+
+    long getLastActive() {
+        return mLastActive;
+    }
+
+    void touch(long now) {
+        mLastActive = now;
+    }
+
+    synchronized boolean isThinking() {
+        return mThinking;
+    }
+
+    synchronized int getResult() {
+        return mResult;
+    }
+
+    /**
+     * Play a human move.  If the game goes on, the session starts thinking
+     * and the caller must search a computer move.
+     *
+     * @return 0, or the Protocol error code
+     */
+    synchronized int playHumanMove(int cell) {
+        if (mThinking)
+            return Protocol.BUSY;
+        if (mResult != 0)
+            return Protocol.GAME_OVER;
+        if (cell < 0 || cell >= mGame.getBoardSize() || mGame.getBoardOccupant(cell) != TicTacToeGame.OPEN_SPOT)
+            return Protocol.ILLEGAL_MOVE;
+        mGame.setMove(TicTacToeGame.HUMAN_PLAYER, cell);
+        mResult = mGame.checkForWinner();
+        mThinking = mResult == 0;
+        return 0;
+    }
+
+    /**
+     * Take back a human move whose computer reply could not be scheduled.
+     */
+    synchronized void undoHumanMove() {
+        mGame.unmakeMove();
+        mResult = 0;
+        mThinking = false;
+    }
+
+    synchronized void startThinking() {
+        mThinking = true;
+    }
+
+    /**
+     * @return the board for the search; only valid while thinking
+     */
+    synchronized char[] saveBoard() {
+        return mGame.saveBoard();
+    }
+
+    synchronized void playComputerMove(int cell) {
+        mGame.setMove(TicTacToeGame.COMPUTER_PLAYER, cell);
+        mComputerMove = cell;
+        mResult = mGame.checkForWinner();
+        mThinking = false;
+    }
+
+    synchronized int resign() {
+        if (mThinking)
+            return Protocol.BUSY;
+        if (mResult == 0)
+            mResult = Protocol.RESIGNED;
+        return 0;
+    }
+
+    /**
+     * Write a GAME reply frame, length included.
+     */
+    synchronized void writeGame(ByteBuffer out) {
+        int[] board = mGame.packBoard();
+        out.putShort((short) (1 + 8 + 1 + 2 + 1 + board.length * 4));
+        out.put(Protocol.GAME);
+        out.putLong(mId);
+        out.put((byte) mResult);
+        out.putShort((short) mComputerMove);
+        out.put((byte) (board.length / 2));
+        for (int word : board)
+            out.putInt(word);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.tictactoe;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* SessionStore.java
+ *
+ * All live sessions, by id.  The map is a ConcurrentHashMap, whose reads
+ * take no lock and whose writes lock only one bin, so the event loop, the
+ * compute pool and the eviction sweep never wait on one another.
+ *
+ * Ids are a counter passed through the SplitMix64 finalizer: unique,
+ * because the finalizer is a bijection, and not guessable from a
+ * neighbouring session's id.
+ */
+
+public class SessionStore {
+
+    private final ConcurrentHashMap<Long, Session> mSessions = new ConcurrentHashMap<>();
+    private final AtomicLong mCounter = new AtomicLong();
+    private final AtomicLong mEvicted = new AtomicLong();
+
+    Session create(int preset, int difficulty, long now) {
+        Session session = new Session(mix(mCounter.incrementAndGet()), preset, difficulty, now);
+        mSessions.put(session.getId(), session);
+        return session;
+    }
+
+    Session get(long id) {
+        return mSessions.get(id);
+    }
+
+    void remove(long id) {
+        mSessions.remove(id);
+    }
+
+    public int size() {
+        return mSessions.size();
+    }
+
+    public long getEvictedCount() {
+        return mEvicted.get();
+    }
+
+    /**
+     * Drop sessions untouched since before cutoff, except those whose
+     * computer move is still being searched.
+     *
+     * @return the number of sessions dropped
+     */
+    public int evictIdle(long cutoff) {
+        int evicted = 0;
+        for (Iterator<Session> it = mSessions.values().iterator(); it.hasNext(); ) {
+            Session session = it.next();
+            if (session.getLastActive() < cutoff && !session.isThinking()) {
+                it.remove();
+                evicted++;
+            }
+        }
+        mEvicted.addAndGet(evicted);
+        return evicted;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
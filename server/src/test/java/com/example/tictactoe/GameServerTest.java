@@ -0,0 +1,94 @@
+package com.example.tictactoe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+public class GameServerTest {
+
+    private GameServer mServer;
+    private InetSocketAddress mAddress;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new GameServer().setComputeThreads(2).start(new InetSocketAddress("127.0.0.1", 0));
+        mAddress = new InetSocketAddress("127.0.0.1", mServer.getPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void perfectComputer_neverLosesOverTheWire() throws Exception {
+        GameClient client = new GameClient(mAddress);
+        TicTacToeGame board = new TicTacToeGame();
+        for (int g = 0; g < 20; g++) {
+            assertTrue(client.newGame(0, TicTacToeGame.PERFECT, g % 2 == 0));
+            long session = client.getSession();
+            while (client.getResult() == 0) {
+                board.unpackBoard(client.getBoard());
+                int cell = 0;
+                while (board.getBoardOccupant((cell + g) % 9) != TicTacToeGame.OPEN_SPOT)
+                    cell++;
+                assertTrue(client.move(session, (cell + g) % 9));
+            }
+            assertNotEquals(2, client.getResult());
+        }
+        client.close();
+    }
+
+    @Test
+    public void badRequests_getErrors() throws Exception {
+        GameClient client = new GameClient(mAddress);
+        assertFalse(client.move(12345L, 0));
+        assertEquals(Protocol.UNKNOWN_SESSION, client.getError());
+        assertFalse(client.newGame(99, TicTacToeGame.EASY, false));
+        assertEquals(Protocol.BAD_REQUEST, client.getError());
+
+        assertTrue(client.newGame(0, TicTacToeGame.EASY, false));
+        long session = client.getSession();
+        assertFalse(client.move(session, 9));
+        assertEquals(Protocol.ILLEGAL_MOVE, client.getError());
+        assertTrue(client.move(session, 4));
+        assertFalse(client.move(session, 4));
+        assertEquals(Protocol.ILLEGAL_MOVE, client.getError());
+
+        assertTrue(client.resign(session));
+        assertEquals(Protocol.RESIGNED, client.getResult());
+        assertFalse(client.move(session, 0));
+        assertEquals(Protocol.GAME_OVER, client.getError());
+        client.close();
+    }
+
+    @Test
+    public void idleSessions_areEvicted() throws Exception {
+        GameClient client = new GameClient(mAddress);
+        assertTrue(client.newGame(1, TicTacToeGame.MEDIUM, false));
+        long session = client.getSession();
+        assertEquals(1, mServer.getSessions().size());
+
+        assertEquals(0, mServer.getSessions().evictIdle(System.currentTimeMillis() - 60000));
+        assertEquals(1, mServer.getSessions().evictIdle(System.currentTimeMillis() + 1));
+        assertFalse(client.state(session));
+        assertEquals(Protocol.UNKNOWN_SESSION, client.getError());
+        client.close();
+    }
+
+    @Test
+    public void loadGenerator_playsManyGamesAtOnce() throws Exception {
+        LoadGenerator.Result result = new LoadGenerator()
+                .setAddress("127.0.0.1", mServer.getPort())
+                .setClients(8)
+                .setMillis(500)
+                .setDifficulty(TicTacToeGame.HARD)
+                .run();
+        assertTrue(result.games > 0);
+        assertEquals(result.moves, result.moveNanos.getCount());
+    }
+}